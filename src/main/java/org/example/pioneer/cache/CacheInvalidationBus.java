@@ -0,0 +1,107 @@
+package org.example.pioneer.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рассылка сбросов L1 между узлами через Redis pub/sub.
+ * Сообщение — строка UTF-8 из полей через перевод строки: узел-отправитель, имя кэша,
+ * тип ключа (L — Long, S — String, * — весь кэш) и сам ключ, чтобы на другом узле он
+ * совпал с ключом в Caffeine. Из канала не десериализуются объекты: ключ другого типа
+ * восстановить нельзя, и для него другие узлы сбрасывают кэш целиком.
+ * Собственные сообщения узел пропускает: свой L1 он уже обновил.
+ */
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    private final RedisTemplate<String, byte[]> redis;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param redis null — одиночный узел, рассылать некому
+     */
+    public CacheInvalidationBus(RedisTemplate<String, byte[]> redis, String channel) {
+        this.redis = redis;
+        this.channel = channel;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    void register(TwoLevelCache cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    /**
+     * @param key null — сброс всего кэша
+     */
+    void publish(String cacheName, Object key) {
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.convertAndSend(channel, new Invalidation(nodeId, cacheName, key).encode());
+        } catch (RuntimeException e) {
+            log.warn("Кэш {}: рассылка сброса ключа {} не удалась: {}", cacheName, key, e.toString());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Invalidation inv;
+        try {
+            inv = Invalidation.decode(message.getBody());
+        } catch (IllegalArgumentException e) {
+            log.warn("Кэш: нечитаемое сообщение сброса: {}", e.toString());
+            return;
+        }
+        if (nodeId.equals(inv.origin())) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(inv.cache());
+        if (cache != null) {
+            cache.invalidateLocal(inv.key());
+        }
+    }
+
+    /**
+     * @param key Long, String или null — весь кэш; ключ другого типа при рассылке превращается в null
+     */
+    record Invalidation(String origin, String cache, Object key) {
+
+        byte[] encode() {
+            String typed = key instanceof Long l ? "L\n" + l
+                    : key instanceof String s ? "S\n" + s
+                    : "*\n";
+            return (origin + "\n" + cache + "\n" + typed).getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @throws IllegalArgumentException сообщение не в этом формате
+         */
+        static Invalidation decode(byte[] body) {
+            // ключ — последнее поле и может сам содержать перевод строки
+            String[] fields = new String(body, StandardCharsets.UTF_8).split("\n", 4);
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("ожидалось 4 поля, получено " + fields.length);
+            }
+            Object key = switch (fields[2]) {
+                case "L" -> Long.valueOf(fields[3]);
+                case "S" -> fields[3];
+                case "*" -> null;
+                default -> throw new IllegalArgumentException("неизвестный тип ключа: " + fields[2]);
+            };
+            return new Invalidation(fields[0], fields[1], key);
+        }
+    }
+}
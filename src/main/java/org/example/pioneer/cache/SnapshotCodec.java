@@ -0,0 +1,128 @@
+package org.example.pioneer.cache;
+
+import org.example.pioneer.model.AccountSnapshot;
+import org.example.pioneer.model.Money;
+import org.example.pioneer.model.UserSnapshot;
+import org.springframework.cache.support.NullValue;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Двоичный формат значений кэша.
+ * <p>
+ * Снимки {@link UserSnapshot} и {@link AccountSnapshot} пишутся фиксированной раскладкой
+ * после байта-тега: около 30 байт против сотен у JDK-сериализации сущности.
+ * Прочие значения (списки EmailData и т.п.) идут JDK-сериализацией без тега — её поток
+ * начинается с 0xAC, который тегом быть не может, поэтому записи старого формата тоже читаются.
+ * Redis — общее хранилище, поэтому JDK-поток читается только через {@link #FALLBACK_FILTER}:
+ * классы модели, коллекции Hibernate и типы JDK, из которых они состоят.
+ * <p>
+ * Раскладка под тегом не меняется: новая версия снимка получает новый тег.
+ */
+public class SnapshotCodec implements RedisSerializer<Object> {
+
+    private static final byte NULL = 1;
+    private static final byte USER = 2;
+    private static final byte ACCOUNT = 3;
+
+    /** null в Long-полях: id и версии не бывают равны Long.MIN_VALUE. */
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    /** Что может лежать в значении кэша вне снимков; остальное отклоняется до создания объекта. */
+    static final ObjectInputFilter FALLBACK_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=32;maxrefs=100000;maxarray=100000;"
+                    + "java.lang.*;java.util.*;java.time.*;java.math.*;"
+                    + "org.springframework.cache.support.NullValue;"
+                    + "org.example.pioneer.model.*;org.hibernate.collection.spi.*;org.hibernate.proxy.**;!*");
+
+    private final JdkSerializationRedisSerializer fallback = new JdkSerializationRedisSerializer();
+
+    @Override
+    public byte[] serialize(Object value) {
+        if (value == null || value instanceof NullValue) {
+            return new byte[]{NULL};
+        }
+        if (value instanceof UserSnapshot u) {
+            byte[] name = u.name().getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(1 + 8 + 4 + name.length + 8)
+                    .put(USER)
+                    .putLong(orAbsent(u.id()))
+                    .putInt(name.length).put(name)
+                    .putLong(u.dateOfBirth() == null ? ABSENT : u.dateOfBirth().toEpochDay())
+                    .array();
+        }
+        if (value instanceof AccountSnapshot a) {
+            return ByteBuffer.allocate(1 + 8 * 5)
+                    .put(ACCOUNT)
+                    .putLong(orAbsent(a.id()))
+                    .putLong(a.balance().units())
+                    .putLong(a.initialBalance().units())
+                    .putLong(orAbsent(a.accrualEpoch()))
+                    .putLong(orAbsent(a.version()))
+                    .array();
+        }
+        return fallback.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            return switch (in.get()) {
+                case NULL -> NullValue.INSTANCE;
+                case USER -> {
+                    Long id = orNull(in.getLong());
+                    int length = in.getInt();
+                    if (length < 0 || length > in.remaining()) {
+                        throw new SerializationException("Неверная длина имени в значении кэша: " + length);
+                    }
+                    byte[] name = new byte[length];
+                    in.get(name);
+                    long dob = in.getLong();
+                    yield new UserSnapshot(id, new String(name, StandardCharsets.UTF_8),
+                            dob == ABSENT ? null : LocalDate.ofEpochDay(dob));
+                }
+                case ACCOUNT -> new AccountSnapshot(orNull(in.getLong()),
+                        Money.ofUnits(in.getLong()), Money.ofUnits(in.getLong()),
+                        orNull(in.getLong()), orNull(in.getLong()));
+                case (byte) 0xAC -> deserializeFallback(bytes);
+                default -> throw new SerializationException("Неизвестный тег значения кэша: " + bytes[0]);
+            };
+        } catch (BufferUnderflowException e) {
+            throw new SerializationException("Обрезанное значение кэша, тег " + bytes[0], e);
+        }
+    }
+
+    private Object deserializeFallback(byte[] bytes) {
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(
+                new ByteArrayInputStream(bytes), getClass().getClassLoader())) {
+            in.setObjectInputFilter(FALLBACK_FILTER);
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            // InvalidClassException — в том числе отказ фильтра
+            throw new SerializationException("Нечитаемое JDK-значение кэша: " + e, e);
+        }
+    }
+
+    private static long orAbsent(Long value) {
+        return value == null ? ABSENT : value;
+    }
+
+    private static Long orNull(long value) {
+        return value == ABSENT ? null : value;
+    }
+}
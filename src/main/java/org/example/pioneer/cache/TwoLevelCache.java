@@ -0,0 +1,584 @@
+package org.example.pioneer.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш из двух уровней: локальный Caffeine (L1) и общий для всех узлов Redis (L2).
+ * <p>
+ * Чтение: L1 → L2 → источник; найденное в L2 кладётся в L1. Запись и сброс идут в L2 и L1,
+ * после чего другим узлам рассылается сообщение, чтобы они выбросили ключ из своего L1
+ * и при следующем чтении взяли свежее значение из L2.
+ * <p>
+ * Оба уровня хранят сериализованное значение, и каждое чтение получает свою копию:
+ * изменение экземпляра одним вызывающим не должно стать видно другим потокам.
+ * Значение, которое не удалось прочитать (например, записанное другой версией
+ * приложения), считается промахом и будет перезаписано.
+ * <p>
+ * Загрузка через {@link #get(Object, Callable)} ({@code @Cacheable(sync = true)}):
+ * <ul>
+ *   <li>одновременные промахи по одному ключу ждут одну загрузку (single-flight);</li>
+ *   <li>с earlyRefreshBeta &gt; 0 свежая запись с вероятностью, растущей к концу local-ttl,
+ *       обновляется в фоне заранее (XFetch: чем дольше загрузка, тем раньше);</li>
+ *   <li>со staleTtl &gt; 0 запись после local-ttl ещё staleTtl отдаётся как есть,
+ *       а новое значение грузится в фоне (stale-while-revalidate).</li>
+ * </ul>
+ * Устаревшее значение отдаётся только после истечения TTL: сброс по записи удаляет его сразу.
+ * Загрузка, во время которой ключ был сброшен, в кэш не попадает — иначе старое значение,
+ * прочитанное до записи, легло бы поверх сброса. То же для значения из L2, которое кладётся в L1.
+ * <p>
+ * «Не найдено» (null) при negativeTtl &gt; 0 хранится отдельно: только на узле, в своём
+ * ограниченном по размеру Caffeine с коротким сроком. Перебор несуществующих ключей
+ * не вытесняет настоящие значения из L1 и не засоряет Redis, а повторный промах стоит
+ * одного обращения к хэш-таблице. Создание ключа сбрасывает его как обычно — через evict,
+ * в том числе на других узлах. При negativeTtl = 0 null кэшируется как обычное значение.
+ * <p>
+ * Недоступность Redis не ломает чтение: L2 считается промахом, кэш работает как локальный,
+ * а устаревание L1 на других узлах ограничено его TTL.
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final String name;
+    private final Cache<Object, Entry> local;
+    /** null — «не найдено» хранится вместе со значениями. */
+    private final Cache<Object, Boolean> negatives;
+    private final RedisTemplate<String, byte[]> redis;
+    private final RedisSerializer<Object> serializer;
+    private final Duration ttl;
+    private final long freshNanos;
+    private final long staleNanos;
+    private final double earlyRefreshBeta;
+    private final Ticker ticker;
+    private final Executor refresher;
+    private final CacheInvalidationBus bus;
+
+    private final ConcurrentMap<Object, CompletableFuture<byte[]>> inflight = new ConcurrentHashMap<>();
+    /** Счётчики сбросов по полосам ключей: загрузка сохраняется, только если её полоса не менялась. */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    /** Скользящее среднее времени загрузки из источника, нс. */
+    private volatile long loadNanos;
+
+    private final Counter l1Hits;
+    private final Counter l2Hits;
+    private final Counter staleHits;
+    private final Counter negativeHits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter earlyRefreshes;
+    private final Counter staleRefreshes;
+    private final Counter discarded;
+
+    /**
+     * @param local     L1; срок жизни записи в нём — spec.localTtl + spec.staleTtl
+     * @param redis     null — только L1 (cache.redis.enabled=false)
+     * @param refresher пул фоновых обновлений; переполнен — обновление выполняет читающий поток
+     */
+    public TwoLevelCache(String name, Cache<Object, Entry> local, RedisTemplate<String, byte[]> redis,
+                         RedisSerializer<Object> serializer, TwoLevelCacheManager.CacheSpec spec,
+                         Ticker ticker, Executor refresher, CacheInvalidationBus bus, MeterRegistry meterRegistry) {
+        super(true);
+        this.name = name;
+        this.local = local;
+        this.negatives = spec.negativeTtl().isZero() ? null : Caffeine.newBuilder()
+                .maximumSize(spec.negativeMaxSize())
+                .expireAfterWrite(spec.negativeTtl())
+                .ticker(ticker)
+                .build();
+        this.redis = redis;
+        this.serializer = serializer;
+        this.ttl = spec.ttl();
+        this.freshNanos = spec.localTtl().toNanos();
+        this.staleNanos = spec.staleTtl().toNanos();
+        this.earlyRefreshBeta = spec.earlyRefreshBeta();
+        this.ticker = ticker;
+        this.refresher = refresher;
+        this.bus = bus;
+        this.l1Hits = counter(meterRegistry, "l1", "hit");
+        this.l2Hits = counter(meterRegistry, "l2", "hit");
+        this.staleHits = counter(meterRegistry, "l1", "stale");
+        this.negativeHits = counter(meterRegistry, "negative", "hit");
+        this.misses = counter(meterRegistry, "all", "miss");
+        this.coalesced = loads(meterRegistry, "coalesced");
+        this.earlyRefreshes = loads(meterRegistry, "early-refresh");
+        this.staleRefreshes = loads(meterRegistry, "stale-refresh");
+        this.discarded = loads(meterRegistry, "discarded");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        if (isKnownMissing(key)) {
+            return NullValue.INSTANCE;
+        }
+        Entry entry = local.getIfPresent(key);
+        if (entry != null && isFresh(entry, ticker.read())) {
+            Object value = decode(key, entry.bytes());
+            if (value != null) {
+                l1Hits.increment();
+                return value;
+            }
+            local.invalidate(key);
+        }
+        long generation = generations.get(stripe(key));
+        byte[] bytes = remoteGet(key);
+        if (bytes != null) {
+            Object value = decode(key, bytes);
+            if (value != null) {
+                l2Hits.increment();
+                promote(key, bytes, generation);
+                return value;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (isKnownMissing(key)) {
+            return null;
+        }
+        long now = ticker.read();
+        Entry entry = local.getIfPresent(key);
+        if (entry != null) {
+            Object value = decode(key, entry.bytes());
+            if (value == null) {
+                local.invalidate(key);
+            } else if (isFresh(entry, now)) {
+                l1Hits.increment();
+                if (shouldRefreshEarly(entry, now)) {
+                    refreshAsync(key, valueLoader, earlyRefreshes);
+                }
+                return (T) fromStoreValue(value);
+            } else if (staleNanos > 0) {
+                staleHits.increment();
+                refreshAsync(key, valueLoader, staleRefreshes);
+                return (T) fromStoreValue(value);
+            }
+        }
+        return (T) fromStoreValue(loadShared(key, valueLoader));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        store(key, storeValue, serializer.serialize(storeValue));
+        bus.publish(name, key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        generations.incrementAndGet(stripe(key));
+        remoteDelete(key);
+        local.invalidate(key);
+        forgetMissing(key);
+        bus.publish(name, key);
+    }
+
+    @Override
+    public void clear() {
+        bumpAllGenerations();
+        remoteClear();
+        local.invalidateAll();
+        if (negatives != null) {
+            negatives.invalidateAll();
+        }
+        bus.publish(name, null);
+    }
+
+    /**
+     * Самые часто читаемые ключи L1 по оценке частоты, которой Caffeine и так выбирает,
+     * что вытеснять; горячие первыми. Пусто, если размер L1 не ограничен.
+     */
+    public List<Object> hottestKeys(int limit) {
+        return local.policy().eviction()
+                .map(eviction -> List.copyOf(eviction.hottest(limit).keySet()))
+                .orElse(List.of());
+    }
+
+    /**
+     * Прогрев L1 пачкой: ключи, которых в нём нет, читаются из Redis одним MGET,
+     * оставшиеся — одним вызовом loader. Найденное кладётся без рассылки сброса:
+     * значение не менялось, и выбрасывать его из L1 других узлов незачем.
+     * @param loader значения по ключам; отсутствующих в результате ключей в кэше не будет
+     * @return сколько ключей положено в L1
+     */
+    public int warm(Collection<?> keys, Function<List<Object>, Map<?, ?>> loader) {
+        List<Object> cold = keys.stream().filter(k -> local.getIfPresent(k) == null).collect(Collectors.toList());
+        if (cold.isEmpty()) {
+            return 0;
+        }
+        Map<Object, Long> generationBefore = new HashMap<>();
+        cold.forEach(k -> generationBefore.put(k, generations.get(stripe(k))));
+
+        int warmed = 0;
+        List<Object> missing = new ArrayList<>();
+        List<byte[]> remote = remoteMultiGet(cold);
+        for (int i = 0; i < cold.size(); i++) {
+            Object key = cold.get(i);
+            byte[] bytes = remote == null ? null : remote.get(i);
+            if (bytes != null && decode(key, bytes) != null) {
+                if (promote(key, bytes, generationBefore.get(key))) {
+                    warmed++;
+                }
+            } else {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return warmed;
+        }
+        for (Map.Entry<?, ?> loaded : loader.apply(missing).entrySet()) {
+            Object key = loaded.getKey();
+            Long before = generationBefore.get(key);
+            if (before == null || generations.get(stripe(key)) != before) {
+                discarded.increment();
+                continue;
+            }
+            Object storeValue = toStoreValue(loaded.getValue());
+            store(key, storeValue, serializer.serialize(storeValue));
+            warmed++;
+        }
+        return warmed;
+    }
+
+    /**
+     * Сообщение от другого узла: значение в L2 изменилось, локальная копия больше не годится.
+     */
+    void invalidateLocal(Object key) {
+        if (key == null) {
+            bumpAllGenerations();
+            local.invalidateAll();
+            if (negatives != null) {
+                negatives.invalidateAll();
+            }
+        } else {
+            generations.incrementAndGet(stripe(key));
+            local.invalidate(key);
+            forgetMissing(key);
+        }
+    }
+
+    /**
+     * Промах: первый поток грузит (сначала из L2, затем из источника), остальные ждут его
+     * и получают свою копию из тех же байтов.
+     * @return значение в форме хранения (null — как {@link org.springframework.cache.support.NullValue})
+     */
+    private Object loadShared(Object key, Callable<?> valueLoader) {
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inflight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            return serializer.deserialize(await(key, valueLoader, running));
+        }
+        try {
+            long generation = generations.get(stripe(key));
+            byte[] bytes = remoteGet(key);
+            Object value = bytes == null ? null : decode(key, bytes);
+            if (value != null) {
+                l2Hits.increment();
+                promote(key, bytes, generation);
+            } else {
+                misses.increment();
+                value = toStoreValue(callLoader(key, valueLoader));
+                bytes = serializer.serialize(value);
+            }
+            mine.complete(bytes);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Фоновое обновление ключа, если по нему ещё ничего не грузится.
+     */
+    private void refreshAsync(Object key, Callable<?> valueLoader, Counter reason) {
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        if (inflight.putIfAbsent(key, mine) != null) {
+            return;
+        }
+        reason.increment();
+        Runnable task = () -> {
+            try {
+                mine.complete(serializer.serialize(toStoreValue(callLoader(key, valueLoader))));
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e);
+                log.warn("Кэш {}: фоновое обновление ключа {} не удалось: {}", name, key, e.toString());
+            } finally {
+                inflight.remove(key, mine);
+            }
+        };
+        try {
+            refresher.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Загрузка из источника и запись в оба уровня, если ключ не сбрасывали во время загрузки.
+     */
+    private Object callLoader(Object key, Callable<?> valueLoader) {
+        int stripe = stripe(key);
+        long generation = generations.get(stripe);
+        long started = ticker.read();
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        long took = ticker.read() - started;
+        loadNanos += (took - loadNanos) >> 3;
+
+        if (generations.get(stripe) != generation) {
+            discarded.increment();
+            return value;
+        }
+        Object storeValue = toStoreValue(value);
+        store(key, storeValue, serializer.serialize(storeValue));
+        if (generations.get(stripe) != generation) {
+            // сброс пришёл между проверкой и записью
+            discarded.increment();
+            remoteDelete(key);
+            local.invalidate(key);
+            forgetMissing(key);
+        }
+        return value;
+    }
+
+    /**
+     * Значение из L2 в L1, если ключ не сбрасывали с момента generation, взятого до чтения
+     * из Redis. Иначе сообщение о сбросе, пришедшее во время чтения, было бы потеряно:
+     * прочитанное до него значение легло бы в L1 и жило до конца local-ttl.
+     * @return положено ли значение в L1
+     */
+    private boolean promote(Object key, byte[] bytes, long generation) {
+        int stripe = stripe(key);
+        if (generations.get(stripe) != generation) {
+            discarded.increment();
+            return false;
+        }
+        local.put(key, new Entry(bytes, ticker.read()));
+        if (generations.get(stripe) != generation) {
+            // сброс пришёл между проверкой и записью
+            discarded.increment();
+            local.invalidate(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Запись в оба уровня; «не найдено» — только в negatives, если они включены.
+     */
+    private void store(Object key, Object storeValue, byte[] bytes) {
+        if (negatives != null && storeValue == NullValue.INSTANCE) {
+            local.invalidate(key);
+            negatives.put(key, Boolean.TRUE);
+            return;
+        }
+        forgetMissing(key);
+        remotePut(key, bytes);
+        local.put(key, new Entry(bytes, ticker.read()));
+    }
+
+    private boolean isKnownMissing(Object key) {
+        if (negatives == null || negatives.getIfPresent(key) == null) {
+            return false;
+        }
+        negativeHits.increment();
+        return true;
+    }
+
+    private void forgetMissing(Object key) {
+        if (negatives != null) {
+            negatives.invalidate(key);
+        }
+    }
+
+    private byte[] await(Object key, Callable<?> valueLoader, CompletableFuture<byte[]> running) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    private boolean isFresh(Entry entry, long now) {
+        return now - entry.writtenAt() < freshNanos;
+    }
+
+    /**
+     * XFetch: обновить, если now - loadNanos * beta * ln(U) перешло за срок свежести, U ~ (0, 1].
+     */
+    private boolean shouldRefreshEarly(Entry entry, long now) {
+        if (earlyRefreshBeta <= 0 || loadNanos <= 0) {
+            return false;
+        }
+        double gap = -loadNanos * earlyRefreshBeta * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return now + gap >= entry.writtenAt() + freshNanos;
+    }
+
+    private Object decode(Object key, byte[] bytes) {
+        try {
+            return serializer.deserialize(bytes);
+        } catch (SerializationException e) {
+            log.warn("Кэш {}: нечитаемое значение по ключу {}, считаем промахом: {}", name, key, e.toString());
+            return null;
+        }
+    }
+
+    private void bumpAllGenerations() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private byte[] remoteGet(Object key) {
+        if (redis == null) {
+            return null;
+        }
+        try {
+            return redis.opsForValue().get(redisKey(key));
+        } catch (RuntimeException e) {
+            log.warn("Кэш {}: чтение из Redis не удалось, ключ {}: {}", name, key, e.toString());
+            return null;
+        }
+    }
+
+    private List<byte[]> remoteMultiGet(List<Object> keys) {
+        if (redis == null) {
+            return null;
+        }
+        try {
+            return redis.opsForValue().multiGet(keys.stream().map(this::redisKey).toList());
+        } catch (RuntimeException e) {
+            log.warn("Кэш {}: пакетное чтение из Redis не удалось: {}", name, e.toString());
+            return null;
+        }
+    }
+
+    private void remotePut(Object key, byte[] bytes) {
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.opsForValue().set(redisKey(key), bytes, ttl);
+        } catch (RuntimeException e) {
+            log.warn("Кэш {}: запись в Redis не удалась, ключ {}: {}", name, key, e.toString());
+        }
+    }
+
+    private void remoteDelete(Object key) {
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.delete(redisKey(key));
+        } catch (RuntimeException e) {
+            log.warn("Кэш {}: удаление из Redis не удалось, ключ {}: {}", name, key, e.toString());
+        }
+    }
+
+    private void remoteClear() {
+        if (redis == null) {
+            return;
+        }
+        try {
+            // SCAN, а не KEYS: не блокирует Redis на больших базах
+            List<String> keys = new ArrayList<>();
+            try (Cursor<String> cursor = redis.scan(ScanOptions.scanOptions()
+                    .match(name + "::*").count(1_000).build())) {
+                cursor.forEachRemaining(keys::add);
+            }
+            if (!keys.isEmpty()) {
+                redis.delete(keys);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Кэш {}: очистка Redis не удалась: {}", name, e.toString());
+        }
+    }
+
+    private String redisKey(Object key) {
+        return name + "::" + key;
+    }
+
+    private Counter loads(MeterRegistry registry, String type) {
+        return Counter.builder("cache.loads")
+                .tag("cache", name)
+                .tag("type", type)
+                .register(registry);
+    }
+
+    private Counter counter(MeterRegistry registry, String level, String result) {
+        return Counter.builder("cache.lookups")
+                .tag("cache", name)
+                .tag("level", level)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Запись L1: сериализованное значение и момент записи по часам кэша.
+     */
+    public record Entry(byte[] bytes, long writtenAt) {
+    }
+}
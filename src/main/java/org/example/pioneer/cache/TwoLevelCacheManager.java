@@ -0,0 +1,131 @@
+package org.example.pioneer.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Менеджер кэшей {@link TwoLevelCache}. Параметры каждого кэша (TTL в Redis, TTL и размер L1)
+ * берутся из specs по имени; кэш с именем, которого нет в списке, создаётся с теми же правилами.
+ * <p>
+ * Запись и сброс внутри транзакции откладываются до её коммита: иначе другой узел успел бы
+ * между сбросом и коммитом положить в Redis старое значение.
+ */
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager implements DisposableBean {
+
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE = 1_000;
+
+    private final List<String> names;
+    private final Function<String, CacheSpec> specs;
+    private final RedisTemplate<String, byte[]> redis;
+    private final RedisSerializer<Object> serializer;
+    private final CacheInvalidationBus bus;
+    private final MeterRegistry meterRegistry;
+    private final Ticker ticker;
+    private final ThreadPoolExecutor refresher;
+
+    /**
+     * @param redis      null — только локальный уровень
+     * @param serializer формат значений в обоих уровнях
+     */
+    public TwoLevelCacheManager(List<String> names, Function<String, CacheSpec> specs,
+                                RedisTemplate<String, byte[]> redis, RedisSerializer<Object> serializer,
+                                CacheInvalidationBus bus, MeterRegistry meterRegistry) {
+        this(names, specs, redis, serializer, bus, meterRegistry, Ticker.systemTicker());
+    }
+
+    TwoLevelCacheManager(List<String> names, Function<String, CacheSpec> specs,
+                         RedisTemplate<String, byte[]> redis, RedisSerializer<Object> serializer,
+                         CacheInvalidationBus bus, MeterRegistry meterRegistry, Ticker ticker) {
+        this.ticker = ticker;
+        AtomicInteger threads = new AtomicInteger();
+        // очередь ограничена: при её переполнении обновляет сам читающий поток
+        this.refresher = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE), r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.names = names;
+        this.specs = specs;
+        this.redis = redis;
+        this.serializer = serializer;
+        this.bus = bus;
+        this.meterRegistry = meterRegistry;
+        setTransactionAware(true);
+    }
+
+    public CacheInvalidationBus getBus() {
+        return bus;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return names.stream().map(this::create).toList();
+    }
+
+    /**
+     * Сам кэш, без обёртки, откладывающей операции до коммита.
+     */
+    public TwoLevelCache getTwoLevelCache(String name) {
+        Cache cache = getCache(name);
+        return (TwoLevelCache) (cache instanceof TransactionAwareCacheDecorator d ? d.getTargetCache() : cache);
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return create(name);
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    private TwoLevelCache create(String name) {
+        CacheSpec spec = specs.apply(name);
+        TwoLevelCache cache = new TwoLevelCache(name,
+                Caffeine.newBuilder()
+                        .maximumSize(spec.localMaxSize())
+                        .expireAfterWrite(spec.localTtl().plus(spec.staleTtl()))
+                        .ticker(ticker)
+                        .build(),
+                redis, serializer, spec, ticker, refresher, bus, meterRegistry);
+        bus.register(cache);
+        return cache;
+    }
+
+    /**
+     * @param ttl              срок жизни значения в Redis
+     * @param localTtl         срок свежести в L1 — верхняя граница устаревания, если сообщение о сбросе потерялось
+     * @param localMaxSize     максимум записей в L1
+     * @param staleTtl         сколько после localTtl отдавать старое значение, обновляя его в фоне; 0 — не отдавать
+     * @param earlyRefreshBeta коэффициент вероятностного раннего обновления; 0 — выключено, 1 — обычное значение
+     * @param negativeTtl      срок хранения «не найдено» на узле; 0 — хранить как обычное значение
+     * @param negativeMaxSize  максимум записей «не найдено» на узле
+     */
+    public record CacheSpec(Duration ttl, Duration localTtl, long localMaxSize,
+                            Duration staleTtl, double earlyRefreshBeta,
+                            Duration negativeTtl, long negativeMaxSize) {
+
+        public CacheSpec(Duration ttl, Duration localTtl, long localMaxSize) {
+            this(ttl, localTtl, localMaxSize, Duration.ZERO, 0, Duration.ZERO, 0);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.pioneer.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.pioneer.cache.CacheInvalidationBus;
+import org.example.pioneer.cache.SnapshotCodec;
+import org.example.pioneer.cache.TwoLevelCacheManager;
+import org.example.pioneer.cache.TwoLevelCacheManager.CacheSpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Кэши приложения: L1 Caffeine на каждом узле + L2 Redis, сбросы L1 рассылаются через pub/sub.
+ * Параметры кэша NAME: cache.NAME.ttl, cache.NAME.local-ttl, cache.NAME.local-max-size,
+ * cache.NAME.stale-ttl, cache.NAME.early-refresh-beta, cache.NAME.negative-ttl,
+ * cache.NAME.negative-max-size; по умолчанию — cache.default.*.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    @Value("${cache.names:users,usersByLogin,accounts,emails,emailsByUser,phones,phonesByUser}")
+    private List<String> names = List.of();
+
+    @Value("${cache.redis.enabled:true}")
+    private boolean redisEnabled = true;
+
+    @Value("${cache.redis.channel:pioneer:cache-invalidation}")
+    private String channel = "pioneer:cache-invalidation";
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             MeterRegistry meterRegistry,
+                                             Environment env) {
+        RedisTemplate<String, byte[]> redis = redisEnabled ? cacheRedisTemplate(connectionFactory) : null;
+        return new TwoLevelCacheManager(names, name -> spec(env, name), redis, new SnapshotCodec(),
+                new CacheInvalidationBus(redis, channel), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "cache.redis.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                   TwoLevelCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager.getBus(), new ChannelTopic(cacheManager.getBus().getChannel()));
+        return container;
+    }
+
+    public static RedisTemplate<String, byte[]> cacheRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(StringRedisSerializer.UTF_8);
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    private static CacheSpec spec(Environment env, String name) {
+        Duration ttl = duration(env, name, "ttl", Duration.ofMinutes(10));
+        return new CacheSpec(ttl,
+                duration(env, name, "local-ttl", ttl.compareTo(Duration.ofMinutes(1)) < 0 ? ttl : Duration.ofMinutes(1)),
+                env.getProperty("cache." + name + ".local-max-size", Long.class,
+                        env.getProperty("cache.default.local-max-size", Long.class, 10_000L)),
+                duration(env, name, "stale-ttl", Duration.ZERO),
+                env.getProperty("cache." + name + ".early-refresh-beta", Double.class,
+                        env.getProperty("cache.default.early-refresh-beta", Double.class, 0.0)),
+                duration(env, name, "negative-ttl", Duration.ZERO),
+                env.getProperty("cache." + name + ".negative-max-size", Long.class,
+                        env.getProperty("cache.default.negative-max-size", Long.class, 10_000L)));
+    }
+
+    private static Duration duration(Environment env, String name, String property, Duration fallback) {
+        return env.getProperty("cache." + name + "." + property, Duration.class,
+                env.getProperty("cache.default." + property, Duration.class, fallback));
+    }
+}
@@ -1,16 +1,26 @@
 package org.example.pioneer.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import org.example.pioneer.dto.dto.AccountDto;
+import org.example.pioneer.dto.dto.TransferResultDto;
+import org.example.pioneer.dto.request.BatchTransferRequest;
 import org.example.pioneer.dto.request.TransferRequest;
-import org.example.pioneer.model.Account;
+import org.example.pioneer.dto.response.BatchTransferResponse;
+import org.example.pioneer.exception.TransferPendingException;
+import org.example.pioneer.model.AccountSnapshot;
 import org.example.pioneer.service.AccountService;
 import org.example.pioneer.service.TransferService;
+import org.example.pioneer.service.TransferStatus;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/account")
 @RequiredArgsConstructor
@@ -23,14 +33,16 @@ public class AccountController {
     /**
      * GET /api/account
      * Возвращает баланс и исходный депозит текущего пользователя.
+     * consistent=true — баланс с учётом ещё не перенесённых записей журнала (режим LEDGER).
      */
     @GetMapping
-    public AccountDto getAccount(@AuthenticationPrincipal Long userId) {
-        Account acct = accountService.getByUserId(userId);
+    public AccountDto getAccount(@AuthenticationPrincipal Long userId,
+                                 @RequestParam(defaultValue = "false") boolean consistent) {
+        AccountSnapshot acct = accountService.getByUserId(userId);
         return AccountDto.builder()
-                .userId(acct.getId())
-                .balance(acct.getBalance())
-                .initialBalance(acct.getInitialBalance())
+                .userId(acct.id())
+                .balance(consistent ? accountService.getConsistentBalance(userId) : acct.balance().toBigDecimal())
+                .initialBalance(acct.initialBalance().toBigDecimal())
                 .build();
     }
 
@@ -40,10 +52,52 @@ public class AccountController {
      *   "toUserId": 123,
      *   "amount": 10.50
      * }
+     * Необязательный заголовок Idempotency-Key делает повторы запроса безопасными.
+     * 202 Accepted — перевод не подтвердился за время ожидания и ещё может выполниться:
+     * итог покажет повтор с тем же ключом.
      */
     @PostMapping("/transfer")
     public void transfer(@AuthenticationPrincipal Long fromUserId,
+                         @RequestHeader(value = "Idempotency-Key", required = false)
+                         @Size(min = 1, max = 255) String idempotencyKey,
                          @Valid @RequestBody TransferRequest req) {
-        transferService.transfer(fromUserId, req.getToUserId(), req.getAmount());
+        transferService.transfer(fromUserId, req.getToUserId(), req.getAmount(), idempotencyKey);
+    }
+
+    /**
+     * POST /api/account/transfers
+     * {
+     *   "mode": "ALL_OR_NOTHING" | "BEST_EFFORT",
+     *   "transfers": [ { "toUserId": 123, "amount": 10.50 }, ... ]
+     * }
+     * Возвращает статус по каждому переводу в порядке запроса.
+     */
+    @PostMapping("/transfers")
+    public BatchTransferResponse transferBatch(@AuthenticationPrincipal Long fromUserId,
+                                               @Valid @RequestBody BatchTransferRequest req) {
+        List<TransferStatus> statuses =
+                transferService.transferBatch(fromUserId, req.getTransfers(), req.getMode());
+
+        List<TransferResultDto> results = new ArrayList<>(statuses.size());
+        int completed = 0;
+        for (int i = 0; i < statuses.size(); i++) {
+            TransferRequest item = req.getTransfers().get(i);
+            if (statuses.get(i) == TransferStatus.COMPLETED) {
+                completed++;
+            }
+            results.add(TransferResultDto.builder()
+                    .index(i)
+                    .toUserId(item.getToUserId())
+                    .amount(item.getAmount())
+                    .status(statuses.get(i))
+                    .build());
+        }
+        return new BatchTransferResponse(completed, results);
+    }
+
+    /** Ответ здесь же, а не через sendError: итог перевода неизвестен, но это не ошибка. */
+    @ExceptionHandler(TransferPendingException.class)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void transferPending() {
     }
-}
\ No newline at end of file
+}
@@ -5,7 +5,10 @@ import org.example.pioneer.dto.dto.UserDto;
 import org.example.pioneer.dto.request.DateOfBirthUpdateRequest;
 import org.example.pioneer.dto.request.NameUpdateRequest;
 import org.example.pioneer.dto.request.PasswordUpdateRequest;
-import org.example.pioneer.model.User;
+import org.example.pioneer.dto.response.UserSliceResponse;
+import org.example.pioneer.model.UserSnapshot;
+import org.example.pioneer.service.CountMode;
+import org.example.pioneer.service.SearchCursor;
 import org.example.pioneer.service.UserService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -15,8 +18,10 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 @RestController
 @RequestMapping("/api/users")
@@ -34,13 +39,13 @@ public class UserController {
     public UserDto getById(
             @PathVariable @Min(1) Long id
     ) {
-        User u = userService.getById(id);
-        return toDto(u);
+        return toDto(userService.getById(id));
     }
 
     /**
      * GET /api/users
      * Поиск пользователей с фильтрами и пагинацией.
+     * count — как считать totalElements: exact (по умолчанию), capped, estimated ({@link CountMode}).
      */
     @GetMapping
     public Page<UserDto> search(
@@ -50,16 +55,49 @@ public class UserController {
             @RequestParam Optional<String> emailEquals,
             @RequestParam Optional<String> phoneEquals,
             @RequestParam(defaultValue = "0") @Min(0) int page,
-            @RequestParam(defaultValue = "10") @Min(1) int size
+            @RequestParam(defaultValue = "10") @Min(1) int size,
+            @RequestParam(defaultValue = "exact") String count
     ) {
         return userService.search(dateOfBirthAfter,
                         nameStartsWith,
                         emailEquals,
                         phoneEquals,
-                        page, size)
+                        page, size,
+                        CountMode.of(count))
                 .map(this::toDto);
     }
 
+    /**
+     * GET /api/users?after=...
+     * Тот же поиск с курсором: after — nextCursor из предыдущего ответа,
+     * пустой — первая страница. Общее число записей не считается.
+     */
+    @GetMapping(params = "after")
+    public UserSliceResponse searchAfter(
+            @RequestParam Optional<LocalDate> dateOfBirthAfter,
+            @RequestParam Optional<String> nameStartsWith,
+            @RequestParam Optional<String> emailEquals,
+            @RequestParam Optional<String> phoneEquals,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") @Min(1) int size
+    ) {
+        Slice<UserSnapshot> slice = userService.searchAfter(dateOfBirthAfter,
+                nameStartsWith,
+                emailEquals,
+                phoneEquals,
+                Optional.of(after), size);
+        List<UserDto> content = slice.map(this::toDto).getContent();
+        String next = null;
+        if (slice.hasNext() && !content.isEmpty()) {
+            UserDto last = content.get(content.size() - 1);
+            // поиск по имени идёт по имени — курсор продолжает с имени, иначе с id
+            next = slice.getSort().getOrderFor("name") != null
+                    ? SearchCursor.encode(last.getId(), last.getName())
+                    : SearchCursor.encode(last.getId());
+        }
+        return new UserSliceResponse(content, next);
+    }
+
     /**
      * PUT /api/users/me/name
      * Сменить имя текущего пользователя.
@@ -100,11 +138,11 @@ public class UserController {
         userService.updateDateOfBirth(userId, req.getDateOfBirth());
     }
 
-    private UserDto toDto(User u) {
+    private UserDto toDto(UserSnapshot u) {
         return UserDto.builder()
-                .id(u.getId())
-                .name(u.getName())
-                .dateOfBirth(u.getDateOfBirth())
+                .id(u.id())
+                .name(u.name())
+                .dateOfBirth(u.dateOfBirth())
                 .build();
     }
 }
@@ -0,0 +1,19 @@
+package org.example.pioneer.dto.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import org.example.pioneer.service.TransferStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO с итогом одного перевода из пакета.
+ */
+@Data
+@Builder
+public class TransferResultDto {
+    private int index;
+    private Long toUserId;
+    private BigDecimal amount;
+    private TransferStatus status;
+}
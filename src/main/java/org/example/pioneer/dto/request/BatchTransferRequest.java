@@ -0,0 +1,24 @@
+package org.example.pioneer.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import org.example.pioneer.service.BatchTransferMode;
+
+import java.util.List;
+
+/**
+ * DTO для пакетного перевода.
+ */
+@Data
+public class BatchTransferRequest {
+
+    @NotEmpty
+    @Size(max = 1000, message = "Не более 1000 переводов в пакете")
+    private List<@Valid @NotNull TransferRequest> transfers;
+
+    @NotNull
+    private BatchTransferMode mode = BatchTransferMode.ALL_OR_NOTHING;
+}
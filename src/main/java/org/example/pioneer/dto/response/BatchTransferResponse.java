@@ -0,0 +1,14 @@
+package org.example.pioneer.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.pioneer.dto.dto.TransferResultDto;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BatchTransferResponse {
+    private int completed;
+    private List<TransferResultDto> results;
+}
@@ -0,0 +1,18 @@
+package org.example.pioneer.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.example.pioneer.dto.dto.UserDto;
+
+import java.util.List;
+
+/**
+ * Страница поиска пользователей по курсору.
+ */
+@Data
+@AllArgsConstructor
+public class UserSliceResponse {
+    private List<UserDto> content;
+    /** Курсор следующей страницы для параметра after; null — страница последняя. */
+    private String nextCursor;
+}
@@ -0,0 +1,353 @@
+package org.example.pioneer.engine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.pioneer.model.Money;
+import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.TransferEntryRepository;
+import org.example.pioneer.repository.TransferIdempotencyKeyRepository;
+import org.example.pioneer.repository.TransferLedgerRepository;
+import org.example.pioneer.service.InterestAccrualStartedEvent;
+import org.example.pioneer.service.InterestAccruedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * In-memory движок переводов для transfer.mode=IN_MEMORY.
+ * <p>
+ * Балансы всех счетов держатся в памяти в минимальных единицах {@link Money}
+ * и разбиты на N шардов по id. Каждым шардом владеет один поток-писатель, поэтому
+ * перевод внутри шарда не требует ни блокировок, ни чтения из БД. Перевод между
+ * шардами — списание в шарде отправителя и зачисление сообщением в шард получателя.
+ * <p>
+ * Перевод подтверждается только после записи в журнал transfers — тот же, что у
+ * transfer.mode=LEDGER. Шарды отдают зачисленные переводы единственному потоку записи,
+ * он вставляет их одним JDBC-батчем и после коммита завершает future. До коммита
+ * зачисленные деньги получатель потратить не может: журнал вставляет записи без проверки
+ * остатка, и в нём не должно оказаться трат из ещё не записанных зачислений. Запись журнала
+ * содержит обе стороны перевода, так что он либо целиком в журнале, либо его нет.
+ * В accounts.balance журнал переносит LedgerAggregatorService, а при старте и загрузке счёта
+ * его баланс — balance плюс ещё не перенесённые записи: подтверждённые переводы
+ * переживают падение процесса, неподтверждённые не оставляют следов.
+ * <p>
+ * Пачку, которая не записалась за transfer.engine.journal-attempts попыток, поток записи
+ * пишет по одному переводу; перевод, не записанный и так, откатывается в памяти обоих шардов
+ * и завершается ошибкой, в лог пишется ошибка и растёт метрика ledger.journal.rejected.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfer.mode", havingValue = "IN_MEMORY")
+public class InMemoryLedgerEngine implements SmartLifecycle {
+
+    private static final long JOURNAL_RETRY_MS = 100;
+
+    private final AccountRepository accountRepo;
+    private final TransferEntryRepository journalRepo;
+    private final TransferIdempotencyKeyRepository keyRepo;
+    private final TransactionTemplate txTemplate;
+    /** Баланс и журнал читаются из одного снимка, иначе агрегатор может перенести запись между запросами. */
+    private final TransactionTemplate snapshotTx;
+    private final Counter rejected;
+
+    @Value("${transfer.engine.shards:4}")
+    private int shardCount = 4;
+
+    @Value("${transfer.engine.ring-size:65536}")
+    private int ringSize = 65_536;
+
+    @Value("${transfer.engine.journal-attempts:3}")
+    private int journalAttempts = 3;
+
+    private LedgerShard[] shards;
+    private Thread[] threads;
+    private ExecutorService journalWriter;
+    private volatile boolean running;
+
+    public InMemoryLedgerEngine(AccountRepository accountRepo, TransferEntryRepository journalRepo,
+                                TransferIdempotencyKeyRepository keyRepo,
+                                TransactionTemplate txTemplate, MeterRegistry registry) {
+        this.accountRepo = accountRepo;
+        this.journalRepo = journalRepo;
+        this.keyRepo = keyRepo;
+        this.txTemplate = txTemplate;
+        this.snapshotTx = new TransactionTemplate(txTemplate.getTransactionManager());
+        this.snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTx.setReadOnly(true);
+        this.rejected = Counter.builder("ledger.journal.rejected").register(registry);
+    }
+
+    /**
+     * Ставит перевод в очередь шарда отправителя.
+     * Future завершается, когда перевод записан в журнал (или с ошибкой
+     * InsufficientFundsException / ResourceNotFoundException / ошибкой записи).
+     */
+    public CompletableFuture<Void> transfer(long fromId, long toId, BigDecimal amount) {
+        return transfer(fromId, toId, amount, null);
+    }
+
+    /**
+     * То же с ключом идемпотентности: он пишется в запись журнала, и после падения
+     * по нему видно, состоялся ли перевод, ключ которого остался PENDING.
+     */
+    public CompletableFuture<Void> transfer(long fromId, long toId, BigDecimal amount, String idemKey) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        submit(shardFor(fromId), new LedgerShard.Debit(fromId, toId, toUnits(amount), idemKey, result));
+        return result;
+    }
+
+    /**
+     * Баланс счёта с учётом ещё не перенесённых в БД переводов.
+     */
+    public CompletableFuture<BigDecimal> balanceOf(long accountId) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        submit(shardFor(accountId), new LedgerShard.Read(accountId, result));
+        return result.thenApply(InMemoryLedgerEngine::toAmount);
+    }
+
+    /**
+     * Начисление процентов меняет balance в БД напрямую. Загруженные счета догоняют его
+     * по начисленным суммам, а счета, которых в памяти нет, до конца начисления не загружаются.
+     * Ждём только, пока шарды примут это к сведению: переводы не останавливаются.
+     */
+    @EventListener
+    public void onInterestAccrualStarted(InterestAccrualStartedEvent event) {
+        if (running) {
+            broadcast(LedgerShard.AccrualStarted::new);
+        }
+    }
+
+    /** Начисленные суммы прибавляются в шардах, без паузы и перечитывания балансов. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInterestAccrued(InterestAccruedEvent event) {
+        if (!running) {
+            return;
+        }
+        LongLongHashMap[] accrued = new LongLongHashMap[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            accrued[i] = new LongLongHashMap(Math.max(16, event.accrued().size() / shards.length));
+        }
+        event.accrued().forEach((id, amount) -> accrued[shardIndex(id)].put(id, toUnits(amount)));
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].sendInternal(new LedgerShard.Accrue(accrued[i], event.finished()));
+        }
+    }
+
+    // --- SmartLifecycle ---
+
+    @Override
+    public synchronized void start() {
+        shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i, this, ringSize);
+        }
+        journalWriter = Executors.newSingleThreadExecutor(r -> new Thread(r, "ledger-journal"));
+        settlePendingKeys();
+
+        LongLongHashMap snapshot = snapshotBalances();
+        snapshot.forEach((id, units) -> shardFor(id).load(id, units));
+
+        threads = new Thread[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            threads[i] = new Thread(shards[i], "ledger-shard-" + i);
+            threads[i].start();
+        }
+        running = true;
+        log.info("In-memory ledger started: {} accounts in {} shards", snapshot.size(), shardCount);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (LedgerShard shard : shards) {
+            shard.stop();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journalWriter.shutdown();
+        try {
+            if (!journalWriter.awaitTermination(30, TimeUnit.SECONDS)) {
+                // незаписанные переводы не подтверждены вызывающим — они просто не состоялись
+                log.error("In-memory ledger: не все переводы записаны в журнал до остановки");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Раньше веб-сервера (его фаза — DEFAULT_PHASE - 2048): движок загружен до первого
+     * запроса, а останавливается после того, как сервер перестал принимать переводы.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    // --- для шардов ---
+
+    LedgerShard shardFor(long accountId) {
+        return shards[shardIndex(accountId)];
+    }
+
+    private int shardIndex(long accountId) {
+        long h = accountId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) shards.length);
+    }
+
+    void journal(int shardIndex, List<LedgerShard.Credit> decided) {
+        journalWriter.execute(() -> writeJournal(shardIndex, decided));
+    }
+
+    long loadBalance(long accountId) {
+        BigDecimal balance = snapshotTx.execute(status -> {
+            BigDecimal stored = accountRepo.findBalances(List.of(accountId)).get(accountId);
+            return stored == null ? null : stored.add(journalRepo.pendingDelta(accountId));
+        });
+        return balance == null ? LongLongHashMap.MISSING : toUnits(balance);
+    }
+
+    void onCommandFailure(LedgerShard.Command command, RuntimeException e) {
+        log.error("In-memory ledger: команда {} завершилась ошибкой", command, e);
+        if (command instanceof LedgerShard.Credit c) {
+            // зачисление не прошло (переполнение, ошибка чтения счёта), а списание уже сделано — возвращаем
+            shardFor(c.fromId()).sendInternal(new LedgerShard.Revert(c.fromId(), c.amountUnits()));
+        }
+        command.fail(e);
+    }
+
+    // --- перевод сумм ---
+
+    static long toUnits(BigDecimal amount) {
+        return Money.unitsOf(amount);
+    }
+
+    static BigDecimal toAmount(long units) {
+        return Money.toBigDecimal(units);
+    }
+
+    private void submit(LedgerShard shard, LedgerShard.Command command) {
+        if (!running) {
+            throw new IllegalStateException("In-memory ledger не запущен");
+        }
+        // буфер полон — короткое ожидание вместо отказа; при перегрузке вызывающий упрётся в таймаут
+        while (!shard.offer(command)) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    private void writeJournal(int shardIndex, List<LedgerShard.Credit> decided) {
+        for (int attempt = 1; attempt <= journalAttempts; attempt++) {
+            try {
+                append(decided);
+                decided.forEach(this::confirm);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("In-memory ledger: запись в журнал {} переводов шарда {} не удалась (попытка {} из {})",
+                        decided.size(), shardIndex, attempt, journalAttempts, e);
+                if (attempt < journalAttempts) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(JOURNAL_RETRY_MS));
+                }
+            }
+        }
+        // пачку не пропускает, скорее всего, один перевод (например, счёт удалён из БД) — пишем по одному
+        for (LedgerShard.Credit c : decided) {
+            try {
+                append(List.of(c));
+                confirm(c);
+            } catch (RuntimeException e) {
+                reject(c, e);
+            }
+        }
+    }
+
+    private void append(List<LedgerShard.Credit> credits) {
+        List<TransferLedgerRepository.Entry> rows = credits.stream()
+                .map(c -> new TransferLedgerRepository.Entry(c.fromId(), c.toId(), toAmount(c.amountUnits()),
+                        c.idemKey()))
+                .toList();
+        txTemplate.executeWithoutResult(status -> journalRepo.appendAll(rows));
+    }
+
+    /** Деньги становятся доступны получателю раньше, чем вызывающий узнает о переводе. */
+    private void confirm(LedgerShard.Credit c) {
+        shardFor(c.toId()).sendInternal(new LedgerShard.Settle(c.toId(), c.amountUnits(), true));
+        c.result().complete(null);
+    }
+
+    private void reject(LedgerShard.Credit c, RuntimeException e) {
+        rejected.increment();
+        log.error("In-memory ledger: перевод {} -> {} на {} не записан в журнал и отменён",
+                c.fromId(), c.toId(), toAmount(c.amountUnits()), e);
+        shardFor(c.fromId()).sendInternal(new LedgerShard.Revert(c.fromId(), c.amountUnits()));
+        shardFor(c.toId()).sendInternal(new LedgerShard.Settle(c.toId(), c.amountUnits(), false));
+        c.result().completeExceptionally(e);
+    }
+
+    /**
+     * Ключи идемпотентности, оставшиеся PENDING от прошлого запуска: их переводы либо
+     * уже в журнале, либо пропали вместе с памятью процесса и не выполнятся.
+     */
+    private void settlePendingKeys() {
+        txTemplate.executeWithoutResult(status -> {
+            int done = keyRepo.settlePendingFromJournal();
+            int lost = keyRepo.deleteAllPending();
+            if (done + lost > 0) {
+                log.info("In-memory ledger: ключей PENDING выполнено {}, освобождено {}", done, lost);
+            }
+        });
+    }
+
+    /** Балансы всех счетов с учётом ещё не перенесённых записей журнала, из одного снимка БД. */
+    private LongLongHashMap snapshotBalances() {
+        LongLongHashMap snapshot = new LongLongHashMap(1024);
+        snapshotTx.executeWithoutResult(status -> {
+            Map<Long, Long> pending = new HashMap<>();
+            journalRepo.pendingDeltas().forEach((id, delta) -> pending.put(id, toUnits(delta)));
+            accountRepo.forEachBalance((id, balance) ->
+                    snapshot.put(id, toUnits(balance) + pending.getOrDefault(id, 0L)));
+        });
+        return snapshot;
+    }
+
+    private void broadcast(Function<CompletableFuture<Void>, LedgerShard.Command> command) {
+        List<CompletableFuture<Void>> done = new ArrayList<>(shards.length);
+        for (LedgerShard shard : shards) {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            shard.sendInternal(command.apply(f));
+            done.add(f);
+        }
+        CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).join();
+    }
+}
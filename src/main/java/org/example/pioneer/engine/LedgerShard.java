@@ -0,0 +1,338 @@
+package org.example.pioneer.engine;
+
+import org.example.pioneer.exception.InsufficientFundsException;
+import org.example.pioneer.exception.ResourceNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Шард движка: балансы части счетов и единственный поток, который их меняет.
+ * Внешние команды приходят через {@link MpscRingBuffer}, команды от других шардов
+ * и от движка (зачисление, откат, проценты) — через отдельную неограниченную очередь,
+ * чтобы два заполненных шарда не ждали друг друга.
+ * <p>
+ * Зачисленные переводы копятся в шарде и уходят в журнал пачкой, когда очереди
+ * пусты или пачка заполнилась; future перевода завершает поток записи журнала.
+ * <p>
+ * Зачисление видно в балансе сразу, но тратить его нельзя, пока запись журнала не закоммичена
+ * (сумма держится в unconfirmed до {@link Settle}): иначе перевод из этих денег мог бы попасть
+ * в журнал раньше перевода, который их принёс, и после падения баланс в БД ушёл бы в минус.
+ * <p>
+ * Проценты, начисленные в БД, шард прибавляет к загруженным счетам по {@link Accrue}.
+ * Пока начисление идёт, счёт, которого ещё нет в памяти, не загружается: его баланс в БД
+ * мог уже получить проценты, и {@link Accrue} прибавил бы их второй раз. Команды по таким счетам
+ * ждут конца начисления.
+ */
+final class LedgerShard implements Runnable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int JOURNAL_BATCH = 1024;
+
+    private final int index;
+    private final InMemoryLedgerEngine engine;
+    private final MpscRingBuffer<Command> inbox;
+    private final ConcurrentLinkedQueue<Command> internal = new ConcurrentLinkedQueue<>();
+    private final LongLongHashMap balances = new LongLongHashMap(1024);
+    /** Зачисления, ещё не записанные в журнал: часть баланса, недоступная для списаний. */
+    private final LongLongHashMap unconfirmed = new LongLongHashMap(1024);
+
+    private List<Credit> decided = new ArrayList<>();
+    /** Начислений процентов в работе и команды по незагруженным счетам, ждущие их конца. */
+    private int accruals;
+    private List<Command> deferred = new ArrayList<>();
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    LedgerShard(int index, InMemoryLedgerEngine engine, int ringSize) {
+        this.index = index;
+        this.engine = engine;
+        this.inbox = new MpscRingBuffer<>(ringSize);
+    }
+
+    /** Только до старта потока. */
+    void load(long accountId, long units) {
+        balances.put(accountId, units);
+    }
+
+    boolean offer(Command command) {
+        if (!inbox.offer(command)) {
+            return false;
+        }
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    void sendInternal(Command command) {
+        internal.add(command);
+        LockSupport.unpark(thread);
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        while (true) {
+            Command c = internal.poll();
+            if (c == null) {
+                c = inbox.poll();
+            }
+            if (c == null) {
+                journalDecided();
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                c.applyTo(this);
+            } catch (RuntimeException e) {
+                engine.onCommandFailure(c, e);
+            }
+            if (decided.size() >= JOURNAL_BATCH) {
+                journalDecided();
+            }
+        }
+        journalDecided();
+    }
+
+    // --- обработка команд, вызывается только из потока шарда ---
+
+    void debit(Debit d) {
+        if (deferredByAccrual(d.fromId(), d)) {
+            return;
+        }
+        long balance = balanceOrLoad(d.fromId());
+        if (balance == LongLongHashMap.MISSING) {
+            d.result().completeExceptionally(
+                    new ResourceNotFoundException("Account не найден для userId=" + d.fromId()));
+            return;
+        }
+        if (balance - unconfirmed(d.fromId()) < d.amountUnits()) {
+            d.result().completeExceptionally(new InsufficientFundsException(d.fromId(),
+                    "недостаточно средств для перевода " + InMemoryLedgerEngine.toAmount(d.amountUnits())));
+            return;
+        }
+        // в журнал перевод попадает целиком из шарда получателя; до тех пор списание — резерв в памяти
+        balances.put(d.fromId(), balance - d.amountUnits());
+        engine.shardFor(d.toId()).sendInternal(new Credit(d.fromId(), d.toId(), d.amountUnits(), d.idemKey(), d.result()));
+    }
+
+    void credit(Credit c) {
+        if (deferredByAccrual(c.toId(), c)) {
+            return;
+        }
+        long balance = balanceOrLoad(c.toId());
+        if (balance == LongLongHashMap.MISSING) {
+            // списание уже прошло — возвращаем деньги отправителю
+            engine.shardFor(c.fromId()).sendInternal(new Revert(c.fromId(), c.amountUnits()));
+            c.result().completeExceptionally(
+                    new ResourceNotFoundException("Account не найден для userId=" + c.toId()));
+            return;
+        }
+        long credited = Math.addExact(balance, c.amountUnits());
+        unconfirmed.addTo(c.toId(), c.amountUnits());
+        balances.put(c.toId(), credited);
+        decided.add(c);
+    }
+
+    /** Возврат списания, которое не стало переводом. */
+    void revert(Revert r) {
+        balances.put(r.accountId(), Math.addExact(balances.get(r.accountId()), r.amountUnits()));
+    }
+
+    /**
+     * Запись журнала о зачислении закоммичена — деньги можно тратить;
+     * или не записалась — зачисление снимается. Снять можно только то, что ещё не потрачено,
+     * а потратить неподтверждённое нельзя, поэтому баланс в минус не уходит.
+     */
+    void settle(Settle s) {
+        long pending = unconfirmed(s.accountId());
+        if (pending < s.amountUnits()) {
+            throw new IllegalStateException("Зачисление " + s.amountUnits() + " на счёт " + s.accountId()
+                    + " не числится неподтверждённым (" + pending + ")");
+        }
+        unconfirmed.put(s.accountId(), pending - s.amountUnits());
+        if (!s.journaled()) {
+            balances.put(s.accountId(), balances.get(s.accountId()) - s.amountUnits());
+        }
+    }
+
+    /** Баланс без неподтверждённых зачислений: ровно столько видно в БД после записи журнала. */
+    void read(Read r) {
+        if (deferredByAccrual(r.accountId(), r)) {
+            return;
+        }
+        long balance = balanceOrLoad(r.accountId());
+        if (balance == LongLongHashMap.MISSING) {
+            r.result().completeExceptionally(
+                    new ResourceNotFoundException("Account не найден для userId=" + r.accountId()));
+        } else {
+            r.result().complete(balance - unconfirmed(r.accountId()));
+        }
+    }
+
+    void accrualStarted(AccrualStarted a) {
+        accruals++;
+        a.result().complete(null);
+    }
+
+    /** Проценты, закоммиченные в БД, прибавляются к загруженным счетам; незагруженные прочитают их из БД. */
+    void accrue(Accrue a) {
+        try {
+            a.accrued().forEach((id, units) -> {
+                long balance = balances.get(id);
+                if (balance != LongLongHashMap.MISSING) {
+                    balances.put(id, Math.addExact(balance, units));
+                }
+            });
+        } finally {
+            if (a.finished() && accruals > 0 && --accruals == 0) {
+                replayDeferred();
+            }
+        }
+    }
+
+    private void replayDeferred() {
+        List<Command> replay = deferred;
+        deferred = new ArrayList<>();
+        for (Command c : replay) {
+            try {
+                c.applyTo(this);
+            } catch (RuntimeException e) {
+                engine.onCommandFailure(c, e);
+            }
+        }
+    }
+
+    private boolean deferredByAccrual(long accountId, Command command) {
+        if (accruals == 0 || balances.containsKey(accountId)) {
+            return false;
+        }
+        deferred.add(command);
+        return true;
+    }
+
+    private long unconfirmed(long accountId) {
+        long units = unconfirmed.get(accountId);
+        return units == LongLongHashMap.MISSING ? 0 : units;
+    }
+
+    private long balanceOrLoad(long accountId) {
+        long balance = balances.get(accountId);
+        if (balance == LongLongHashMap.MISSING) {
+            // счёт появился после старта — редкий случай, читаем синхронно
+            balance = engine.loadBalance(accountId);
+            if (balance != LongLongHashMap.MISSING) {
+                balances.put(accountId, balance);
+            }
+        }
+        return balance;
+    }
+
+    private void journalDecided() {
+        if (decided.isEmpty()) {
+            return;
+        }
+        List<Credit> batch = decided;
+        decided = new ArrayList<>();
+        engine.journal(index, batch);
+    }
+
+    // --- команды ---
+
+    interface Command {
+        void applyTo(LedgerShard shard);
+
+        void fail(RuntimeException e);
+    }
+
+    /** @param idemKey Idempotency-Key перевода или null; пишется в журнал */
+    record Debit(long fromId, long toId, long amountUnits, String idemKey,
+                 CompletableFuture<Void> result) implements Command {
+        public void applyTo(LedgerShard shard) {
+            shard.debit(this);
+        }
+
+        public void fail(RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    record Credit(long fromId, long toId, long amountUnits, String idemKey,
+                  CompletableFuture<Void> result) implements Command {
+        public void applyTo(LedgerShard shard) {
+            shard.credit(this);
+        }
+
+        public void fail(RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /** Возврат списания, которое не стало переводом. */
+    record Revert(long accountId, long amountUnits) implements Command {
+        public void applyTo(LedgerShard shard) {
+            shard.revert(this);
+        }
+
+        public void fail(RuntimeException e) {
+            // ждать результата некому; ошибку логирует движок
+        }
+    }
+
+    /** Итог записи зачисления в журнал: journaled — записано, иначе зачисление снимается. */
+    record Settle(long accountId, long amountUnits, boolean journaled) implements Command {
+        public void applyTo(LedgerShard shard) {
+            shard.settle(this);
+        }
+
+        public void fail(RuntimeException e) {
+            // ждать результата некому; ошибку логирует движок
+        }
+    }
+
+    record Read(long accountId, CompletableFuture<Long> result) implements Command {
+        public void applyTo(LedgerShard shard) {
+            shard.read(this);
+        }
+
+        public void fail(RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /** Начисление процентов начинается; result завершается, когда шард перестал загружать новые счета. */
+    record AccrualStarted(CompletableFuture<Void> result) implements Command {
+        public void applyTo(LedgerShard shard) {
+            shard.accrualStarted(this);
+        }
+
+        public void fail(RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @param accrued  начисленные единицы по счетам этого шарда; шард только читает карту
+     * @param finished последняя часть начисления
+     */
+    record Accrue(LongLongHashMap accrued, boolean finished) implements Command {
+        public void applyTo(LedgerShard shard) {
+            shard.accrue(this);
+        }
+
+        public void fail(RuntimeException e) {
+            // ждать результата некому; ошибку логирует движок
+        }
+    }
+}
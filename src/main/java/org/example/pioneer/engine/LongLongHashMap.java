@@ -0,0 +1,144 @@
+package org.example.pioneer.engine;
+
+/**
+ * Открытая адресация long → long без упаковки в Long.
+ * Не потокобезопасна: каждым экземпляром владеет один поток-писатель шарда.
+ */
+public final class LongLongHashMap {
+
+    /** Значение, которое возвращается для отсутствующего ключа. */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private long[] values;
+    private boolean hasZeroKey;
+    private long zeroValue;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    public long get(long key) {
+        if (key == FREE) {
+            return hasZeroKey ? zeroValue : MISSING;
+        }
+        int i = index(key);
+        while (true) {
+            long k = keys[i];
+            if (k == FREE) {
+                return MISSING;
+            }
+            if (k == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    public void put(long key, long value) {
+        if (key == FREE) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int i = index(key);
+        while (true) {
+            long k = keys[i];
+            if (k == FREE) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size > resizeAt) {
+                    allocateAndRehash();
+                }
+                return;
+            }
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Прибавляет delta к значению ключа (отсутствующий ключ считается нулём).
+     */
+    public void addTo(long key, long delta) {
+        long current = get(key);
+        put(key, current == MISSING ? delta : Math.addExact(current, delta));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongLongConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(FREE, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public long[] keys() {
+        long[] out = new long[size];
+        int[] n = {0};
+        forEach((k, v) -> out[n[0]++] = k);
+        return out;
+    }
+
+    private int index(long key) {
+        // перемешивание битов, чтобы последовательные id не слипались в кластеры
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * 0.6);
+    }
+
+    private void allocateAndRehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(keys.length << 1);
+        size = hasZeroKey ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LongLongHashMap{size=" + size + ", capacity=" + keys.length + "}";
+    }
+
+    @FunctionalInterface
+    public interface LongLongConsumer {
+        void accept(long key, long value);
+    }
+}
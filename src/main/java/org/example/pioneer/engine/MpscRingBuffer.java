@@ -0,0 +1,74 @@
+package org.example.pioneer.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный lock-free буфер: много производителей, один потребитель.
+ * У каждой ячейки есть номер последовательности: производитель занимает позицию CAS-ом
+ * по tail и публикует элемент, сдвигая номер ячейки; потребитель читает только
+ * опубликованные ячейки и освобождает их для следующего круга.
+ */
+public final class MpscRingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // читает и пишет только поток-потребитель
+
+    public MpscRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ёмкость должна быть степенью двойки: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false, если буфер заполнен
+     */
+    public boolean offer(T element) {
+        while (true) {
+            long pos = tail.get();
+            int idx = (int) pos & mask;
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(idx, element);
+                    sequences.set(idx, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            // иначе позицию уже занял другой производитель — пробуем следующую
+        }
+    }
+
+    /**
+     * Вызывается только потоком-потребителем.
+     * @return следующий элемент или null, если опубликованных элементов нет
+     */
+    public T poll() {
+        long pos = head;
+        int idx = (int) pos & mask;
+        if (sequences.get(idx) != pos + 1) {
+            return null;
+        }
+        T element = slots.get(idx);
+        slots.lazySet(idx, null);
+        sequences.set(idx, pos + mask + 1);
+        head = pos + 1;
+        return element;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
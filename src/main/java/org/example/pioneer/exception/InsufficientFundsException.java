@@ -4,4 +4,9 @@ public class InsufficientFundsException extends RuntimeException {
   public InsufficientFundsException(Long userId, String detail) {
     super("Недостаточно средств на счете пользователя " + userId + ": " + detail);
   }
+
+  /** Повтор уже записанного отказа с исходным сообщением. */
+  public InsufficientFundsException(String message) {
+    super(message);
+  }
 }
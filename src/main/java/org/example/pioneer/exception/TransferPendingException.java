@@ -0,0 +1,11 @@
+package org.example.pioneer.exception;
+
+/**
+ * Перевод принят, но за время ожидания не подтверждён и ещё может выполниться.
+ * Это не отказ: итог узнаётся повтором с тем же Idempotency-Key.
+ */
+public class TransferPendingException extends RuntimeException {
+    public TransferPendingException(String message) {
+        super(message);
+    }
+}
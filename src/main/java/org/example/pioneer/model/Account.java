@@ -3,13 +3,24 @@ package org.example.pioneer.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
-import java.math.BigDecimal;
+import java.io.Serializable;
 
+/**
+ * Счёт пользователя; id совпадает с id пользователя.
+ * <p>
+ * В L2-кэше Hibernate (регион account) — READ_WRITE: запись блокирует элемент кэша до коммита,
+ * а @Version не даёт сохранить изменение, сделанное по устаревшей копии. Баланс, изменённый
+ * мимо Hibernate (SQL, JDBC-батчи), сбрасывается из региона через {@code AccountService.evict}.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "account")
 @Table(name = "accounts")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
-public class Account {
+public class Account implements Serializable {
 
     @Id
     @Column(name = "id")
@@ -25,8 +36,9 @@ public class Account {
             precision = 19,
             scale = 4
     )
+    @Convert(converter = MoneyConverter.class)
     @NotNull
-    private BigDecimal balance;
+    private Money balance;
 
     @Column(
             name = "initial_balance",
@@ -34,8 +46,21 @@ public class Account {
             precision = 19,
             scale = 4
     )
+    @Convert(converter = MoneyConverter.class)
     @NotNull
-    private BigDecimal initialBalance;
+    private Money initialBalance;
+
+    /**
+     * Номер прогона начисления процентов, последним изменившего баланс (interest.mode=CHUNKED).
+     */
+    @Column(name = "accrual_run")
+    private Long accrualRun;
+
+    /**
+     * Период, на начало которого рассчитан balance (interest.mode=LAZY).
+     */
+    @Column(name = "accrual_epoch")
+    private Long accrualEpoch;
 
     @Version
     @Column(name = "version", nullable = false)
@@ -0,0 +1,13 @@
+package org.example.pioneer.model;
+
+/**
+ * Неизменяемый снимок счёта для кэша.
+ * В режиме interest.mode=LAZY balance — база на начало периода accrualEpoch,
+ * проценты применяются к снимку уже после чтения из кэша.
+ */
+public record AccountSnapshot(Long id, Money balance, Money initialBalance, Long accrualEpoch, Long version) {
+
+    public AccountSnapshot withBalance(Money balance, Long accrualEpoch) {
+        return new AccountSnapshot(id, balance, initialBalance, accrualEpoch, version);
+    }
+}
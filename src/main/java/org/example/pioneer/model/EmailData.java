@@ -5,16 +5,21 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PastOrPresent;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.io.Serializable;
 import java.time.Instant;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "email")
 @Table(
         name = "email_data",
         uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "email"})
 )
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
-public class EmailData {
+public class EmailData implements Serializable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,42 @@
+package org.example.pioneer.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
+
+/**
+ * Прогон начисления процентов (interest.mode=CHUNKED) и его контрольная точка.
+ * lastId — все счета с id ≤ lastId уже обработаны; незавершённый прогон
+ * (finishedAt = null) продолжается со следующего тика.
+ * periods — сколько пропущенных периодов начисляет прогон, targetPeriod — период,
+ * который считается выполненным после его завершения.
+ */
+@Entity
+@Table(name = "interest_accrual_runs")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class InterestAccrualRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    @Column(name = "last_id", nullable = false)
+    private long lastId;
+
+    // значения по умолчанию — для строк, созданных до появления колонок
+    @ColumnDefault("1")
+    @Column(name = "periods", nullable = false)
+    private long periods;
+
+    @ColumnDefault("0")
+    @Column(name = "target_period", nullable = false)
+    private long targetPeriod;
+}
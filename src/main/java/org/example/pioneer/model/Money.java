@@ -0,0 +1,133 @@
+package org.example.pioneer.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Денежная сумма с фиксированной точкой: long в минимальных единицах NUMERIC(19,4),
+ * 1 единица = 0.0001.
+ * <p>
+ * Все операции проверяют переполнение и бросают ArithmeticException вместо тихого
+ * заворачивания. Умножение на коэффициент округляет HALF_EVEN ровно как
+ * {@code amount.multiply(rate).setScale(scale, HALF_EVEN)}. Статические методы над
+ * единицами не создают объектов и предназначены для горячих циклов.
+ */
+public record Money(long units) implements Comparable<Money>, Serializable {
+
+    public static final int SCALE = 4;
+    public static final Money ZERO = new Money(0);
+
+    public static Money of(BigDecimal amount) {
+        return new Money(unitsOf(amount));
+    }
+
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public static Money ofUnits(long units) {
+        return new Money(units);
+    }
+
+    /**
+     * Сумма в единицах; сумма с более чем {@value #SCALE} знаками после запятой
+     * или вне диапазона long не принимается.
+     */
+    public static long unitsOf(BigDecimal amount) {
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Сумма должна иметь не более " + SCALE
+                    + " знаков после запятой и не выходить за пределы long: " + amount);
+        }
+    }
+
+    public static BigDecimal toBigDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /**
+     * units * rate (оба в единицах {@value #SCALE} знаков) с округлением HALF_EVEN
+     * до scale знаков; результат снова в единицах.
+     * Произведение не собирается целиком: units раскладывается по делителю округления,
+     * поэтому переполнение возможно только когда не помещается сам результат.
+     */
+    public static long multiplyUnits(long units, long rate, int scale) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Коэффициент не может быть отрицательным: " + toBigDecimal(rate));
+        }
+        if (scale < 0 || scale > SCALE) {
+            throw new IllegalArgumentException("scale должен быть от 0 до " + SCALE + ": " + scale);
+        }
+        long divisor = pow10(2 * SCALE - scale);
+        // units * rate / divisor = hi * rate + lo * rate / divisor
+        long hi = Math.floorDiv(units, divisor);
+        long lo = Math.floorMod(units, divisor);
+        long loProduct = Math.multiplyExact(lo, rate);
+        long quotient = Math.addExact(Math.multiplyExact(hi, rate), Math.floorDiv(loProduct, divisor));
+        long remainder = Math.floorMod(loProduct, divisor);
+        long twice = remainder * 2;
+        if (twice > divisor || (twice == divisor && (quotient & 1) != 0)) {
+            quotient = Math.addExact(quotient, 1);
+        }
+        return Math.multiplyExact(quotient, pow10(SCALE - scale));
+    }
+
+    // switch, а не таблица: при константном scale JIT сворачивает делитель в константу
+    // и заменяет деление умножением
+    private static long pow10(int n) {
+        return switch (n) {
+            case 0 -> 1L;
+            case 1 -> 10L;
+            case 2 -> 100L;
+            case 3 -> 1_000L;
+            case 4 -> 10_000L;
+            case 5 -> 100_000L;
+            case 6 -> 1_000_000L;
+            case 7 -> 10_000_000L;
+            case 8 -> 100_000_000L;
+            default -> throw new IllegalArgumentException("10^" + n);
+        };
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(units, other.units));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(units, other.units));
+    }
+
+    /**
+     * Умножение на коэффициент с округлением HALF_EVEN до scale знаков.
+     */
+    public Money multiply(Money rate, int scale) {
+        return new Money(multiplyUnits(units, rate.units, scale));
+    }
+
+    public Money min(Money other) {
+        return units <= other.units ? this : other;
+    }
+
+    public int signum() {
+        return Long.signum(units);
+    }
+
+    public boolean isNegative() {
+        return units < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(units);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
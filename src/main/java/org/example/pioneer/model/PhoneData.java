@@ -5,16 +5,21 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PastOrPresent;
 import jakarta.validation.constraints.Pattern;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.io.Serializable;
 import java.time.Instant;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "phone")
 @Table(
         name = "phone_data",
         uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "phone"})
 )
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
-public class PhoneData {
+public class PhoneData implements Serializable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,29 @@
+package org.example.pioneer.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Аренда фоновой задачи в кластере: задачу выполняет только владелец неистёкшей аренды.
+ * lastPeriod — последний выполненный период задачи, общий для всех узлов.
+ */
+@Entity
+@Table(name = "scheduler_leases")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class SchedulerLease {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "last_period")
+    private Long lastPeriod;
+}
@@ -0,0 +1,45 @@
+package org.example.pioneer.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Запись журнала переводов (transfer.mode=LEDGER). Только добавляется;
+ * applied = true, когда сумма уже перенесена в accounts.balance агрегатором.
+ */
+@Entity
+@Table(
+        name = "transfers",
+        indexes = {
+                @Index(name = "idx_transfers_from_user_id", columnList = "from_user_id"),
+                @Index(name = "idx_transfers_to_user_id", columnList = "to_user_id")
+        }
+)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class TransferEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "from_user_id", nullable = false)
+    private Long fromUserId;
+
+    @Column(name = "to_user_id", nullable = false)
+    private Long toUserId;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(name = "idem_key", length = 255)
+    private String idemKey;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "applied", nullable = false)
+    private boolean applied;
+}
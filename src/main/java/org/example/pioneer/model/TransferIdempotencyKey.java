@@ -0,0 +1,53 @@
+package org.example.pioneer.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Ключ идемпотентности перевода. Пишется в той же транзакции, что и изменение балансов,
+ * поэтому ключ без outcome означает, что перевод с этим ключом уже выполнен.
+ * Окончательный отказ пишется отдельной транзакцией после отката перевода.
+ */
+@Entity
+@Table(
+        name = "transfer_idempotency_keys",
+        indexes = @Index(name = "idx_transfer_idempotency_keys_created_at", columnList = "created_at")
+)
+@IdClass(TransferIdempotencyKey.Key.class)
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class TransferIdempotencyKey {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Id
+    @Column(name = "idem_key", length = 255, nullable = false)
+    private String idemKey;
+
+    @Column(name = "to_user_id", nullable = false)
+    private Long toUserId;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /** null — перевод выполнен, PENDING — итог ещё неизвестен, иначе имя TransferStatus отказа. */
+    @Column(name = "outcome", length = 32)
+    private String outcome;
+
+    @Column(name = "failure_message", length = 500)
+    private String failureMessage;
+
+    @Data @NoArgsConstructor @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private String idemKey;
+    }
+}
@@ -4,18 +4,30 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Past;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Пользователь. В L2-кэше Hibernate — сама запись (регион user) и коллекции контактов
+ * (user-emails, user-phones). Кэш локальный для узла, поэтому UPDATE пишет только
+ * изменённые колонки: правка по устаревшей копии не затирает чужие изменения других полей.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@DynamicUpdate
 @Table(
         name = "users",
         uniqueConstraints = @UniqueConstraint(columnNames = "login")
 )
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
-public class User {
+public class User implements Serializable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -43,6 +55,7 @@ public class User {
             orphanRemoval = true,
             fetch = FetchType.LAZY
     )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-emails")
     @Builder.Default
     private Set<EmailData> emails = new HashSet<>();
 
@@ -52,6 +65,7 @@ public class User {
             orphanRemoval = true,
             fetch = FetchType.LAZY
     )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-phones")
     @Builder.Default
     private Set<PhoneData> phones = new HashSet<>();
 
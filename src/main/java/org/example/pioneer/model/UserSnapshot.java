@@ -0,0 +1,10 @@
+package org.example.pioneer.model;
+
+import java.time.LocalDate;
+
+/**
+ * Неизменяемый снимок пользователя для кэша: только поля, которые отдаёт чтение,
+ * без ленивых коллекций и сессии Hibernate.
+ */
+public record UserSnapshot(Long id, String name, LocalDate dateOfBirth) {
+}
@@ -0,0 +1,62 @@
+package org.example.pioneer.repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетные операции над accounts через JDBC batching.
+ * Подмешивается в {@link AccountRepository} как фрагмент Spring Data.
+ */
+public interface AccountBatchRepository {
+
+    /**
+     * Выполняет переводы одним JDBC-батчем по {@link AccountRepository#ATOMIC_TRANSFER_SQL}.
+     * Операторы исполняются строго по порядку, поэтому каждый следующий видит результат предыдущих.
+     * @return по элементу на перевод: 1 — выполнен, 0 — не хватило средств или какого-то счёта нет
+     *         (списания при этом не было)
+     */
+    int[] transferAll(List<Transfer> transfers);
+
+    /**
+     * Потоковое чтение id и баланса всех счетов, без загрузки сущностей.
+     */
+    void forEachBalance(BalanceConsumer consumer);
+
+    /**
+     * Текущие балансы указанных счетов; отсутствующих id в результате нет.
+     */
+    Map<Long, BigDecimal> findBalances(Collection<Long> ids);
+
+    /**
+     * Начисление процентов одним проходом: periods раз balance = min(balance * rate, initial_balance * maxMultiplier),
+     * обе величины на каждом шаге округляются до копеек HALF_EVEN, как в BigDecimal.
+     * Меняются только строки, где новый баланс больше текущего.
+     * @param periods число начисляемых периодов, ≥ 1
+     * @return начисленная сумма по каждому изменённому счёту
+     */
+    Map<Long, BigDecimal> accrueInterest(BigDecimal rate, BigDecimal maxMultiplier, long periods);
+
+    /**
+     * То же для счетов с id в (afterId, toId], ещё не получивших проценты в прогоне run;
+     * изменённые счета помечаются accrual_run = run.
+     * @return начисленная сумма по каждому изменённому счёту
+     */
+    Map<Long, BigDecimal> accrueInterest(BigDecimal rate, BigDecimal maxMultiplier, long periods,
+                                         long run, long afterId, long toId);
+
+    /**
+     * Keyset-шаг: наибольший id среди следующих size счетов после afterId.
+     * @return null, если счетов после afterId нет
+     */
+    Long findChunkUpperBound(long afterId, int size);
+
+    record Transfer(Long fromId, Long toId, BigDecimal amount) {
+    }
+
+    @FunctionalInterface
+    interface BalanceConsumer {
+        void accept(long id, BigDecimal balance);
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.pioneer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class AccountBatchRepositoryImpl implements AccountBatchRepository {
+
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
+    // Шаги с округлением считаются рекурсивно по каждой строке, пока баланс растёт,
+    // но не больше :periods. Строки блокируются до чтения, чтобы перевод не изменил баланс
+    // между расчётом и записью, и по заблокированному балансу возвращается начисленная сумма.
+    private static final String ACCRUE_INTEREST_PERIODS_SQL = """
+            WITH RECURSIVE locked AS (
+                SELECT id, balance, %2$s AS cap
+                  FROM accounts
+                 WHERE %1$s
+                   FOR UPDATE
+            ), steps (id, n, bal, cap) AS (
+                SELECT id, 0, balance::numeric, cap FROM locked
+                UNION ALL
+                SELECT id, n + 1, LEAST(%3$s, cap), cap
+                  FROM steps
+                 WHERE n < :periods
+                   AND LEAST(%3$s, cap) > bal
+            ), accrued AS (
+                SELECT DISTINCT ON (id) id, bal FROM steps ORDER BY id, n DESC
+            )
+            UPDATE accounts a
+               SET balance = c.bal,
+                   version = COALESCE(a.version, 0) + 1%4$s
+              FROM accrued c
+              JOIN locked l ON l.id = c.id
+             WHERE a.id = c.id
+               AND c.bal > a.balance
+            RETURNING a.id, c.bal - l.balance
+            """;
+
+    private static final String ACCRUE_INTEREST_PERIODS_ALL_SQL = ACCRUE_INTEREST_PERIODS_SQL.formatted(
+            "TRUE",
+            roundHalfEven("initial_balance * :maxMultiplier"),
+            roundHalfEven("bal * :rate"),
+            "");
+
+    private static final String ACCRUE_INTEREST_PERIODS_RANGE_SQL = ACCRUE_INTEREST_PERIODS_SQL.formatted(
+            "id > :afterId AND id <= :toId AND COALESCE(accrual_run, 0) < :run",
+            roundHalfEven("initial_balance * :maxMultiplier"),
+            roundHalfEven("bal * :rate"),
+            ",\n                   accrual_run = :run");
+
+    private static final String CHUNK_UPPER_BOUND_SQL = """
+            SELECT MAX(id) FROM (
+                SELECT id FROM accounts WHERE id > :afterId ORDER BY id LIMIT :size
+            ) chunk
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public int[] transferAll(List<Transfer> transfers) {
+        SqlParameterSource[] params = transfers.stream()
+                .map(t -> new MapSqlParameterSource()
+                        .addValue("fromId", t.fromId())
+                        .addValue("toId", t.toId())
+                        .addValue("amount", t.amount()))
+                .toArray(SqlParameterSource[]::new);
+        return jdbc.batchUpdate(AccountRepository.ATOMIC_TRANSFER_SQL, params);
+    }
+
+    @Override
+    public void forEachBalance(BalanceConsumer consumer) {
+        // fetchSize работает только внутри транзакции (autocommit=false), иначе драйвер читает всё разом
+        jdbc.getJdbcTemplate().query(con -> {
+                    PreparedStatement ps = con.prepareStatement("SELECT id, balance FROM accounts");
+                    ps.setFetchSize(STREAM_FETCH_SIZE);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(rs.getLong(1), rs.getBigDecimal(2)));
+    }
+
+    @Override
+    public Map<Long, BigDecimal> accrueInterest(BigDecimal rate, BigDecimal maxMultiplier, long periods) {
+        return accrued(ACCRUE_INTEREST_PERIODS_ALL_SQL, new MapSqlParameterSource()
+                .addValue("rate", rate)
+                .addValue("maxMultiplier", maxMultiplier)
+                .addValue("periods", periods));
+    }
+
+    @Override
+    public Map<Long, BigDecimal> accrueInterest(BigDecimal rate, BigDecimal maxMultiplier, long periods,
+                                                long run, long afterId, long toId) {
+        return accrued(ACCRUE_INTEREST_PERIODS_RANGE_SQL, new MapSqlParameterSource()
+                .addValue("rate", rate)
+                .addValue("maxMultiplier", maxMultiplier)
+                .addValue("periods", periods)
+                .addValue("run", run)
+                .addValue("afterId", afterId)
+                .addValue("toId", toId));
+    }
+
+    @Override
+    public Long findChunkUpperBound(long afterId, int size) {
+        return jdbc.queryForObject(CHUNK_UPPER_BOUND_SQL, new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("size", size), Long.class);
+    }
+
+    @Override
+    public Map<Long, BigDecimal> findBalances(Collection<Long> ids) {
+        Map<Long, BigDecimal> out = new HashMap<>();
+        if (ids.isEmpty()) {
+            return out;
+        }
+        jdbc.query("SELECT id, balance FROM accounts WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                (RowCallbackHandler) rs -> out.put(rs.getLong(1), rs.getBigDecimal(2)));
+        return out;
+    }
+
+    private Map<Long, BigDecimal> accrued(String sql, SqlParameterSource params) {
+        Map<Long, BigDecimal> out = new LinkedHashMap<>();
+        jdbc.query(sql, params, (RowCallbackHandler) rs -> out.put(rs.getLong(1), rs.getBigDecimal(2)));
+        return out;
+    }
+
+    /**
+     * ROUND в Postgres округляет половину от нуля, а BigDecimal в сервисе — HALF_EVEN
+     * (банковское округление). Ровно половину копейки отдаём к чётной копейке вручную.
+     * Обе ветки дают масштаб 2: деление дало бы 20 знаков, и они дошли бы до RETURNING.
+     */
+    private static String roundHalfEven(String expr) {
+        return """
+                (SIGN(%1$s) * CASE
+                     WHEN MOD(ABS(%1$s) * 100, 1) = 0.5 AND MOD(TRUNC(ABS(%1$s) * 100), 2) = 0
+                         THEN TRUNC(ABS(%1$s), 2)
+                     ELSE ROUND(ABS(%1$s), 2)
+                 END)""".formatted(expr);
+    }
+}
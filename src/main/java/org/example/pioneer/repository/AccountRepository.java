@@ -1,21 +1,110 @@
 package org.example.pioneer.repository;
 
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.example.pioneer.model.Account;
+import org.example.pioneer.model.AccountSnapshot;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
-public interface AccountRepository extends JpaRepository<Account, Long> {
+public interface AccountRepository extends JpaRepository<Account, Long>, AccountBatchRepository {
+
+    /**
+     * Перевод одним запросом: условное списание в CTE и зачисление,
+     * которое выполняется только если списание прошло.
+     * Списание требует строку получателя и берёт на неё FOR KEY SHARE: удалить её до коммита нельзя,
+     * а встречные изменения баланса эта блокировка не ждут. Поэтому при 0 ничего не списано.
+     * Затронутых строк верхнего UPDATE: 1 — перевод выполнен, 0 — нет
+     * (не хватило средств или какого-то счёта нет).
+     */
+    String ATOMIC_TRANSFER_SQL = """
+            WITH debit AS (
+                UPDATE accounts
+                   SET balance = balance - :amount,
+                       version = COALESCE(version, 0) + 1
+                 WHERE id = :fromId AND balance >= :amount
+                   AND EXISTS (SELECT 1 FROM accounts WHERE id = :toId FOR KEY SHARE)
+                RETURNING id
+            )
+            UPDATE accounts
+               SET balance = balance + :amount,
+                   version = COALESCE(version, 0) + 1
+             WHERE id = :toId AND EXISTS (SELECT 1 FROM debit)
+            """;
 
     @Override
     @CacheEvict(cacheNames = "accounts", key = "#result.id")
     <S extends Account> S save(S entity);
 
-    @Cacheable(cacheNames = "accounts", key = "#id")
     Optional<Account> findByUserId(Long userId);
+
+    /**
+     * Счёт из БД, а не из L2-кэша Hibernate (он локален для узла и может отставать);
+     * прочитанная строка заменяет копию в L2.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "REFRESH"))
+    @Query("select a from Account a where a.id = :id")
+    Optional<Account> findFreshById(@Param("id") Long id);
+
+    /**
+     * Снимок счёта пользователя для чтения — кэшируется он, а не сущность.
+     * sync: одновременные промахи по userId ждут одну загрузку.
+     */
+    @Cacheable(cacheNames = "accounts", key = "#userId", sync = true)
+    @Query("select new org.example.pioneer.model.AccountSnapshot(a.id, a.balance, a.initialBalance, a.accrualEpoch, a.version)"
+            + " from Account a where a.user.id = :userId")
+    Optional<AccountSnapshot> findSnapshotByUserId(@Param("userId") Long userId);
+
+    /**
+     * Снимки счетов по списку id — пачка для прогрева кэша accounts
+     * (id счёта совпадает с id пользователя, то есть с ключом кэша).
+     */
+    @Query("select new org.example.pioneer.model.AccountSnapshot(a.id, a.balance, a.initialBalance, a.accrualEpoch, a.version)"
+            + " from Account a where a.id in :ids order by a.id")
+    List<AccountSnapshot> findSnapshotsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Какие из переданных id счетов существуют — одним запросом.
+     */
+    @Query("select a.id from Account a where a.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * SELECT ... FOR UPDATE по id счёта (id счёта совпадает с id пользователя).
+     * Кэш не используется: нужна актуальная строка под блокировкой.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id = :id")
+    Optional<Account> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Атомарный перевод за один round trip, см. {@link #ATOMIC_TRANSFER_SQL}.
+     * @return 1, если деньги переведены, иначе 0
+     */
+    @Modifying
+    @Query(value = ATOMIC_TRANSFER_SQL, nativeQuery = true)
+    // без указания таблицы Hibernate после native UPDATE очистил бы все регионы L2, а не только account
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "accounts"))
+    int transferAtomically(@Param("fromId") Long fromId,
+                           @Param("toId") Long toId,
+                           @Param("amount") BigDecimal amount);
+
+    /**
+     * Переход на interest.mode=LAZY: счета без accrual_epoch считаются рассчитанными на текущий период.
+     */
+    @Modifying
+    @Query("update Account a set a.accrualEpoch = :epoch where a.accrualEpoch is null")
+    int stampAccrualEpoch(@Param("epoch") long epoch);
 }
@@ -4,6 +4,7 @@ package org.example.pioneer.repository;
 import org.example.pioneer.model.EmailData;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -21,11 +22,29 @@ public interface EmailDataRepository extends JpaRepository<EmailData, Long> {
     @Cacheable(cacheNames = "emailsByUser", key = "#userId")
     List<EmailData> findAllByUserId(Long userId);
 
+    /**
+     * Сбрасывает новый ключ (там мог лежать закэшированный «не найден») и список владельца.
+     * Старый ключ при смене значения сбрасывает вызывающий через {@link #evictEmail}.
+     */
     @Override
-    @CacheEvict(cacheNames = {"emails", "emailsByUser"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "emails", key = "#result.email"),
+            @CacheEvict(cacheNames = "emailsByUser", key = "#result.user.id")
+    })
     <S extends EmailData> S save(S entity);
 
     @Override
-    @CacheEvict(cacheNames = {"emails", "emailsByUser"}, allEntries = true)
-    void deleteById(Long id);
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "emails", key = "#entity.email"),
+            @CacheEvict(cacheNames = "emailsByUser", key = "#entity.user.id")
+    })
+    void delete(EmailData entity);
+
+    /**
+     * Сбросить закэшированный e-mail — прежнее значение после его изменения.
+     */
+    @CacheEvict(cacheNames = "emails", key = "#email")
+    default void evictEmail(String email) {
+        // вся работа — в @CacheEvict
+    }
 }
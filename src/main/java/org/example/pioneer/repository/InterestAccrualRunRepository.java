@@ -0,0 +1,15 @@
+package org.example.pioneer.repository;
+
+import org.example.pioneer.model.InterestAccrualRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface InterestAccrualRunRepository extends JpaRepository<InterestAccrualRun, Long> {
+
+    Optional<InterestAccrualRun> findFirstByFinishedAtIsNullOrderByIdDesc();
+
+    Optional<InterestAccrualRun> findFirstByFinishedAtIsNotNullOrderByIdDesc();
+}
@@ -4,6 +4,7 @@ package org.example.pioneer.repository;
 import org.example.pioneer.model.PhoneData;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -21,11 +22,29 @@ public interface PhoneDataRepository extends JpaRepository<PhoneData, Long> {
     @Cacheable(cacheNames = "phonesByUser", key = "#userId")
     List<PhoneData> findAllByUserId(Long userId);
 
+    /**
+     * Сбрасывает новый ключ (там мог лежать закэшированный «не найден») и список владельца.
+     * Старый ключ при смене значения сбрасывает вызывающий через {@link #evictPhone}.
+     */
     @Override
-    @CacheEvict(cacheNames = {"phones", "phonesByUser"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "phones", key = "#result.phone"),
+            @CacheEvict(cacheNames = "phonesByUser", key = "#result.user.id")
+    })
     <S extends PhoneData> S save(S entity);
 
     @Override
-    @CacheEvict(cacheNames = {"phones", "phonesByUser"}, allEntries = true)
-    void deleteById(Long id);
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "phones", key = "#entity.phone"),
+            @CacheEvict(cacheNames = "phonesByUser", key = "#entity.user.id")
+    })
+    void delete(PhoneData entity);
+
+    /**
+     * Сбросить закэшированный телефон — прежнее значение после его изменения.
+     */
+    @CacheEvict(cacheNames = "phones", key = "#phone")
+    default void evictPhone(String phone) {
+        // вся работа — в @CacheEvict
+    }
 }
@@ -0,0 +1,25 @@
+package org.example.pioneer.repository;
+
+import java.util.Optional;
+
+/**
+ * Захват и продление аренды одним upsert; время берётся из часов БД,
+ * поэтому расхождение часов узлов не влияет на срок аренды.
+ */
+public interface SchedulerLeaseOperations {
+
+    /**
+     * Захватывает аренду, если она свободна или истекла, либо продлевает свою.
+     * @return пусто — аренда у другого узла; иначе последний выполненный период
+     *         или -1, если задача ещё не выполнялась
+     */
+    Optional<Long> tryAcquire(String name, String owner, long ttlSeconds);
+
+    /**
+     * Фиксирует выполненный период и продлевает аренду, только если она наша, не истекла
+     * и период не откатывается назад. Строка аренды остаётся заблокированной до конца транзакции,
+     * поэтому другой узел не перехватит аренду между этой проверкой и коммитом.
+     * @return 1 — записано, 0 — аренда потеряна или записан более поздний период
+     */
+    int completePeriod(String name, String owner, long period, long ttlSeconds);
+}
@@ -0,0 +1,55 @@
+package org.example.pioneer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class SchedulerLeaseOperationsImpl implements SchedulerLeaseOperations {
+
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO scheduler_leases (name, owner, expires_at)
+            VALUES (:name, :owner, NOW() + make_interval(secs => :ttl))
+            ON CONFLICT (name) DO UPDATE
+               SET owner = EXCLUDED.owner,
+                   expires_at = EXCLUDED.expires_at
+             WHERE scheduler_leases.owner = EXCLUDED.owner
+                OR scheduler_leases.expires_at < NOW()
+            RETURNING COALESCE(last_period, -1)
+            """;
+
+    // clock_timestamp, а не NOW(): отметка стоит в конце длинной транзакции начисления,
+    // а NOW() — время её начала
+    private static final String COMPLETE_SQL = """
+            UPDATE scheduler_leases
+               SET last_period = :period,
+                   expires_at = clock_timestamp() + make_interval(secs => :ttl)
+             WHERE name = :name
+               AND owner = :owner
+               AND expires_at > clock_timestamp()
+               AND (last_period IS NULL OR last_period < :period)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public Optional<Long> tryAcquire(String name, String owner, long ttlSeconds) {
+        List<Long> rows = jdbc.queryForList(ACQUIRE_SQL, new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("owner", owner)
+                .addValue("ttl", ttlSeconds), Long.class);
+        return rows.stream().findFirst();
+    }
+
+    @Override
+    public int completePeriod(String name, String owner, long period, long ttlSeconds) {
+        return jdbc.update(COMPLETE_SQL, new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("owner", owner)
+                .addValue("period", period)
+                .addValue("ttl", ttlSeconds));
+    }
+}
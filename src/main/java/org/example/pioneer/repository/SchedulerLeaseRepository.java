@@ -0,0 +1,9 @@
+package org.example.pioneer.repository;
+
+import org.example.pioneer.model.SchedulerLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String>, SchedulerLeaseOperations {
+}
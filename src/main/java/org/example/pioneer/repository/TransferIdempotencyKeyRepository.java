@@ -0,0 +1,102 @@
+package org.example.pioneer.repository;
+
+import org.example.pioneer.model.TransferIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Repository
+public interface TransferIdempotencyKeyRepository
+        extends JpaRepository<TransferIdempotencyKey, TransferIdempotencyKey.Key> {
+
+    /**
+     * Вставка без ошибки на дубликате. Конкурентный запрос с тем же ключом
+     * дождётся коммита первого и получит 0.
+     * @return 1, если ключ новый, иначе 0
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO transfer_idempotency_keys (user_id, idem_key, to_user_id, amount, created_at)
+            VALUES (:userId, :idemKey, :toUserId, :amount, :createdAt)
+            ON CONFLICT (user_id, idem_key) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId,
+                       @Param("idemKey") String idemKey,
+                       @Param("toUserId") Long toUserId,
+                       @Param("amount") BigDecimal amount,
+                       @Param("createdAt") Instant createdAt);
+
+    /**
+     * Как {@link #insertIfAbsent}, но с окончательным отказом перевода.
+     * @return 1, если ключ новый, иначе 0 — итог уже записал другой запрос
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO transfer_idempotency_keys
+                (user_id, idem_key, to_user_id, amount, created_at, outcome, failure_message)
+            VALUES (:userId, :idemKey, :toUserId, :amount, :createdAt, :outcome, :failureMessage)
+            ON CONFLICT (user_id, idem_key) DO NOTHING
+            """, nativeQuery = true)
+    int insertFailureIfAbsent(@Param("userId") Long userId,
+                              @Param("idemKey") String idemKey,
+                              @Param("toUserId") Long toUserId,
+                              @Param("amount") BigDecimal amount,
+                              @Param("createdAt") Instant createdAt,
+                              @Param("outcome") String outcome,
+                              @Param("failureMessage") String failureMessage);
+
+    /**
+     * Перевод не подтвердился за время ожидания (transfer.mode=IN_MEMORY): ключ фиксируется
+     * как PENDING, итог допишет {@link #resolvePending} или {@link #settlePendingFromJournal}.
+     */
+    @Modifying
+    @Query("update TransferIdempotencyKey k set k.outcome = 'PENDING' "
+            + "where k.userId = :userId and k.idemKey = :idemKey and k.outcome is null")
+    int markPending(@Param("userId") Long userId, @Param("idemKey") String idemKey);
+
+    /**
+     * Итог перевода с ключом PENDING: outcome null — выполнен, иначе окончательный отказ.
+     * @return 0, если ключ уже не PENDING
+     */
+    @Modifying
+    @Query("update TransferIdempotencyKey k set k.outcome = :outcome, k.failureMessage = :failureMessage "
+            + "where k.userId = :userId and k.idemKey = :idemKey and k.outcome = 'PENDING'")
+    int resolvePending(@Param("userId") Long userId,
+                       @Param("idemKey") String idemKey,
+                       @Param("outcome") String outcome,
+                       @Param("failureMessage") String failureMessage);
+
+    /** Перевод с ключом PENDING не состоялся — ключ снова свободен. */
+    @Modifying
+    @Query("delete from TransferIdempotencyKey k "
+            + "where k.userId = :userId and k.idemKey = :idemKey and k.outcome = 'PENDING'")
+    int deletePending(@Param("userId") Long userId, @Param("idemKey") String idemKey);
+
+    /**
+     * После перезапуска in-memory движка: ключи PENDING, чей перевод есть в журнале transfers,
+     * становятся выполненными. Остальные переводы уже не выполнятся — вызывающий удаляет их ключи
+     * через {@link #deleteAllPending}.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE transfer_idempotency_keys k
+               SET outcome = NULL
+             WHERE k.outcome = 'PENDING'
+               AND EXISTS (SELECT 1 FROM transfers t
+                            WHERE t.from_user_id = k.user_id AND t.idem_key = k.idem_key)
+            """, nativeQuery = true)
+    int settlePendingFromJournal();
+
+    @Modifying
+    @Query("delete from TransferIdempotencyKey k where k.outcome = 'PENDING'")
+    int deleteAllPending();
+
+    @Modifying
+    @Query("delete from TransferIdempotencyKey k where k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,56 @@
+package org.example.pioneer.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Операции журнала переводов на JDBC: условная вставка, доступный остаток
+ * и перенос записей в accounts.balance.
+ */
+public interface TransferLedgerRepository {
+
+    /**
+     * Advisory-блокировка отправителя до конца транзакции: переводы одного
+     * отправителя проверяют остаток по очереди, остальные не ждут друг друга.
+     */
+    void lockSender(long fromId);
+
+    /**
+     * Добавляет запись, если получатель существует и доступного остатка
+     * (balance + непримененные записи) хватает.
+     * @return true, если запись добавлена
+     */
+    boolean append(long fromId, long toId, BigDecimal amount, String idemKey);
+
+    /**
+     * Добавляет записи одним JDBC-батчем, без проверок: остаток и получателя
+     * проверил вызывающий (transfer.mode=IN_MEMORY).
+     */
+    void appendAll(List<Entry> entries);
+
+    /**
+     * Сумма ещё не перенесённых в balance записей по счёту (входящие минус исходящие).
+     */
+    BigDecimal pendingDelta(long accountId);
+
+    /**
+     * То же сразу по всем счетам, у которых есть непримененные записи.
+     */
+    Map<Long, BigDecimal> pendingDeltas();
+
+    /**
+     * Переносит до limit самых старых записей в accounts.balance и помечает их applied.
+     * Записи, захваченные другим агрегатором, пропускаются.
+     * @return id изменённых счетов; пусто, если очередь пуста
+     */
+    List<Long> applyPending(int limit);
+
+    /**
+     * Запись журнала для {@link #appendAll}.
+     * @param idemKey Idempotency-Key перевода или null: по нему после падения выясняется,
+     *                состоялся ли перевод, ключ которого остался PENDING
+     */
+    record Entry(long fromId, long toId, BigDecimal amount, String idemKey) {
+    }
+}
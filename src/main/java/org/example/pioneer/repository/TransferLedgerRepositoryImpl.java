@@ -0,0 +1,122 @@
+package org.example.pioneer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class TransferLedgerRepositoryImpl implements TransferLedgerRepository {
+
+    private static final String PENDING_DELTA_SQL = """
+            SELECT COALESCE(SUM(CASE WHEN t.to_user_id = :id THEN t.amount ELSE -t.amount END), 0)
+              FROM transfers t
+             WHERE NOT t.applied
+               AND (t.from_user_id = :id OR t.to_user_id = :id)
+            """;
+
+    // balance и журнал читаются из одного снимка, а агрегатор меняет их в одной транзакции,
+    // поэтому сумма не может учесть запись дважды или пропустить
+    private static final String APPEND_SQL = """
+            INSERT INTO transfers (from_user_id, to_user_id, amount, idem_key, created_at, applied)
+            SELECT :fromId, :toId, :amount, :idemKey, NOW(), FALSE
+             WHERE EXISTS (SELECT 1 FROM accounts WHERE id = :toId)
+               AND (SELECT a.balance FROM accounts a WHERE a.id = :fromId)
+                   + (%s) >= :amount
+            """.formatted(PENDING_DELTA_SQL.replace(":id", ":fromId"));
+
+    private static final String APPEND_ALL_SQL = """
+            INSERT INTO transfers (from_user_id, to_user_id, amount, idem_key, created_at, applied)
+            VALUES (:fromId, :toId, :amount, :idemKey, NOW(), FALSE)
+            """;
+
+    private static final String PENDING_DELTAS_SQL = """
+            SELECT d.id, SUM(d.delta)
+              FROM (SELECT from_user_id AS id, -amount AS delta FROM transfers WHERE NOT applied
+                    UNION ALL
+                    SELECT to_user_id, amount FROM transfers WHERE NOT applied) d
+             GROUP BY d.id
+            """;
+
+    private static final String APPLY_PENDING_SQL = """
+            WITH batch AS (
+                SELECT id, from_user_id, to_user_id, amount
+                  FROM transfers
+                 WHERE NOT applied
+                 ORDER BY id
+                 LIMIT :limit
+                   FOR UPDATE SKIP LOCKED
+            ), marked AS (
+                UPDATE transfers t SET applied = TRUE
+                  FROM batch b
+                 WHERE t.id = b.id
+            ), deltas AS (
+                SELECT from_user_id AS id, SUM(-amount) AS delta FROM batch GROUP BY from_user_id
+                UNION ALL
+                SELECT to_user_id, SUM(amount) FROM batch GROUP BY to_user_id
+            )
+            UPDATE accounts a
+               SET balance = a.balance + d.delta,
+                   version = COALESCE(a.version, 0) + 1
+              FROM (SELECT id, SUM(delta) AS delta FROM deltas GROUP BY id) d
+             WHERE a.id = d.id
+            RETURNING a.id
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public void lockSender(long fromId) {
+        jdbc.queryForObject("SELECT 1 FROM (SELECT pg_advisory_xact_lock(:id)) l",
+                new MapSqlParameterSource("id", fromId), Integer.class);
+    }
+
+    @Override
+    public boolean append(long fromId, long toId, BigDecimal amount, String idemKey) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fromId", fromId)
+                .addValue("toId", toId)
+                .addValue("amount", amount)
+                .addValue("idemKey", idemKey, Types.VARCHAR);
+        return jdbc.update(APPEND_SQL, params) == 1;
+    }
+
+    @Override
+    public void appendAll(List<Entry> entries) {
+        SqlParameterSource[] params = entries.stream()
+                .map(t -> new MapSqlParameterSource()
+                        .addValue("fromId", t.fromId())
+                        .addValue("toId", t.toId())
+                        .addValue("amount", t.amount())
+                        .addValue("idemKey", t.idemKey(), Types.VARCHAR))
+                .toArray(SqlParameterSource[]::new);
+        jdbc.batchUpdate(APPEND_ALL_SQL, params);
+    }
+
+    @Override
+    public BigDecimal pendingDelta(long accountId) {
+        return jdbc.queryForObject(PENDING_DELTA_SQL,
+                new MapSqlParameterSource("id", accountId), BigDecimal.class);
+    }
+
+    @Override
+    public Map<Long, BigDecimal> pendingDeltas() {
+        Map<Long, BigDecimal> deltas = new HashMap<>();
+        jdbc.query(PENDING_DELTAS_SQL,
+                (RowCallbackHandler) rs -> deltas.put(rs.getLong(1), rs.getBigDecimal(2)));
+        return deltas;
+    }
+
+    @Override
+    public List<Long> applyPending(int limit) {
+        return jdbc.queryForList(APPLY_PENDING_SQL,
+                new MapSqlParameterSource("limit", limit), Long.class);
+    }
+}
@@ -2,30 +2,55 @@ package org.example.pioneer.repository;
 
 
 import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository
-        extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
+        extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>,
+        UserScanRepository, UserSearchRepository {
 
     @Override
-    @Cacheable(cacheNames = "users", key = "#id")
-    Optional<User> findById(Long id);
-
-    @Override
-    @CacheEvict(cacheNames = "users", allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "users", key = "#result.id"),
+            @CacheEvict(cacheNames = "usersByLogin", key = "#result.login")
+    })
     <S extends User> S save(S entity);
 
+    // логин по id не узнать без запроса, а удаление редкое — сбрасываем usersByLogin целиком
     @Override
-    @CacheEvict(cacheNames = "users", key = "#id")
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "users", key = "#id"),
+            @CacheEvict(cacheNames = "usersByLogin", allEntries = true)
+    })
     void deleteById(Long id);
 
-    // удобный метод по логину, пригодится при аутентификации
-    @Cacheable(cacheNames = "users", key = "#login")
+    /**
+     * Снимок пользователя для чтения — кэшируется он, а не сущность.
+     * sync: одновременные промахи по id ждут одну загрузку.
+     */
+    @Cacheable(cacheNames = "users", key = "#id", sync = true)
+    @Query("select new org.example.pioneer.model.UserSnapshot(u.id, u.name, u.dateOfBirth) from User u where u.id = :id")
+    Optional<UserSnapshot> findSnapshotById(@Param("id") Long id);
+
+    /**
+     * Снимки пользователей по списку id — пачка для прогрева кэша users.
+     */
+    @Query("select new org.example.pioneer.model.UserSnapshot(u.id, u.name, u.dateOfBirth) from User u"
+            + " where u.id in :ids order by u.id")
+    List<UserSnapshot> findSnapshotsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // удобный метод по логину, пригодится при аутентификации;
+    // отдельный кэш: в общем с id ключи "42" и 42 совпали бы в Redis
+    @Cacheable(cacheNames = "usersByLogin", key = "#login")
     Optional<User> findByLogin(String login);
 }
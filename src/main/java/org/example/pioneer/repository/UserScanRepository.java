@@ -0,0 +1,21 @@
+package org.example.pioneer.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Потоковое чтение users через JDBC, без загрузки сущностей.
+ * Подмешивается в {@link UserRepository} как фрагмент Spring Data.
+ */
+public interface UserScanRepository {
+
+    /**
+     * Id, имя и дата рождения всех пользователей. Читается порциями,
+     * поэтому вызывать внутри транзакции.
+     */
+    void forEachSearchRow(SearchRowConsumer consumer);
+
+    @FunctionalInterface
+    interface SearchRowConsumer {
+        void accept(long id, String name, LocalDate dateOfBirth);
+    }
+}
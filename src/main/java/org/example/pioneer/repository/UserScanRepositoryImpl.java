@@ -0,0 +1,28 @@
+package org.example.pioneer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+
+@RequiredArgsConstructor
+public class UserScanRepositoryImpl implements UserScanRepository {
+
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @Override
+    public void forEachSearchRow(SearchRowConsumer consumer) {
+        // fetchSize работает только внутри транзакции (autocommit=false), иначе драйвер читает всё разом
+        jdbc.getJdbcTemplate().query(con -> {
+                    PreparedStatement ps = con.prepareStatement("SELECT id, name, date_of_birth FROM users");
+                    ps.setFetchSize(STREAM_FETCH_SIZE);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(rs.getLong(1), rs.getString(2),
+                        rs.getObject(3, LocalDate.class)));
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.pioneer.repository;
+
+import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Поиск пользователей сразу в {@link UserSnapshot}: SELECT id, name, date_of_birth
+ * через конструктор, без управляемых сущностей, снимков для dirty checking и прокси коллекций.
+ * Подмешивается в {@link UserRepository} как фрагмент Spring Data.
+ */
+public interface UserSearchRepository {
+
+    /**
+     * Страница снимков; count выполняется, только если по странице нельзя узнать общее число.
+     */
+    Page<UserSnapshot> findSnapshots(Specification<User> spec, Pageable pageable);
+
+    /**
+     * То же с другим способом подсчёта: total вызывается, только если count нужен.
+     */
+    Page<UserSnapshot> findSnapshots(Specification<User> spec, Pageable pageable, LongSupplier total);
+
+    /**
+     * Первые limit снимков в порядке sort, без count.
+     */
+    List<UserSnapshot> findSnapshots(Specification<User> spec, Sort sort, int limit);
+
+    /**
+     * COUNT не больше cap: SELECT count(*) FROM (SELECT id ... LIMIT cap).
+     */
+    long countCapped(Specification<User> spec, int cap);
+
+    /**
+     * Оценка числа найденных пользователей без обхода строк. Без фильтров — pg_class.reltuples,
+     * с фильтрами — "Plan Rows" из EXPLAIN запроса с теми же условиями, что у UserSpecifications.
+     * Аргумент null — фильтра нет.
+     */
+    long estimateCount(LocalDate dateOfBirthAfter, String nameStartsWith, String emailEquals, String phoneEquals);
+}
@@ -0,0 +1,163 @@
+package org.example.pioneer.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.FlushModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
+import org.example.pioneer.repository.spec.UserSpecifications;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaCriteriaQuery;
+import org.hibernate.query.criteria.JpaSubQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+@RequiredArgsConstructor
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+
+    // pg_class.reltuples = -1: таблицу ещё не анализировали, тогда оценка берётся из плана
+    private static final String TABLE_ESTIMATE_SQL =
+            "SELECT reltuples::bigint FROM pg_class WHERE oid = 'users'::regclass";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public Page<UserSnapshot> findSnapshots(Specification<User> spec, Pageable pageable) {
+        return findSnapshots(spec, pageable, () -> count(spec));
+    }
+
+    @Override
+    public Page<UserSnapshot> findSnapshots(Specification<User> spec, Pageable pageable, LongSupplier total) {
+        List<UserSnapshot> content = query(spec, pageable.getSort())
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(content, pageable, total);
+    }
+
+    @Override
+    public List<UserSnapshot> findSnapshots(Specification<User> spec, Sort sort, int limit) {
+        return query(spec, sort).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countCapped(Specification<User> spec, int cap) {
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) em.getCriteriaBuilder();
+        JpaCriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        JpaSubQuery<Long> ids = cq.subquery(Long.class);
+        Root<User> root = ids.from(User.class);
+        // у столбца производной таблицы должно быть имя
+        Path<Long> id = root.get("id");
+        ids.select(id);
+        id.alias("id");
+        where(ids, spec.toPredicate(root, cq, cb));
+        ids.fetch(cap);
+        cq.select(cb.count(cq.from(ids).get("id")));
+        return em.createQuery(cq).setFlushMode(FlushModeType.COMMIT).getSingleResult();
+    }
+
+    @Override
+    public long estimateCount(LocalDate dateOfBirthAfter, String nameStartsWith,
+                              String emailEquals, String phoneEquals) {
+        // условия повторяют UserSpecifications, чтобы планировщик оценивал тот же запрос
+        List<String> where = new ArrayList<>();
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        if (dateOfBirthAfter != null) {
+            where.add("u.date_of_birth > :dateOfBirthAfter");
+            params.addValue("dateOfBirthAfter", dateOfBirthAfter);
+        }
+        if (nameStartsWith != null) {
+            where.add("upper(u.name) COLLATE \"C\" LIKE :namePattern");
+            params.addValue("namePattern", nameStartsWith.toUpperCase() + "%");
+        }
+        if (emailEquals != null) {
+            where.add("EXISTS (SELECT 1 FROM email_data e WHERE e.user_id = u.id AND lower(e.email) = :email)");
+            params.addValue("email", emailEquals.toLowerCase());
+        }
+        if (phoneEquals != null) {
+            where.add("EXISTS (SELECT 1 FROM phone_data p WHERE p.user_id = u.id AND p.phone = :phone)");
+            params.addValue("phone", phoneEquals);
+        }
+        if (where.isEmpty()) {
+            Long reltuples = jdbc.queryForObject(TABLE_ESTIMATE_SQL, params, Long.class);
+            if (reltuples != null && reltuples >= 0) {
+                return reltuples;
+            }
+        }
+        String plan = jdbc.queryForObject("EXPLAIN (FORMAT JSON) SELECT u.id FROM users u"
+                + (where.isEmpty() ? "" : " WHERE " + String.join(" AND ", where)), params, String.class);
+        try {
+            return JSON.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Нечитаемый план запроса: " + plan, e);
+        }
+    }
+
+    private TypedQuery<UserSnapshot> query(Specification<User> spec, Sort sort) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<UserSnapshot> cq = cb.createQuery(UserSnapshot.class);
+        Root<User> root = cq.from(User.class);
+        cq.select(cb.construct(UserSnapshot.class, root.get("id"), root.get("name"), root.get("dateOfBirth")));
+        where(cq, spec.toPredicate(root, cq, cb));
+        cq.orderBy(orders(sort, root, cb));
+        // сущностей в результате нет, сбрасывать сессию перед чтением незачем
+        return em.createQuery(cq).setFlushMode(FlushModeType.COMMIT);
+    }
+
+    /** name без учёта регистра — ключ поиска по имени {@link UserSpecifications#nameKey}, как в индексе. */
+    private static List<Order> orders(Sort sort, Root<User> root, CriteriaBuilder cb) {
+        List<Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if ("name".equals(order.getProperty()) && order.isIgnoreCase()) {
+                Expression<String> key = UserSpecifications.nameKey(root, cb);
+                orders.add(order.isAscending() ? cb.asc(key) : cb.desc(key));
+            } else {
+                orders.addAll(QueryUtils.toOrders(Sort.by(order), root, cb));
+            }
+        }
+        return orders;
+    }
+
+    private long count(Specification<User> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<User> root = cq.from(User.class);
+        cq.select(cb.count(root));
+        where(cq, spec.toPredicate(root, cq, cb));
+        return em.createQuery(cq).setFlushMode(FlushModeType.COMMIT).getSingleResult();
+    }
+
+    private static void where(AbstractQuery<?> cq, Predicate predicate) {
+        if (predicate != null) {
+            cq.where(predicate);
+        }
+    }
+}
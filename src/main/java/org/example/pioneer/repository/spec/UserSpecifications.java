@@ -1,36 +1,91 @@
 package org.example.pioneer.repository.spec;
 
 
-import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.example.pioneer.model.EmailData;
+import org.example.pioneer.model.PhoneData;
 import org.example.pioneer.model.User;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.data.jpa.domain.Specification;
 
 
 import java.time.LocalDate;
 
+/**
+ * Фильтры поиска пользователей. Каждый фильтр опирается на индекс из
+ * V008__user_search_indexes.sql или V010__user_name_key_index.sql; выражения в SQL должны
+ * совпадать с выражениями индексов.
+ */
 public class UserSpecifications {
 
+    /** Collation C; без кавычек Hibernate выводит имя как есть, и Postgres приводит его к "c". */
+    private static final String BYTE_ORDER = "\"C\"";
+
     public static Specification<User> dateOfBirthAfter(LocalDate date) {
         return (root, q, cb) ->
                 cb.greaterThan(root.get("dateOfBirth"), date);
     }
 
+    public static Specification<User> idGreaterThan(long id) {
+        return (root, q, cb) ->
+                cb.greaterThan(root.get("id"), id);
+    }
+
+    /** upper(name) COLLATE "C" LIKE 'X%' — индекс idx_users_name_key. */
     public static Specification<User> nameStartsWith(String prefix) {
         return (root, q, cb) ->
-                cb.like(cb.upper(root.get("name")), prefix.toUpperCase() + "%");
+                cb.like(nameKey(root, cb), prefix.toUpperCase() + "%");
+    }
+
+    /**
+     * Keyset по имени: пользователи после (upper(name), id) последней строки предыдущей страницы,
+     * в порядке {@link #nameKey}. Нестрогое условие по имени — граница диапазона индекса.
+     */
+    public static Specification<User> afterName(String name, long id) {
+        return (root, q, cb) -> {
+            Expression<String> key = nameKey(root, cb);
+            Expression<String> after = ((HibernateCriteriaBuilder) cb).collate(cb.upper(cb.literal(name)), BYTE_ORDER);
+            return cb.and(cb.greaterThanOrEqualTo(key, after),
+                    cb.or(cb.greaterThan(key, after), cb.greaterThan(root.get("id"), id)));
+        };
+    }
+
+    /**
+     * Ключ поиска по имени: upper(name) COLLATE "C". Побайтовый порядок не зависит от collation базы
+     * и совпадает с порядком ключей UserNameIndex; индекс idx_users_name_key (ключ, id)
+     * обслуживает и LIKE по префиксу, и сортировку.
+     */
+    public static Expression<String> nameKey(Root<User> root, CriteriaBuilder cb) {
+        return ((HibernateCriteriaBuilder) cb).collate(cb.upper(root.get("name")), BYTE_ORDER);
     }
 
+    /**
+     * EXISTS по email_data вместо JOIN: строка пользователя не размножается,
+     * count считается по users, поиск идёт по индексу idx_email_data_lower_email.
+     */
     public static Specification<User> hasEmail(String email) {
         return (root, q, cb) -> {
-            var join = root.join("emails", JoinType.LEFT);
-            return cb.equal(cb.lower(join.get("email")), email.toLowerCase());
+            Subquery<Long> sq = q.subquery(Long.class);
+            Root<EmailData> e = sq.from(EmailData.class);
+            sq.select(e.get("id")).where(
+                    cb.equal(e.get("user"), root),
+                    cb.equal(cb.lower(e.get("email")), email.toLowerCase()));
+            return cb.exists(sq);
         };
     }
 
+    /** EXISTS по phone_data — индекс idx_phone_data_phone. */
     public static Specification<User> hasPhone(String phone) {
         return (root, q, cb) -> {
-            var join = root.join("phones", JoinType.LEFT);
-            return cb.equal(join.get("phone"), phone);
+            Subquery<Long> sq = q.subquery(Long.class);
+            Root<PhoneData> p = sq.from(PhoneData.class);
+            sq.select(p.get("id")).where(
+                    cb.equal(p.get("user"), root),
+                    cb.equal(p.get("phone"), phone));
+            return cb.exists(sq);
         };
     }
 }
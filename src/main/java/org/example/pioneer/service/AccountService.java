@@ -1,32 +1,71 @@
 package org.example.pioneer.service;
 
+import jakarta.persistence.EntityManagerFactory;
 import lombok.RequiredArgsConstructor;
 import org.example.pioneer.exception.ResourceNotFoundException;
 import org.example.pioneer.model.Account;
+import org.example.pioneer.model.AccountSnapshot;
 import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.TransferEntryRepository;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class AccountService {
     private final AccountRepository accountRepo;
+    private final TransferEntryRepository ledgerRepo;
+    private final InterestCalculator interest;
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Снимок счёта по userId из кэша accounts.
+     * В режиме interest.mode=LAZY проценты за прошедшие периоды применяются после чтения
+     * из кэша, поэтому закэшированная база не устаревает на границе периода.
+     * @throws ResourceNotFoundException, если аккаунт не найден.
+     */
+    @Transactional(readOnly = true)
+    public AccountSnapshot getByUserId(Long userId) {
+        return accountRepo.findSnapshotByUserId(userId)
+                .map(interest::materialize)
+                .orElseThrow(() ->
+                        new ResourceNotFoundException("Account не найден для userId=" + userId));
+    }
 
     /**
-     * Получить Account по userId.
+     * Account по userId — сущность для изменения в текущей транзакции.
+     * В кэше лежат только снимки; L2-кэш Hibernate тоже обходится — решение о списании
+     * по балансу, устаревшему на этом узле, отклонило бы перевод, который проходит.
      * @throws ResourceNotFoundException, если аккаунт не найден.
      */
-    @Cacheable(value = "accounts", key = "#userId")
     @Transactional(readOnly = true)
-    public Account getByUserId(Long userId) {
-        return accountRepo.findByUserId(userId)
+    public Account getFresh(Long userId) {
+        return accountRepo.findFreshById(userId)
+                .map(interest::materialize)
                 .orElseThrow(() ->
                         new ResourceNotFoundException("Account не найден для userId=" + userId));
     }
 
+    /**
+     * Баланс с учётом записей журнала transfers, которые агрегатор ещё не перенёс.
+     * Читается мимо кэша, в одном снимке с журналом.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public BigDecimal getConsistentBalance(Long userId) {
+        Account acct = accountRepo.findByUserId(userId)
+                .map(interest::materialize)
+                .orElseThrow(() ->
+                        new ResourceNotFoundException("Account не найден для userId=" + userId));
+        return acct.getBalance().toBigDecimal().add(ledgerRepo.pendingDelta(userId));
+    }
+
     /**
      * Сохранить аккаунт (например, после изменений баланса).
      * При этом евиктим кэш по userId.
@@ -36,4 +75,24 @@ public class AccountService {
     public Account save(Account account) {
         return accountRepo.save(account);
     }
+
+    /**
+     * Сбросить закэшированный аккаунт пользователя — снимок в accounts и сущность в L2 Hibernate.
+     * Нужен там, где баланс меняется в обход сущности (SQL/JDBC batch).
+     * В транзакции L2 сбрасывается после коммита, как и accounts: иначе чтение между сбросом
+     * и коммитом вернуло бы в L2 старую строку.
+     */
+    @CacheEvict(value = "accounts", key = "#userId")
+    public void evict(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entityManagerFactory.getCache().evict(Account.class, userId);
+                }
+            });
+        } else {
+            entityManagerFactory.getCache().evict(Account.class, userId);
+        }
+    }
 }
\ No newline at end of file
@@ -23,16 +23,19 @@ public class AuthService {
 
     @Transactional(readOnly = true)
     public String login(String identifier, String password) {
-        User user;
+        Long userId;
+        // из кэша приходят отсоединённые сущности: у связи user доступен только id
         if (identifier.contains("@")) {
             EmailData ed = emailRepo.findByEmail(identifier)
                     .orElseThrow(() -> new BadCredentialsException("Неверные учетные данные"));
-            user = ed.getUser();
+            userId = ed.getUser().getId();
         } else {
             PhoneData pd = phoneRepo.findByPhone(identifier)
                     .orElseThrow(() -> new BadCredentialsException("Неверные учетные данные"));
-            user = pd.getUser();
+            userId = pd.getUser().getId();
         }
+        User user = userRepo.findById(userId)
+                .orElseThrow(() -> new BadCredentialsException("Неверные учетные данные"));
 
         if (!user.getPasswordHash().equals(password)) {
             throw new BadCredentialsException("Неверные учетные данные");
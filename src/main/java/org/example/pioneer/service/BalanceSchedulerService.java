@@ -1,52 +1,148 @@
 package org.example.pioneer.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.example.pioneer.model.Account;
+import org.example.pioneer.model.Money;
 import org.example.pioneer.repository.AccountRepository;
-import org.springframework.cache.annotation.CacheEvict;
+import org.example.pioneer.repository.TransferEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class BalanceSchedulerService {
 
     private final AccountRepository accountRepo;
-    private static final BigDecimal INTEREST_RATE = new BigDecimal("1.10");
-    private static final BigDecimal MAX_MULTIPLIER = new BigDecimal("2.07");
-    private static final int SCALE = 2;
+    private final AccountService accountService;
+    private final ChunkedInterestAccrual chunkedAccrual;
+    private final TransactionTemplate txTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InterestCalculator interest;
+    private final SchedulerLeaseService leases;
+    private final TransferEntryRepository ledgerRepo;
+
+    static final String LEASE_TASK = "interest-accrual";
+
+    @Value("${interest.mode:ENTITY}")
+    private InterestAccrualMode mode = InterestAccrualMode.ENTITY;
+
+    @Value("${transfer.mode:OPTIMISTIC}")
+    private TransferMode transferMode = TransferMode.OPTIMISTIC;
+
+    @Value("${transfer.ledger.batch-size:1000}")
+    private int ledgerBatchSize = 1000;
+
+    /**
+     * Для LAZY: проверка совместимости с transfer.mode и отметка периода
+     * у счетов, ещё не переведённых на ленивое начисление.
+     */
+    @PostConstruct
+    public void initLazyModel() {
+        if (mode != InterestAccrualMode.LAZY) {
+            return;
+        }
+        if (transferMode != TransferMode.OPTIMISTIC && transferMode != TransferMode.LOCKING) {
+            throw new IllegalStateException("interest.mode=LAZY поддерживает только transfer.mode "
+                    + "OPTIMISTIC или LOCKING, задан " + transferMode);
+        }
+        Integer stamped = txTemplate.execute(status -> accountRepo.stampAccrualEpoch(interest.currentPeriod()));
+        log.info("Interest accrual (LAZY): период проставлен {} счетам", stamped);
+    }
 
     /**
      * Каждые 30 секунд начисляем 10%, но не более 207% от initialBalance.
+     * Из нескольких экземпляров начисляет только владелец аренды {@value #LEASE_TASK}, не больше одного
+     * раза за 30-секундный период: период отмечается в аренде в той же транзакции, что и начисление,
+     * и узел, у которого аренда истекла посреди прогона, откатывает своё начисление.
+     * Если узел простаивал или прогон не уложился в период, пропущенные периоды
+     * начисляются за один проход: k шагов с округлением на каждом, а не k прогонов.
+     * Кэш accounts сбрасывается только по изменённым счетам, после коммита;
+     * начисленные суммы уходят в {@link InterestAccruedEvent}.
+     * Перед начислением в balance переносятся записи журнала transfers, которые агрегатор
+     * ещё не успел перенести (LEDGER, IN_MEMORY или остаток после смены режима):
+     * иначе проценты посчитались бы от баланса без этих переводов.
      */
     @Scheduled(fixedRate = 30_000)
-    @Transactional
-    @CacheEvict(value = "accounts", allEntries = true)
     public void accrueInterest() {
-        List<Account> accounts = accountRepo.findAll();
-        for (Account acct : accounts) {
-            BigDecimal current = acct.getBalance();
-            BigDecimal initial = acct.getInitialBalance();
+        if (mode == InterestAccrualMode.LAZY) {
+            // проценты считаются при чтении, см. InterestCalculator
+            return;
+        }
+        Optional<Long> lastPeriod = leases.acquire(LEASE_TASK);
+        long period = interest.currentPeriod();
+        if (lastPeriod.isEmpty() || lastPeriod.get() >= period) {
+            return;
+        }
 
-            // cap = initial * 2.07
-            BigDecimal cap = initial.multiply(MAX_MULTIPLIER)
-                    .setScale(SCALE, RoundingMode.HALF_EVEN);
+        // первый запуск (периода в аренде ещё нет) начисляет один период
+        long periods = lastPeriod.get() < 0 ? 1 : period - lastPeriod.get();
+        foldLedger();
+        Map<Long, BigDecimal> accrued = Map.of();
+        eventPublisher.publishEvent(new InterestAccrualStartedEvent());
+        try {
+            if (mode == InterestAccrualMode.CHUNKED) {
+                // транзакции, сброс кэша, события и запись периода — внутри ChunkedInterestAccrual
+                chunkedAccrual.run(InterestCalculator.INTEREST_RATE, InterestCalculator.MAX_MULTIPLIER,
+                        periods, period);
+            } else {
+                // период отмечается в транзакции начисления: узел, потерявший аренду, откатывается
+                accrued = leases.completeWith(LEASE_TASK, period, () -> switch (mode) {
+                    case SET_BASED -> accountRepo.accrueInterest(
+                            InterestCalculator.INTEREST_RATE, InterestCalculator.MAX_MULTIPLIER, periods);
+                    default -> accrueEntities(periods);
+                }).orElse(Map.of());
+                accrued.keySet().forEach(accountService::evict);
+                log.debug("Interest accrual ({}): периодов {}, изменено {} счетов", mode, periods, accrued.size());
+            }
+        } finally {
+            eventPublisher.publishEvent(new InterestAccruedEvent(accrued, true));
+        }
+    }
 
-            // newBalance = current * 1.10
-            BigDecimal increased = current.multiply(INTEREST_RATE)
-                    .setScale(SCALE, RoundingMode.HALF_EVEN);
+    /**
+     * Переносит журнал transfers в balance пакетами, как LedgerAggregatorService, до пустой очереди.
+     * Записи, которые в этот момент переносит агрегатор, пропускаются: он меняет те же
+     * строки accounts, и начисление ждёт его коммита (SQL-режимы) или падает на версии
+     * и повторяется в следующем тике (ENTITY).
+     */
+    private void foldLedger() {
+        int folded = 0;
+        List<Long> touched;
+        do {
+            touched = txTemplate.execute(status -> ledgerRepo.applyPending(ledgerBatchSize));
+            touched.forEach(accountService::evict);
+            folded += touched.size();
+        } while (!touched.isEmpty());
+        if (folded > 0) {
+            log.debug("Interest accrual: до начисления перенесён журнал по {} счетам", folded);
+        }
+    }
 
-            BigDecimal next = increased.min(cap);
+    private Map<Long, BigDecimal> accrueEntities(long periods) {
+        Map<Long, BigDecimal> accrued = new LinkedHashMap<>();
+        List<Account> accounts = accountRepo.findAll();
+        for (Account acct : accounts) {
+            long current = acct.getBalance().units();
+            long next = interest.accrue(current, acct.getInitialBalance().units(), periods);
             // если уже достигаем cap, дальше не растём
-            if (next.compareTo(current) > 0) {
-                acct.setBalance(next);
+            if (next > current) {
+                acct.setBalance(Money.ofUnits(next));
                 accountRepo.save(acct);
+                accrued.put(acct.getId(), Money.toBigDecimal(next - current));
             }
         }
+        return accrued;
     }
-}
\ No newline at end of file
+}
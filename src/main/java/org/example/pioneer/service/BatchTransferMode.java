@@ -0,0 +1,18 @@
+package org.example.pioneer.service;
+
+/**
+ * Семантика пакетного перевода {@link TransferService#transferBatch}.
+ */
+public enum BatchTransferMode {
+
+    /**
+     * Весь пакет в одной транзакции: любая ошибка откатывает все переводы.
+     */
+    ALL_OR_NOTHING,
+
+    /**
+     * Пакет режется на под-пакеты по {@code transfer.batch.chunk-size}, каждый в своей транзакции;
+     * неуспешные переводы пропускаются, остальные фиксируются.
+     */
+    BEST_EFFORT
+}
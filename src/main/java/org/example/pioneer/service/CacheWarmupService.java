@@ -0,0 +1,178 @@
+package org.example.pioneer.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.pioneer.cache.TwoLevelCache;
+import org.example.pioneer.cache.TwoLevelCacheManager;
+import org.example.pioneer.model.AccountSnapshot;
+import org.example.pioneer.model.UserSnapshot;
+import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Прогрев кэшей users и accounts после старта узла.
+ * <p>
+ * Горячие ключи — самые часто читаемые записи L1 каждого кэша (оценка частоты Caffeine).
+ * При остановке они сохраняются в cache.warmup.file, при старте читаются оттуда и грузятся
+ * пачками по cache.warmup.batch-size в порядке id: сначала из Redis, недостающее — одним
+ * запросом по списку id на пачку. Нет файла — прогревать нечего.
+ * <p>
+ * Прогрев выполняется в ApplicationRunner, то есть до ReadinessState.ACCEPTING_TRAFFIC:
+ * узел объявляет готовность (/actuator/health/readiness), когда кэши уже заполнены.
+ * Время прогрева ограничено cache.warmup.timeout; ошибка прогрева старт не останавливает.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheWarmupService implements ApplicationRunner {
+
+    private static final List<String> CACHES = List.of("users", "accounts");
+
+    private final TwoLevelCacheManager cacheManager;
+    private final UserRepository userRepo;
+    private final AccountRepository accountRepo;
+
+    @Value("${cache.warmup.enabled:true}")
+    private boolean enabled = true;
+
+    /** Пусто — горячие ключи не сохраняются и прогрева нет. */
+    @Value("${cache.warmup.file:}")
+    private String file = "";
+
+    @Value("${cache.warmup.top-n:1000}")
+    private int topN = 1000;
+
+    @Value("${cache.warmup.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${cache.warmup.timeout:20s}")
+    private Duration timeout = Duration.ofSeconds(20);
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || file.isBlank()) {
+            return;
+        }
+        try {
+            warmUp();
+        } catch (RuntimeException e) {
+            log.warn("Прогрев кэшей не удался, узел стартует с пустыми кэшами: {}", e.toString());
+        }
+    }
+
+    /**
+     * Загружает ключи из файла горячих ключей.
+     * @return сколько записей положено в кэши
+     */
+    public int warmUp() {
+        Map<String, List<Long>> hot = readHotKeys();
+        long started = System.nanoTime();
+        long deadline = started + timeout.toNanos();
+        int warmed = 0;
+        for (Map.Entry<String, List<Long>> e : hot.entrySet()) {
+            warmed += warm(e.getKey(), e.getValue(), deadline);
+        }
+        log.info("Прогрев кэшей: {} записей за {} мс", warmed,
+                Duration.ofNanos(System.nanoTime() - started).toMillis());
+        return warmed;
+    }
+
+    /**
+     * Сохраняет горячие ключи users и accounts для прогрева при следующем старте.
+     */
+    @PreDestroy
+    public void saveHotKeys() {
+        if (!enabled || file.isBlank()) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        for (String name : CACHES) {
+            cacheManager.getTwoLevelCache(name).hottestKeys(topN)
+                    .forEach(key -> lines.add(name + " " + key));
+        }
+        Path target = Path.of(file);
+        try {
+            // через временный файл: оборванная запись не должна испортить прежний
+            Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), "hot-keys", ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Сохранено горячих ключей кэша: {}", lines.size());
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить горячие ключи кэша в {}: {}", target, e.toString());
+        }
+    }
+
+    private int warm(String name, List<Long> ids, long deadline) {
+        TwoLevelCache cache = cacheManager.getTwoLevelCache(name);
+        List<Long> sorted = ids.stream().sorted().distinct().toList();
+        int warmed = 0;
+        for (int from = 0; from < sorted.size(); from += batchSize) {
+            if (System.nanoTime() > deadline) {
+                log.warn("Прогрев кэша {}: не уложились в {}, загружено {} из {}", name, timeout, warmed, sorted.size());
+                break;
+            }
+            List<Long> batch = sorted.subList(from, Math.min(from + batchSize, sorted.size()));
+            warmed += cache.warm(batch, keys -> load(name, keys.stream().map(Long.class::cast).toList()));
+        }
+        return warmed;
+    }
+
+    /**
+     * Пачка значений прогреваемого кэша под теми же ключами, что кладут
+     * findSnapshotById и findSnapshotByUserId.
+     */
+    private Map<Long, ?> load(String name, List<Long> ids) {
+        return switch (name) {
+            case "users" -> userRepo.findSnapshotsByIdIn(ids).stream()
+                    .collect(Collectors.toMap(UserSnapshot::id, Function.identity()));
+            case "accounts" -> accountRepo.findSnapshotsByIdIn(ids).stream()
+                    .collect(Collectors.toMap(AccountSnapshot::id, Function.identity()));
+            default -> throw new IllegalArgumentException("Кэш не прогревается: " + name);
+        };
+    }
+
+    private Map<String, List<Long>> readHotKeys() {
+        Path source = Path.of(file);
+        if (!Files.isReadable(source)) {
+            return Map.of();
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(source, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, List<Long>> hot = new LinkedHashMap<>();
+        for (String line : lines) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 2 || !CACHES.contains(parts[0])) {
+                continue;
+            }
+            try {
+                hot.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(Long.parseLong(parts[1]));
+            } catch (NumberFormatException e) {
+                log.warn("Файл горячих ключей {}: пропущена строка '{}'", source, line);
+            }
+        }
+        return hot;
+    }
+}
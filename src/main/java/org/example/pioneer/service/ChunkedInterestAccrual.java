@@ -0,0 +1,208 @@
+package org.example.pioneer.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.pioneer.model.InterestAccrualRun;
+import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.InterestAccrualRunRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Начисление процентов по диапазонам id (interest.mode=CHUNKED).
+ * <p>
+ * Границы диапазонов ищутся keyset-сканом по первичному ключу, каждый диапазон
+ * обрабатывается одним UPDATE в своей короткой транзакции на пуле из
+ * interest.chunk.workers потоков. Контрольная точка прогона (lastId) сдвигается
+ * по порядку завершения диапазонов; прогон, не уложившийся в interest.chunk.max-run-ms,
+ * продолжается следующим тиком с контрольной точки. Счета, обработанные после неё,
+ * повторно не начисляются благодаря метке accrual_run.
+ * Число начисляемых периодов и целевой период фиксируются в прогоне при его создании,
+ * поэтому продолженный прогон догоняет ровно те периоды, с которыми начинался.
+ * Начисленные суммы публикуются {@link InterestAccruedEvent} после коммита каждого диапазона.
+ * <p>
+ * Завершение прогона (finished_at) и его целевой период в аренде пишутся одной транзакцией:
+ * завершённый прогон без записанного периода начал бы после падения новый прогон того же периода.
+ * Если такой прогон всё же найден (записан раньше, чем запись стала общей), период только
+ * записывается, повторно не начисляется.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChunkedInterestAccrual {
+
+    private final AccountRepository accountRepo;
+    private final InterestAccrualRunRepository runRepo;
+    private final AccountService accountService;
+    private final TransactionTemplate txTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SchedulerLeaseService leases;
+
+    @Value("${interest.chunk.size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${interest.chunk.workers:4}")
+    private int workers = 4;
+
+    @Value("${interest.chunk.max-run-ms:25000}")
+    private long maxRunMs = 25_000;
+
+    private final AtomicBoolean inProgress = new AtomicBoolean();
+    private ExecutorService pool;
+
+    /**
+     * Выполняет или продолжает прогон начисления.
+     * @param periods      сколько периодов начислить, если прогон создаётся заново
+     * @param targetPeriod период, который будет выполнен по завершении нового прогона
+     * @return целевой период прогона, если он дошёл до конца таблицы и записан в аренду {@value
+     *         BalanceSchedulerService#LEASE_TASK}; пусто — остановлен по времени, аренда потеряна
+     *         или предыдущий вызов ещё работает
+     */
+    public OptionalLong run(BigDecimal rate, BigDecimal maxMultiplier, long periods, long targetPeriod) {
+        if (!inProgress.compareAndSet(false, true)) {
+            log.warn("Interest accrual: предыдущий прогон ещё выполняется, тик пропущен");
+            return OptionalLong.empty();
+        }
+        try {
+            return runChunks(rate, maxMultiplier, periods, targetPeriod);
+        } finally {
+            inProgress.set(false);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private OptionalLong runChunks(BigDecimal rate, BigDecimal maxMultiplier, long periods, long targetPeriod) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxRunMs);
+        InterestAccrualRun run = txTemplate.execute(status -> runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()
+                .or(() -> runRepo.findFirstByFinishedAtIsNotNullOrderByIdDesc()
+                        .filter(finished -> finished.getTargetPeriod() >= targetPeriod))
+                .orElseGet(() -> runRepo.save(InterestAccrualRun.builder()
+                        .startedAt(Instant.now())
+                        .lastId(0)
+                        .periods(periods)
+                        .targetPeriod(targetPeriod)
+                        .build())));
+        if (run.getFinishedAt() != null) {
+            // прогон этого периода уже прошёл, но период не записан — только записываем
+            log.info("Interest accrual: прогон {} периода {} уже завершён, период записывается",
+                    run.getId(), run.getTargetPeriod());
+            return record(run);
+        }
+        long runId = run.getId();
+        long runPeriods = run.getPeriods();
+
+        Deque<Chunk> inFlight = new ArrayDeque<>();
+        long cursor = run.getLastId();
+        boolean exhausted = false;
+        int chunks = 0;
+        try {
+            while (true) {
+                while (!exhausted && inFlight.size() < workers && System.nanoTime() < deadline) {
+                    Long upper = accountRepo.findChunkUpperBound(cursor, chunkSize);
+                    if (upper == null) {
+                        exhausted = true;
+                        break;
+                    }
+                    long afterId = cursor;
+                    inFlight.add(new Chunk(upper, pool().submit(
+                            () -> accrueChunk(rate, maxMultiplier, runPeriods, runId, afterId, upper))));
+                    cursor = upper;
+                }
+                Chunk head = inFlight.poll();
+                if (head == null) {
+                    break;
+                }
+                head.result().get();
+                chunks++;
+                run.setLastId(head.upperId());
+                checkpoint(run);
+            }
+        } catch (ExecutionException e) {
+            awaitQuietly(inFlight);
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            awaitQuietly(inFlight);
+            return OptionalLong.empty();
+        }
+
+        if (!exhausted) {
+            log.info("Interest accrual: прогон {} остановлен по времени на id {}, продолжится следующим тиком",
+                    runId, run.getLastId());
+            return OptionalLong.empty();
+        }
+        run.setFinishedAt(Instant.now());
+        OptionalLong recorded = record(run);
+        log.debug("Interest accrual: прогон {} завершён, {} диапазонов, периодов {}", runId, chunks, runPeriods);
+        return recorded;
+    }
+
+    /** finished_at и период в аренде — одной транзакцией; если аренда потеряна, прогон остаётся открытым. */
+    private OptionalLong record(InterestAccrualRun run) {
+        return leases.completeWith(BalanceSchedulerService.LEASE_TASK, run.getTargetPeriod(), () -> runRepo.save(run))
+                .map(saved -> OptionalLong.of(saved.getTargetPeriod()))
+                .orElse(OptionalLong.empty());
+    }
+
+    private int accrueChunk(BigDecimal rate, BigDecimal maxMultiplier, long periods,
+                            long runId, long afterId, long toId) {
+        Map<Long, BigDecimal> accrued = txTemplate.execute(status ->
+                accountRepo.accrueInterest(rate, maxMultiplier, periods, runId, afterId, toId));
+        accrued.keySet().forEach(accountService::evict);
+        eventPublisher.publishEvent(new InterestAccruedEvent(accrued, false));
+        return accrued.size();
+    }
+
+    private void checkpoint(InterestAccrualRun run) {
+        txTemplate.executeWithoutResult(status -> runRepo.save(run));
+    }
+
+    /** Не выходим из прогона, пока его диапазоны ещё выполняются: иначе он наложится на следующий тик. */
+    private static void awaitQuietly(Deque<Chunk> inFlight) {
+        for (Chunk c : inFlight) {
+            try {
+                c.result().get();
+            } catch (ExecutionException ignored) {
+                // первая ошибка уже пробрасывается
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized ExecutorService pool() {
+        if (pool == null) {
+            AtomicInteger n = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(workers,
+                    r -> new Thread(r, "interest-accrual-" + n.incrementAndGet()));
+        }
+        return pool;
+    }
+
+    private record Chunk(long upperId, Future<Integer> result) {
+    }
+}
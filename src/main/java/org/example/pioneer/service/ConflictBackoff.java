@@ -0,0 +1,34 @@
+package org.example.pioneer.service;
+
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Задержка между повторами после конфликта версий/блокировок (transfer.retry.*).
+ * Растёт вдвое до максимума, реальная пауза выбирается случайно в [0, задержка],
+ * чтобы конкурирующие запросы не просыпались одновременно. Один экземпляр — на одну серию повторов.
+ */
+final class ConflictBackoff {
+
+    private final long maxMs;
+    private long nextMs;
+
+    ConflictBackoff(long initialMs, long maxMs) {
+        this.nextMs = initialMs;
+        this.maxMs = maxMs;
+    }
+
+    /**
+     * @throws ConcurrencyFailureException cause, если поток прервали во время паузы
+     */
+    void pause(ConcurrencyFailureException cause) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(nextMs + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+        nextMs = Math.min(nextMs * 2, maxMs);
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.pioneer.service;
+
+import java.util.Locale;
+
+/**
+ * Как считается totalElements страницы в {@link UserService#search}.
+ * Выбирается параметром {@code count} запроса GET /api/users.
+ */
+public enum CountMode {
+
+    /**
+     * Точный COUNT по всем подходящим строкам.
+     */
+    EXACT,
+
+    /**
+     * COUNT не дальше user.search.count-cap строк (LIMIT в подзапросе).
+     * totalElements, равный пределу, означает «не меньше предела».
+     */
+    CAPPED,
+
+    /**
+     * Оценка без обхода строк: pg_class.reltuples для поиска без фильтров,
+     * иначе число строк из плана запроса.
+     */
+    ESTIMATED;
+
+    /**
+     * Режим по значению параметра запроса, без учёта регистра: exact, capped, estimated.
+     * @throws IllegalArgumentException для неизвестного значения
+     */
+    public static CountMode of(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный режим подсчёта: " + value, e);
+        }
+    }
+}
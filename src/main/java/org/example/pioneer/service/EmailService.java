@@ -72,8 +72,11 @@ public class EmailService {
             throw new EmailAlreadyExistsException(newEmail);
         }
 
+        String oldEmail = ed.getEmail();
         ed.setEmail(newEmail);
-        return emailRepo.save(ed);
+        EmailData saved = emailRepo.save(ed);
+        emailRepo.evictEmail(oldEmail);
+        return saved;
     }
 
     /**
@@ -97,11 +100,12 @@ public class EmailService {
             throw new IllegalStateException("У пользователя должен оставаться хотя бы один e-mail");
         }
 
-        emailRepo.deleteById(emailId);
+        emailRepo.delete(ed);
     }
 
+    // через кэшируемый снимок: повторный запрос с несуществующим id не доходит до БД
     private void ensureUserExists(Long userId) {
-        if (!userRepo.existsById(userId)) {
+        if (userRepo.findSnapshotById(userId).isEmpty()) {
             throw new ResourceNotFoundException("User не найден, id=" + userId);
         }
     }
@@ -0,0 +1,242 @@
+package org.example.pioneer.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.pioneer.exception.InsufficientFundsException;
+import org.example.pioneer.exception.ResourceNotFoundException;
+import org.example.pioneer.exception.TransferPendingException;
+import org.example.pioneer.model.TransferIdempotencyKey;
+import org.example.pioneer.repository.TransferIdempotencyKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Идемпотентность переводов по заголовку Idempotency-Key.
+ * Ключ хранится в transfer_idempotency_keys и вставляется в транзакции перевода;
+ * перед таблицей стоит LRU последних ключей, чтобы повтор не ходил в БД вовсе.
+ * Окончательный отказ (нет средств, нет счёта) тоже запоминается под ключом:
+ * повтор получает тот же отказ, даже если деньги к этому времени пришли.
+ * Перевод, не подтверждённый за время ожидания (transfer.mode=IN_MEMORY), оставляет ключ
+ * PENDING до своего итога: повтор в это время получает {@link TransferPendingException}.
+ */
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    static final String PENDING = "PENDING";
+
+    /** Длина failure_message в таблице. */
+    private static final int MAX_MESSAGE = 500;
+
+    private final TransferIdempotencyKeyRepository keyRepo;
+
+    @Value("${transfer.idempotency.ttl:24h}")
+    private Duration ttl = Duration.ofHours(24);
+
+    @Value("${transfer.idempotency.lru-size:10000}")
+    private int lruSize = 10_000;
+
+    private Map<String, Fingerprint> recent;
+
+    /**
+     * Быстрая проверка по LRU, без транзакции и без обращения к БД.
+     * @return true, если перевод с этим ключом уже выполнен
+     * @throws IllegalArgumentException если ключ уже использован для другого перевода
+     * @throws InsufficientFundsException если перевод с этим ключом отклонён из-за нехватки средств
+     * @throws ResourceNotFoundException  если перевод с этим ключом отклонён из-за отсутствия счёта
+     */
+    public boolean isKnownReplay(Long userId, String key, Long toUserId, BigDecimal amount) {
+        Fingerprint fp;
+        synchronized (this) {
+            fp = recent().get(cacheKey(userId, key));
+        }
+        if (fp == null || fp.createdAt().isBefore(Instant.now().minus(ttl))) {
+            return false;
+        }
+        fp.verify(toUserId, amount);
+        fp.replayFailure();
+        return true;
+    }
+
+    /**
+     * Регистрирует ключ в текущей транзакции перевода.
+     * Должен вызываться до изменения балансов: если перевод откатится, откатится и ключ.
+     * @return true — ключ новый, перевод нужно выполнить; false — это повтор выполненного перевода
+     * @throws IllegalArgumentException если ключ уже использован для другого перевода
+     * @throws InsufficientFundsException если это повтор перевода, отклонённого из-за нехватки средств
+     * @throws ResourceNotFoundException  если это повтор перевода, отклонённого из-за отсутствия счёта
+     * @throws TransferPendingException   если итог перевода с этим ключом ещё неизвестен
+     */
+    @Transactional
+    public boolean register(Long userId, String key, Long toUserId, BigDecimal amount) {
+        Instant now = Instant.now();
+        if (keyRepo.insertIfAbsent(userId, key, toUserId, amount, now) == 1) {
+            Fingerprint fp = new Fingerprint(toUserId, amount, now, null, null);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        remember(userId, key, fp);
+                    }
+                });
+            }
+            return true;
+        }
+
+        TransferIdempotencyKey stored = keyRepo.findById(new TransferIdempotencyKey.Key(userId, key))
+                .orElseThrow(() -> new IllegalStateException("Ключ идемпотентности исчез: " + key));
+        if (PENDING.equals(stored.getOutcome())) {
+            new Fingerprint(stored.getToUserId(), stored.getAmount(), stored.getCreatedAt(), null, null)
+                    .verify(toUserId, amount);
+            throw new TransferPendingException("Перевод с этим Idempotency-Key ещё выполняется");
+        }
+        Fingerprint fp = new Fingerprint(stored.getToUserId(), stored.getAmount(), stored.getCreatedAt(),
+                stored.getOutcome() == null ? null : TransferStatus.valueOf(stored.getOutcome()),
+                stored.getFailureMessage());
+        fp.verify(toUserId, amount);
+        remember(userId, key, fp);
+        fp.replayFailure();
+        return false;
+    }
+
+    /**
+     * Запоминает окончательный отказ перевода под ключом. Вызывается после отката
+     * транзакции перевода (вместе с ней откатилась и вставка ключа), поэтому пишет своей транзакцией.
+     * Если итог по ключу уже записал конкурентный запрос, остаётся его итог.
+     * @param failure InsufficientFundsException или ResourceNotFoundException; другие ошибки не окончательны
+     */
+    @Transactional
+    public void registerFailure(Long userId, String key, Long toUserId, BigDecimal amount, RuntimeException failure) {
+        TransferStatus outcome = outcomeOf(failure);
+        if (outcome == null) {
+            return;
+        }
+        Fingerprint known;
+        synchronized (this) {
+            known = recent().get(cacheKey(userId, key));
+        }
+        if (known != null && known.outcome() != null) {
+            // это и был повтор записанного отказа
+            return;
+        }
+        Instant now = Instant.now();
+        String message = message(failure);
+        if (keyRepo.insertFailureIfAbsent(userId, key, toUserId, amount, now, outcome.name(), message) == 1) {
+            remember(userId, key, new Fingerprint(toUserId, amount, now, outcome, message));
+        }
+    }
+
+    /**
+     * Ключ, зарегистрированный в текущей транзакции, фиксируется как PENDING: перевод
+     * не подтвердился за время ожидания, но может выполниться. Транзакцию после этого нужно
+     * закоммитить, а итог записать через {@link #resolvePending}.
+     */
+    @Transactional
+    public void markPending(Long userId, String key) {
+        keyRepo.markPending(userId, key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // register() запомнил ключ как выполненный — это ещё не так
+                    forget(userId, key);
+                }
+            });
+        }
+    }
+
+    /**
+     * Итог перевода, ключ которого PENDING. Ждёт коммита {@link #markPending}, если тот ещё идёт.
+     * @param failure null — перевод выполнен; окончательный отказ запоминается как в {@link #registerFailure};
+     *                иная ошибка значит, что перевод не состоялся, и ключ освобождается
+     */
+    @Transactional
+    public void resolvePending(Long userId, String key, RuntimeException failure) {
+        TransferStatus outcome = outcomeOf(failure);
+        if (failure == null || outcome != null) {
+            keyRepo.resolvePending(userId, key, outcome == null ? null : outcome.name(), message(failure));
+        } else {
+            keyRepo.deletePending(userId, key);
+        }
+    }
+
+    /**
+     * Чистка ключей старше TTL.
+     */
+    @Scheduled(fixedRateString = "${transfer.idempotency.cleanup-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        keyRepo.deleteCreatedBefore(Instant.now().minus(ttl));
+    }
+
+    private synchronized void remember(Long userId, String key, Fingerprint fp) {
+        recent().put(cacheKey(userId, key), fp);
+    }
+
+    private synchronized void forget(Long userId, String key) {
+        recent().remove(cacheKey(userId, key));
+    }
+
+    /** Окончательный отказ — INSUFFICIENT_FUNDS или ACCOUNT_NOT_FOUND; прочие ошибки — null. */
+    private static TransferStatus outcomeOf(RuntimeException failure) {
+        return failure instanceof InsufficientFundsException ? TransferStatus.INSUFFICIENT_FUNDS
+                : failure instanceof ResourceNotFoundException ? TransferStatus.ACCOUNT_NOT_FOUND
+                : null;
+    }
+
+    private static String message(RuntimeException failure) {
+        if (failure == null || failure.getMessage() == null) {
+            return null;
+        }
+        return failure.getMessage().length() <= MAX_MESSAGE
+                ? failure.getMessage()
+                : failure.getMessage().substring(0, MAX_MESSAGE);
+    }
+
+    private Map<String, Fingerprint> recent() {
+        if (recent == null) {
+            recent = new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Fingerprint> eldest) {
+                    return size() > lruSize;
+                }
+            };
+        }
+        return recent;
+    }
+
+    private static String cacheKey(Long userId, String key) {
+        return userId + ":" + key;
+    }
+
+    /**
+     * @param outcome null — перевод выполнен, иначе записанный отказ
+     */
+    private record Fingerprint(Long toUserId, BigDecimal amount, Instant createdAt,
+                               TransferStatus outcome, String failureMessage) {
+        void verify(Long toUserId, BigDecimal amount) {
+            if (!this.toUserId.equals(toUserId) || this.amount.compareTo(amount) != 0) {
+                throw new IllegalArgumentException(
+                        "Idempotency-Key уже использован для другого перевода");
+            }
+        }
+
+        void replayFailure() {
+            if (outcome == TransferStatus.INSUFFICIENT_FUNDS) {
+                throw new InsufficientFundsException(failureMessage);
+            }
+            if (outcome == TransferStatus.ACCOUNT_NOT_FOUND) {
+                throw new ResourceNotFoundException(failureMessage);
+            }
+        }
+    }
+}
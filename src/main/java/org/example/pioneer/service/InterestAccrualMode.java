@@ -0,0 +1,32 @@
+package org.example.pioneer.service;
+
+/**
+ * Способ начисления процентов в {@link BalanceSchedulerService}.
+ * Выбирается свойством {@code interest.mode}.
+ */
+public enum InterestAccrualMode {
+
+    /**
+     * Исходный способ: все счета загружаются сущностями, изменённые сохраняются по одному.
+     */
+    ENTITY,
+
+    /**
+     * Один UPDATE по всей таблице; в память приходят только id изменённых счетов.
+     */
+    SET_BASED,
+
+    /**
+     * UPDATE по диапазонам id в коротких транзакциях на пуле потоков,
+     * с контрольной точкой прогона (см. {@link ChunkedInterestAccrual}).
+     */
+    CHUNKED,
+
+    /**
+     * Фоновой задачи нет: проценты считаются при чтении счёта по accrual_epoch
+     * (см. {@link InterestCalculator}) и записываются вместе с переводом.
+     * Совместим только с transfer.mode OPTIMISTIC и LOCKING: остальные режимы
+     * меняют balance SQL-запросами, не зная о непримененных периодах.
+     */
+    LAZY
+}
@@ -0,0 +1,8 @@
+package org.example.pioneer.service;
+
+/**
+ * Публикуется перед тем, как начисление процентов начнёт менять балансы в БД.
+ * Завершение — {@link InterestAccruedEvent} с finished = true.
+ */
+public record InterestAccrualStartedEvent() {
+}
@@ -0,0 +1,16 @@
+package org.example.pioneer.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Публикуется после коммита начисления процентов (в CHUNKED — после каждого диапазона):
+ * балансы в БД изменились в обход движка переводов, и его копии в памяти нужно догнать.
+ * Каждому {@link InterestAccrualStartedEvent} соответствует ровно одно событие с finished = true,
+ * в том числе если начисление упало.
+ *
+ * @param accrued  начисленная сумма по каждому изменённому счёту
+ * @param finished начисление завершено, других событий по нему не будет
+ */
+public record InterestAccruedEvent(Map<Long, BigDecimal> accrued, boolean finished) {
+}
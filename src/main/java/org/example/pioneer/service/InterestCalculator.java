@@ -0,0 +1,116 @@
+package org.example.pioneer.service;
+
+import org.example.pioneer.model.Account;
+import org.example.pioneer.model.AccountSnapshot;
+import org.example.pioneer.model.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+
+/**
+ * Правило начисления процентов: +10% за период, округление до копеек HALF_EVEN,
+ * не более 207% от initialBalance.
+ * <p>
+ * Для interest.mode=LAZY баланс в строке — база на начало периода accrual_epoch;
+ * эффективный баланс считается при чтении применением правила за прошедшие периоды
+ * и записывается в БД только вместе с изменением счёта.
+ */
+@Component
+public class InterestCalculator {
+
+    public static final BigDecimal INTEREST_RATE = new BigDecimal("1.10");
+    public static final BigDecimal MAX_MULTIPLIER = new BigDecimal("2.07");
+    public static final long PERIOD_MS = 30_000;
+    private static final long INTEREST_RATE_UNITS = Money.unitsOf(INTEREST_RATE);
+    private static final long MAX_MULTIPLIER_UNITS = Money.unitsOf(MAX_MULTIPLIER);
+    private static final int SCALE = 2;
+
+    @Value("${interest.mode:ENTITY}")
+    private InterestAccrualMode mode = InterestAccrualMode.ENTITY;
+
+    private Clock clock = Clock.systemUTC();
+
+    public boolean isLazy() {
+        return mode == InterestAccrualMode.LAZY;
+    }
+
+    /**
+     * Номер текущего периода начисления (эпоха Unix / 30 с).
+     */
+    public long currentPeriod() {
+        return Math.floorDiv(clock.millis(), PERIOD_MS);
+    }
+
+    /**
+     * Баланс после одного периода.
+     * @return новый баланс или текущий, если расти дальше некуда
+     */
+    public Money accrueOnce(Money current, Money initial) {
+        return accrue(current, initial, 1);
+    }
+
+    /**
+     * Баланс после periods периодов, с тем же округлением на каждом шаге.
+     * Цикл останавливается, как только баланс перестаёт расти (упёрся в cap или
+     * слишком мал, чтобы округление дало прирост), поэтому число шагов ограничено
+     * несколькими сотнями при любом periods.
+     * @return новый баланс или тот же экземпляр base, если баланс не вырос
+     */
+    public Money accrue(Money base, Money initial, long periods) {
+        long next = accrue(base.units(), initial.units(), periods);
+        return next == base.units() ? base : Money.ofUnits(next);
+    }
+
+    /**
+     * То же в единицах {@link Money}, без создания объектов.
+     */
+    public long accrue(long base, long initial, long periods) {
+        long cap = Money.multiplyUnits(initial, MAX_MULTIPLIER_UNITS, SCALE);
+        long current = base;
+        for (long i = 0; i < periods; i++) {
+            long next = Math.min(Money.multiplyUnits(current, INTEREST_RATE_UNITS, SCALE), cap);
+            if (next <= current) {
+                break;
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * В режиме LAZY переносит в сущность проценты за прошедшие периоды: balance становится
+     * эффективным, accrualEpoch — текущим периодом. В БД это попадёт только при сохранении
+     * счёта; в других режимах счёт не меняется.
+     */
+    public Account materialize(Account account) {
+        if (!isLazy()) {
+            return account;
+        }
+        long now = currentPeriod();
+        Long epoch = account.getAccrualEpoch();
+        if (epoch != null && epoch < now) {
+            account.setBalance(accrue(account.getBalance(), account.getInitialBalance(), now - epoch));
+        }
+        account.setAccrualEpoch(now);
+        return account;
+    }
+
+    /**
+     * То же для снимка из кэша: возвращает новый снимок, исходный не меняется.
+     */
+    public AccountSnapshot materialize(AccountSnapshot account) {
+        if (!isLazy()) {
+            return account;
+        }
+        long now = currentPeriod();
+        Long epoch = account.accrualEpoch();
+        if (epoch != null && epoch >= now) {
+            return account;
+        }
+        Money balance = epoch == null ? account.balance()
+                : accrue(account.balance(), account.initialBalance(), now - epoch);
+        return account.withBalance(balance, now);
+    }
+}
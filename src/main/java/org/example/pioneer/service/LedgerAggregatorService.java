@@ -0,0 +1,48 @@
+package org.example.pioneer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.pioneer.repository.TransferEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Переносит записи журнала transfers в accounts.balance.
+ * Каждый пакет — отдельная транзакция: баланс и флаг applied меняются вместе.
+ * Журнал пишут только transfer.mode=LEDGER и IN_MEMORY, в остальных режимах сервис
+ * не создаётся; записи, оставшиеся после смены режима, переносит начисление процентов
+ * (см. BalanceSchedulerService).
+ */
+@Slf4j
+@Service
+@ConditionalOnExpression("'${transfer.mode:OPTIMISTIC}' == 'LEDGER' or '${transfer.mode:OPTIMISTIC}' == 'IN_MEMORY'")
+@RequiredArgsConstructor
+public class LedgerAggregatorService {
+
+    private final TransferEntryRepository ledgerRepo;
+    private final AccountService accountService;
+    private final TransactionTemplate txTemplate;
+
+    @Value("${transfer.ledger.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${transfer.ledger.max-batches-per-run:100}")
+    private int maxBatchesPerRun = 100;
+
+    @Scheduled(fixedDelayString = "${transfer.ledger.aggregate-ms:200}")
+    public void aggregate() {
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<Long> touched = txTemplate.execute(status -> ledgerRepo.applyPending(batchSize));
+            if (touched == null || touched.isEmpty()) {
+                return;
+            }
+            touched.forEach(accountService::evict);
+        }
+        log.debug("Ledger aggregation: очередь не разобрана за {} пакетов", maxBatchesPerRun);
+    }
+}
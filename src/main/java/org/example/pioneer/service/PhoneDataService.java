@@ -69,8 +69,11 @@ public class PhoneDataService {
             throw new PhoneAlreadyExistsException(newPhone);
         }
 
+        String oldPhone = pd.getPhone();
         pd.setPhone(newPhone);
-        return phoneRepo.save(pd);
+        PhoneData saved = phoneRepo.save(pd);
+        phoneRepo.evictPhone(oldPhone);
+        return saved;
     }
 
     /**
@@ -92,11 +95,12 @@ public class PhoneDataService {
             throw new IllegalStateException("У пользователя должен оставаться хотя бы один телефон");
         }
 
-        phoneRepo.deleteById(phoneId);
+        phoneRepo.delete(pd);
     }
 
+    // через кэшируемый снимок: повторный запрос с несуществующим id не доходит до БД
     private void ensureUserExists(Long userId) {
-        if (!userRepo.existsById(userId)) {
+        if (userRepo.findSnapshotById(userId).isEmpty()) {
             throw new ResourceNotFoundException("User не найден, id=" + userId);
         }
     }
@@ -0,0 +1,80 @@
+package org.example.pioneer.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.pioneer.repository.SchedulerLeaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Координация фоновых задач между экземплярами приложения через таблицу scheduler_leases.
+ * Задачу выполняет только владелец аренды; владелец продлевает её на каждом тике,
+ * а если узел пропал, аренду после истечения scheduler.lease.ttl-seconds забирает другой.
+ * Номер последнего выполненного периода хранится в той же строке.
+ * <p>
+ * Аренда истекает, пока узел работает, если прогон дольше срока аренды: тогда период может начать
+ * и второй узел. Поэтому период отмечается в одной транзакции с его работой ({@link #completeWith}),
+ * с проверкой, что аренда ещё наша: закоммитить период может только один узел, у остальных
+ * работа откатывается.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SchedulerLeaseService {
+
+    private final SchedulerLeaseRepository leaseRepo;
+    private final TransactionTemplate txTemplate;
+
+    @Value("${scheduler.lease.ttl-seconds:60}")
+    private long ttlSeconds = 60;
+
+    @Value("${scheduler.node-id:}")
+    private String nodeId = "";
+
+    /**
+     * Захватывает или продлевает аренду задачи.
+     * @return пусто — задачу выполняет другой узел; иначе последний выполненный период (-1, если не было)
+     */
+    public Optional<Long> acquire(String task) {
+        Optional<Long> lastPeriod = txTemplate.execute(status ->
+                leaseRepo.tryAcquire(task, nodeId(), ttlSeconds));
+        if (lastPeriod.isEmpty()) {
+            log.debug("Задача {}: аренда у другого узла", task);
+        }
+        return lastPeriod;
+    }
+
+    /**
+     * Выполняет работу периода и отмечает период выполненным в одной транзакции.
+     * Если аренда потеряна или истекла, или записан более поздний период, транзакция откатывается
+     * вместе с работой. Транзакция ограничена сроком аренды: дольше она бы не закоммитилась.
+     * @return результат работы; пусто — ничего не записано
+     */
+    public <T> Optional<T> completeWith(String task, long period, Supplier<T> work) {
+        TransactionTemplate tx = new TransactionTemplate(txTemplate.getTransactionManager());
+        tx.setTimeout((int) Math.min(ttlSeconds, Integer.MAX_VALUE));
+        Optional<T> result = tx.execute(status -> {
+            T done = work.get();
+            if (leaseRepo.completePeriod(task, nodeId(), period, ttlSeconds) == 0) {
+                status.setRollbackOnly();
+                log.warn("Задача {}: период {} откачен — аренда потеряна или записан более поздний", task, period);
+                return Optional.empty();
+            }
+            return Optional.ofNullable(done);
+        });
+        return result == null ? Optional.empty() : result;
+    }
+
+    private String nodeId() {
+        if (nodeId.isBlank()) {
+            // host и pid: два экземпляра на одной машине не станут одним владельцем
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return nodeId;
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.pioneer.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор постраничного поиска: последняя запись страницы в непрозрачном для клиента виде.
+ * Клиент передаёт его обратно как есть; формат может меняться, пока старые курсоры читаются.
+ * <p>
+ * Поиск по имени (через индекс имён или в БД) идёт в порядке имени и продолжает с имени и id,
+ * остальной поиск — с id.
+ *
+ * @param name имя последней записи; null — курсор старого формата, только с id
+ */
+public record SearchCursor(long id, String name) {
+
+    private static final String ID_PREFIX = "id:";
+    private static final String NAME_PREFIX = "n:";
+
+    /**
+     * Курсор только с id: листание продолжится по id.
+     */
+    public static String encode(long lastId) {
+        return encode(ID_PREFIX + lastId);
+    }
+
+    public static String encode(long lastId, String lastName) {
+        return encode(NAME_PREFIX + lastId + ":" + lastName);
+    }
+
+    /**
+     * @throws IllegalArgumentException, если строка — не курсор
+     */
+    public static SearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (raw.startsWith(ID_PREFIX)) {
+                return new SearchCursor(Long.parseLong(raw.substring(ID_PREFIX.length())), null);
+            }
+            int colon = raw.indexOf(':', NAME_PREFIX.length());
+            if (raw.startsWith(NAME_PREFIX) && colon > 0) {
+                return new SearchCursor(Long.parseLong(raw.substring(NAME_PREFIX.length(), colon)),
+                        raw.substring(colon + 1));
+            }
+        } catch (IllegalArgumentException e) {
+            // и NumberFormatException
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor, e);
+        }
+        throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
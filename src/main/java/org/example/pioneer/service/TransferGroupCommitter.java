@@ -0,0 +1,284 @@
+package org.example.pioneer.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.pioneer.exception.InsufficientFundsException;
+import org.example.pioneer.exception.ResourceNotFoundException;
+import org.example.pioneer.repository.AccountBatchRepository;
+import org.example.pioneer.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit для transfer.mode=GROUP_COMMIT.
+ * <p>
+ * Переводы из разных HTTP-запросов складываются в очередь; один поток забирает их
+ * пачкой (по истечении transfer.group.window-ms или при наборе transfer.group.max-batch)
+ * и выполняет в одной транзакции одним JDBC-батчем ATOMIC-запросов. Каждый вызывающий
+ * получает результат своего перевода после коммита всей пачки.
+ * <p>
+ * Ошибки отдельных переводов не выходят за их пределы: нехватка средств — это
+ * 0 обновлённых строк в батче, несуществующий счёт отсекается до батча, а удалённый
+ * после проверки — тоже 0 строк, причина выясняется повторной проверкой.
+ * Пачку целиком роняют только ошибки БД; при конфликте блокировок она повторяется
+ * с той же задержкой, что и переводы в транзакции (transfer.retry.*).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfer.mode", havingValue = "GROUP_COMMIT")
+public class TransferGroupCommitter implements SmartLifecycle {
+
+    private final AccountRepository accountRepo;
+    private final AccountService accountService;
+    private final TransactionTemplate txTemplate;
+    private final DistributionSummary batchSizes;
+
+    @Value("${transfer.group.window-ms:5}")
+    private long windowMs = 5;
+
+    @Value("${transfer.group.max-batch:200}")
+    private int maxBatch = 200;
+
+    @Value("${transfer.group.queue-size:10000}")
+    private int queueSize = 10_000;
+
+    @Value("${transfer.retry.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${transfer.retry.initial-backoff-ms:5}")
+    private long initialBackoffMs = 5;
+
+    @Value("${transfer.retry.max-backoff-ms:100}")
+    private long maxBackoffMs = 100;
+
+    private BlockingQueue<Pending> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    public TransferGroupCommitter(AccountRepository accountRepo,
+                                  AccountService accountService,
+                                  TransactionTemplate txTemplate,
+                                  MeterRegistry meterRegistry) {
+        this.accountRepo = accountRepo;
+        this.accountService = accountService;
+        this.txTemplate = txTemplate;
+        this.batchSizes = DistributionSummary.builder("transfer.group.size")
+                .description("Переводов в одной транзакции group commit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит перевод в очередь.
+     * Future завершается после коммита пачки или с ошибкой
+     * InsufficientFundsException / ResourceNotFoundException.
+     * @throws IllegalStateException если очередь переполнена или committer остановлен
+     */
+    public CompletableFuture<Void> submit(Long fromUserId, Long toUserId, BigDecimal amount) {
+        if (!running) {
+            throw new IllegalStateException("Group commit не запущен");
+        }
+        Pending p = new Pending(new AccountBatchRepository.Transfer(fromUserId, toUserId, amount),
+                new CompletableFuture<>());
+        if (!queue.offer(p)) {
+            throw new IllegalStateException("Очередь переводов переполнена");
+        }
+        return p.result();
+    }
+
+    /**
+     * Снимает перевод с очереди, если пачка его ещё не забрала; future завершается отменой.
+     * @param result future, полученный от {@link #submit}
+     * @return true — перевод не выполнится; false — он уже в пачке и может закоммититься
+     */
+    public boolean withdraw(CompletableFuture<Void> result) {
+        if (!queue.removeIf(p -> p.result() == result)) {
+            return false;
+        }
+        result.cancel(false);
+        return true;
+    }
+
+    @Override
+    public synchronized void start() {
+        queue = new ArrayBlockingQueue<>(queueSize);
+        running = true;
+        worker = new Thread(this::drainLoop, "transfer-group-commit");
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Раньше веб-сервера: запросы не попадают в незапущенный committer, очередь разбирается после их остановки. */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || wait <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(p -> p.result().completeExceptionally(e));
+                return;
+            } catch (RuntimeException e) {
+                log.error("Group commit: пачка из {} переводов не выполнена", batch.size(), e);
+                batch.forEach(p -> p.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Одна транзакция на пачку. Исходы фиксируются в массиве и отдаются вызывающим
+     * только после коммита: при повторе или откате ни один future не завершён раньше времени.
+     */
+    private void commit(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        RuntimeException[] outcomes = new RuntimeException[batch.size()];
+        ConflictBackoff backoff = new ConflictBackoff(initialBackoffMs, maxBackoffMs);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                txTemplate.executeWithoutResult(status -> execute(batch, outcomes));
+                break;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                // сразу повторённая пачка снова столкнулась бы с тем же встречным переводом
+                backoff.pause(e);
+            }
+        }
+
+        // кэш сбрасываем до ответа вызывающим: следующий их запрос должен увидеть новый баланс
+        Set<Long> touched = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcomes[i] == null) {
+                touched.add(batch.get(i).transfer().fromId());
+                touched.add(batch.get(i).transfer().toId());
+            }
+        }
+        for (Long id : touched) {
+            // пачка уже закоммичена: сбой кэша не должен превращать её переводы в ошибки
+            try {
+                accountService.evict(id);
+            } catch (RuntimeException e) {
+                log.warn("Group commit: не удалось сбросить кэш счёта {}", id, e);
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcomes[i] == null) {
+                batch.get(i).result().complete(null);
+            } else {
+                batch.get(i).result().completeExceptionally(outcomes[i]);
+            }
+        }
+    }
+
+    private void execute(List<Pending> batch, RuntimeException[] outcomes) {
+        Set<Long> ids = new HashSet<>();
+        batch.forEach(p -> {
+            ids.add(p.transfer().fromId());
+            ids.add(p.transfer().toId());
+        });
+        Set<Long> existing = accountRepo.findExistingIds(ids);
+
+        List<Integer> runnable = new ArrayList<>(batch.size());
+        List<AccountBatchRepository.Transfer> transfers = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            AccountBatchRepository.Transfer t = batch.get(i).transfer();
+            Long missing = missingAccount(t, existing);
+            if (missing != null) {
+                outcomes[i] = new ResourceNotFoundException("Account не найден для userId=" + missing);
+            } else {
+                outcomes[i] = null;
+                runnable.add(i);
+                transfers.add(t);
+            }
+        }
+
+        int[] counts = transfers.isEmpty() ? new int[0] : accountRepo.transferAll(transfers);
+        // предварительная проверка шла без блокировок: счёт могли удалить до батча
+        Set<Long> failedIds = new HashSet<>();
+        for (int k = 0; k < counts.length; k++) {
+            if (counts[k] != 1) {
+                failedIds.add(transfers.get(k).fromId());
+                failedIds.add(transfers.get(k).toId());
+            }
+        }
+        Set<Long> stillExisting = failedIds.isEmpty() ? Set.of() : accountRepo.findExistingIds(failedIds);
+        for (int k = 0; k < counts.length; k++) {
+            if (counts[k] == 1) {
+                outcomes[runnable.get(k)] = null;
+                continue;
+            }
+            AccountBatchRepository.Transfer t = transfers.get(k);
+            Long missing = missingAccount(t, stillExisting);
+            outcomes[runnable.get(k)] = missing != null
+                    ? new ResourceNotFoundException("Account не найден для userId=" + missing)
+                    : new InsufficientFundsException(t.fromId(), "недостаточно средств для перевода " + t.amount());
+        }
+    }
+
+    private static Long missingAccount(AccountBatchRepository.Transfer t, Set<Long> existing) {
+        return !existing.contains(t.fromId()) ? t.fromId()
+                : !existing.contains(t.toId()) ? t.toId()
+                : null;
+    }
+
+    private record Pending(AccountBatchRepository.Transfer transfer, CompletableFuture<Void> result) {
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.pioneer.service;
+
+/**
+ * Режим выполнения перевода в {@link TransferService}.
+ * Выбирается свойством {@code transfer.mode}.
+ */
+public enum TransferMode {
+
+    /**
+     * Исходный режим: счета читаются через AccountService,
+     * конфликты ловит optimistic lock по @Version.
+     */
+    OPTIMISTIC,
+
+    /**
+     * Оба счёта блокируются SELECT ... FOR UPDATE строго по возрастанию id,
+     * поэтому встречные переводы не дают deadlock.
+     */
+    LOCKING,
+
+    /**
+     * Один SQL-запрос на перевод (условное списание + зачисление в CTE),
+     * без загрузки сущностей и dirty-checking Hibernate.
+     */
+    ATOMIC,
+
+    /**
+     * Балансы в памяти, шардированы по id, у каждого шарда один поток-писатель
+     * (см. {@link org.example.pioneer.engine.InMemoryLedgerEngine}).
+     * Перевод подтверждается после пакетной записи в журнал transfers,
+     * в accounts.balance его переносит LedgerAggregatorService.
+     */
+    IN_MEMORY,
+
+    /**
+     * Перевод — одна вставка в журнал transfers, без изменения строк accounts.
+     * Балансы переносит фоновый LedgerAggregatorService; актуальный остаток
+     * с учётом журнала — GET /api/account?consistent=true.
+     */
+    LEDGER,
+
+    /**
+     * Конкурентные переводы собираются в пачки и коммитятся одной транзакцией
+     * (см. {@link TransferGroupCommitter}). Перевод с Idempotency-Key
+     * выполняется как ATOMIC в собственной транзакции.
+     */
+    GROUP_COMMIT
+}
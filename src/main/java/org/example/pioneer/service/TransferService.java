@@ -1,56 +1,535 @@
 package org.example.pioneer.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.example.pioneer.dto.request.TransferRequest;
+import org.example.pioneer.engine.InMemoryLedgerEngine;
 import org.example.pioneer.exception.InsufficientFundsException;
 import org.example.pioneer.exception.ResourceNotFoundException;
+import org.example.pioneer.exception.TransferPendingException;
 import org.example.pioneer.model.Account;
+import org.example.pioneer.model.Money;
+import org.example.pioneer.repository.AccountBatchRepository;
 import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.TransferEntryRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
 public class TransferService {
     private final AccountService accountService;
     private final AccountRepository accountRepo;
+    private final TransactionTemplate txTemplate;
+    private final MeterRegistry meterRegistry;
+    private final IdempotencyService idempotencyService;
+    private final ObjectProvider<InMemoryLedgerEngine> ledgerEngine;
+    private final TransferEntryRepository ledgerRepo;
+    private final ObjectProvider<TransferGroupCommitter> groupCommitter;
+    private final InterestCalculator interest;
+
+    @Value("${transfer.mode:OPTIMISTIC}")
+    private TransferMode mode = TransferMode.OPTIMISTIC;
+
+    @Value("${transfer.retry.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${transfer.retry.initial-backoff-ms:5}")
+    private long initialBackoffMs = 5;
+
+    @Value("${transfer.retry.max-backoff-ms:100}")
+    private long maxBackoffMs = 100;
+
+    @Value("${transfer.batch.chunk-size:100}")
+    private int batchChunkSize = 100;
+
+    @Value("${transfer.engine.timeout-ms:5000}")
+    private long engineTimeoutMs = 5000;
+
+    @Value("${transfer.group.timeout-ms:5000}")
+    private long groupTimeoutMs = 5000;
 
     /**
      * Перевод денег от одного пользователя к другому.
+     * Каждая попытка выполняется в отдельной транзакции; при конфликте версий
+     * или deadlock попытка повторяется с экспоненциальной задержкой.
      * @param fromUserId  USER_ID отправителя (берётся из токена)
      * @param toUserId    USER_ID получателя
      * @param amount      сумма перевода, > 0
-     * @throws IllegalArgumentException      если amount ≤ 0
+     * @throws IllegalArgumentException      если amount ≤ 0, в нём больше {@value Money#SCALE} знаков
+     *                                       после запятой или отправитель совпадает с получателем
      * @throws InsufficientFundsException    если на счёте отправителя недостаточно средств
      * @throws ResourceNotFoundException     если какой-то аккаунт не найден
+     * @throws ConcurrencyFailureException   если конфликт не разрешился за maxAttempts попыток
      */
-    @Transactional
     @Caching(evict = {
             @CacheEvict(value = "accounts", key = "#fromUserId"),
             @CacheEvict(value = "accounts", key = "#toUserId")
     })
     public void transfer(Long fromUserId, Long toUserId, BigDecimal amount) {
+        transfer(fromUserId, toUserId, amount, null);
+    }
+
+    /**
+     * Перевод с ключом идемпотентности (заголовок Idempotency-Key).
+     * Ключ фиксируется в той же транзакции, что и балансы; повтор с тем же ключом
+     * ничего не меняет и завершается так же, как исходный вызов: успехом или тем же
+     * окончательным отказом (нет средств, нет счёта).
+     * @param idempotencyKey ключ клиента или null
+     * @throws IllegalArgumentException также если ключ уже использован для другого перевода
+     */
+    @Caching(evict = {
+            @CacheEvict(value = "accounts", key = "#fromUserId"),
+            @CacheEvict(value = "accounts", key = "#toUserId")
+    })
+    public void transfer(Long fromUserId, Long toUserId, BigDecimal amount, String idempotencyKey) {
         if (amount == null || amount.signum() <= 0) {
             throw new IllegalArgumentException("Сумма перевода должна быть > 0");
         }
+        // одна проверка точности для всех режимов: NUMERIC(19,4) иначе молча округлил бы сумму
+        Money.unitsOf(amount);
+        if (fromUserId.equals(toUserId)) {
+            throw new IllegalArgumentException("Нельзя переводить самому себе");
+        }
+        if (idempotencyKey == null) {
+            dispatch(fromUserId, toUserId, amount, null);
+            return;
+        }
+        if (idempotencyService.isKnownReplay(fromUserId, idempotencyKey, toUserId, amount)) {
+            return;
+        }
+        try {
+            dispatch(fromUserId, toUserId, amount, idempotencyKey);
+        } catch (InsufficientFundsException | ResourceNotFoundException e) {
+            // транзакция перевода откатила и ключ — отказ записывается отдельно
+            idempotencyService.registerFailure(fromUserId, idempotencyKey, toUserId, amount, e);
+            throw e;
+        }
+    }
 
-        Account from = accountService.getByUserId(fromUserId);
-        Account to   = accountService.getByUserId(toUserId);
+    private void dispatch(Long fromUserId, Long toUserId, BigDecimal amount, String idempotencyKey) {
+        if (mode == TransferMode.IN_MEMORY) {
+            transferInMemory(fromUserId, toUserId, amount, idempotencyKey);
+            return;
+        }
+        if (mode == TransferMode.GROUP_COMMIT && idempotencyKey == null) {
+            // с ключом — обычной транзакцией ниже: ключ и перевод должны коммититься вместе
+            transferGrouped(fromUserId, toUserId, amount);
+            return;
+        }
 
-        BigDecimal newFromBalance = from.getBalance().subtract(amount);
-        if (newFromBalance.signum() < 0) {
-            throw new InsufficientFundsException(fromUserId,
-                    "недостаточно средств для перевода " + amount);
+        executeWithRetry(() -> txTemplate.executeWithoutResult(status -> {
+            if (idempotencyKey != null
+                    && !idempotencyService.register(fromUserId, idempotencyKey, toUserId, amount)) {
+                return;
+            }
+            switch (mode) {
+                case LOCKING -> transferLocking(fromUserId, toUserId, amount);
+                case ATOMIC, GROUP_COMMIT -> transferAtomic(fromUserId, toUserId, amount);
+                case LEDGER -> transferLedger(fromUserId, toUserId, amount, idempotencyKey);
+                default -> transferOptimistic(fromUserId, toUserId, amount);
+            }
+        }));
+    }
+
+    /**
+     * Пакетный перевод от одного отправителя.
+     * Выполняется через JDBC batch из ATOMIC-запросов (в режиме LEDGER — записями журнала,
+     * в режиме IN_MEMORY — через движок): операторы идут по порядку,
+     * так что каждый перевод видит баланс после предыдущих.
+     * Кэш accounts сбрасывается один раз по всем затронутым счетам.
+     * В режиме IN_MEMORY переводы отправляются в движок, поддерживается только BEST_EFFORT.
+     * @return статус каждого перевода, в порядке запроса
+     */
+    public List<TransferStatus> transferBatch(Long fromUserId,
+                                              List<TransferRequest> requests,
+                                              BatchTransferMode batchMode) {
+        TransferStatus[] statuses = new TransferStatus[requests.size()];
+        List<Integer> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest r = requests.get(i);
+            if (!isValidAmount(r.getAmount()) || fromUserId.equals(r.getToUserId())) {
+                statuses[i] = TransferStatus.REJECTED;
+            } else {
+                valid.add(i);
+            }
         }
 
-        from.setBalance(newFromBalance);
-        to.setBalance(to.getBalance().add(amount));
+        if (mode == TransferMode.IN_MEMORY) {
+            if (batchMode == BatchTransferMode.ALL_OR_NOTHING) {
+                throw new IllegalArgumentException("ALL_OR_NOTHING не поддерживается в режиме IN_MEMORY");
+            }
+            transferBatchInMemory(fromUserId, requests, valid, statuses);
+        } else if (batchMode == BatchTransferMode.ALL_OR_NOTHING) {
+            if (valid.size() == requests.size()) {
+                executeWithRetry(() -> txTemplate.executeWithoutResult(status -> {
+                    boolean allCompleted = true;
+                    for (int from = 0; from < valid.size(); from += batchChunkSize) {
+                        List<Integer> chunk = valid.subList(from, Math.min(from + batchChunkSize, valid.size()));
+                        allCompleted &= executeChunk(fromUserId, requests, chunk, statuses);
+                    }
+                    if (!allCompleted) {
+                        status.setRollbackOnly();
+                    }
+                }));
+            }
+            if (Arrays.stream(statuses).anyMatch(st -> st != TransferStatus.COMPLETED)) {
+                for (int i = 0; i < statuses.length; i++) {
+                    if (statuses[i] == null || statuses[i] == TransferStatus.COMPLETED) {
+                        statuses[i] = TransferStatus.ROLLED_BACK;
+                    }
+                }
+            }
+        } else {
+            for (int from = 0; from < valid.size(); from += batchChunkSize) {
+                List<Integer> chunk = valid.subList(from, Math.min(from + batchChunkSize, valid.size()));
+                executeWithRetry(() -> txTemplate.executeWithoutResult(status ->
+                        executeChunk(fromUserId, requests, chunk, statuses)));
+            }
+        }
+
+        Set<Long> touched = new HashSet<>();
+        touched.add(fromUserId);
+        requests.forEach(r -> touched.add(r.getToUserId()));
+        touched.forEach(accountService::evict);
+        return List.of(statuses);
+    }
+
+    /** Сумма > 0 и не больше {@value Money#SCALE} знаков после запятой. */
+    private static boolean isValidAmount(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            return false;
+        }
+        try {
+            Money.unitsOf(amount);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Все переводы ставятся в очередь шарда отправителя сразу и выполняются по порядку;
+     * ждём подтверждения каждого.
+     */
+    private void transferBatchInMemory(Long fromUserId,
+                                       List<TransferRequest> requests,
+                                       List<Integer> valid,
+                                       TransferStatus[] statuses) {
+        InMemoryLedgerEngine engine = ledgerEngine.getObject();
+        List<CompletableFuture<Void>> results = new ArrayList<>(valid.size());
+        for (Integer i : valid) {
+            TransferRequest r = requests.get(i);
+            results.add(engine.transfer(fromUserId, r.getToUserId(), r.getAmount()));
+        }
+        for (int k = 0; k < valid.size(); k++) {
+            TransferStatus st;
+            try {
+                results.get(k).get(engineTimeoutMs, TimeUnit.MILLISECONDS);
+                st = TransferStatus.COMPLETED;
+            } catch (ExecutionException e) {
+                st = e.getCause() instanceof ResourceNotFoundException
+                        ? TransferStatus.ACCOUNT_NOT_FOUND
+                        : e.getCause() instanceof InsufficientFundsException
+                        ? TransferStatus.INSUFFICIENT_FUNDS
+                        : TransferStatus.REJECTED;
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Перевод не подтверждён за " + engineTimeoutMs + " мс", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Ожидание перевода прервано", e);
+            }
+            statuses[valid.get(k)] = st;
+        }
+    }
+
+    /**
+     * Проверяет существование счетов одним запросом и отправляет переводы одним JDBC-батчем.
+     * @return true, если все переводы под-пакета выполнены
+     */
+    private boolean executeChunk(Long fromUserId,
+                                 List<TransferRequest> requests,
+                                 List<Integer> chunk,
+                                 TransferStatus[] statuses) {
+        Set<Long> ids = new HashSet<>();
+        ids.add(fromUserId);
+        chunk.forEach(i -> ids.add(requests.get(i).getToUserId()));
+        Set<Long> existing = accountRepo.findExistingIds(ids);
+
+        List<Integer> runnable = new ArrayList<>(chunk.size());
+        List<AccountBatchRepository.Transfer> transfers = new ArrayList<>(chunk.size());
+        for (Integer i : chunk) {
+            TransferRequest r = requests.get(i);
+            if (!existing.contains(fromUserId) || !existing.contains(r.getToUserId())) {
+                statuses[i] = TransferStatus.ACCOUNT_NOT_FOUND;
+            } else {
+                runnable.add(i);
+                transfers.add(new AccountBatchRepository.Transfer(fromUserId, r.getToUserId(), r.getAmount()));
+            }
+        }
+
+        int[] counts = transfers.isEmpty() ? new int[0]
+                : mode == TransferMode.LEDGER ? appendAll(fromUserId, transfers)
+                : interest.isLazy() ? transferEachLocking(transfers)
+                : accountRepo.transferAll(transfers);
+        // предварительная проверка шла без блокировок: счёт могли удалить до батча
+        Set<Long> stillExisting = recheckExisting(fromUserId, transfers, counts);
+        for (int k = 0; k < counts.length; k++) {
+            AccountBatchRepository.Transfer t = transfers.get(k);
+            statuses[runnable.get(k)] = counts[k] == 1 ? TransferStatus.COMPLETED
+                    : stillExisting.contains(t.fromId()) && stillExisting.contains(t.toId())
+                    ? TransferStatus.INSUFFICIENT_FUNDS
+                    : TransferStatus.ACCOUNT_NOT_FOUND;
+        }
+        return runnable.size() == chunk.size()
+                && Arrays.stream(counts).allMatch(c -> c == 1);
+    }
+
+    /**
+     * Какие счета неудавшихся переводов батча существуют сейчас; без неудач — без запроса.
+     */
+    private Set<Long> recheckExisting(Long fromUserId, List<AccountBatchRepository.Transfer> transfers, int[] counts) {
+        Set<Long> ids = new HashSet<>();
+        for (int k = 0; k < counts.length; k++) {
+            if (counts[k] != 1) {
+                ids.add(transfers.get(k).toId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        ids.add(fromUserId);
+        return accountRepo.findExistingIds(ids);
+    }
+
+    private int[] appendAll(Long fromUserId, List<AccountBatchRepository.Transfer> transfers) {
+        ledgerRepo.lockSender(fromUserId);
+        int[] counts = new int[transfers.size()];
+        for (int k = 0; k < transfers.size(); k++) {
+            AccountBatchRepository.Transfer t = transfers.get(k);
+            counts[k] = ledgerRepo.append(t.fromId(), t.toId(), t.amount(), null) ? 1 : 0;
+        }
+        return counts;
+    }
+
+    /**
+     * interest.mode=LAZY: SQL-батч не знает о непримененных процентах,
+     * поэтому переводы идут по одному через сущности под блокировкой.
+     */
+    private int[] transferEachLocking(List<AccountBatchRepository.Transfer> transfers) {
+        int[] counts = new int[transfers.size()];
+        for (int k = 0; k < transfers.size(); k++) {
+            AccountBatchRepository.Transfer t = transfers.get(k);
+            try {
+                transferLocking(t.fromId(), t.toId(), t.amount());
+                counts[k] = 1;
+            } catch (InsufficientFundsException e) {
+                counts[k] = 0;
+            }
+        }
+        return counts;
+    }
+
+    private void transferOptimistic(Long fromUserId, Long toUserId, BigDecimal amount) {
+        Account from = accountService.getFresh(fromUserId);
+        Account to   = accountService.getFresh(toUserId);
+
+        applyTransfer(from, to, amount);
 
         // Сохраняем оба аккаунта; optimistic lock по @Version
         accountRepo.save(from);
         accountRepo.save(to);
     }
-}
\ No newline at end of file
+
+    private void transferLocking(Long fromUserId, Long toUserId, BigDecimal amount) {
+        // Блокируем строки всегда по возрастанию id: встречные переводы A→B и B→A
+        // ждут друг друга на первой же строке, а не захватывают их крест-накрест.
+        Long firstId  = Math.min(fromUserId, toUserId);
+        Long secondId = Math.max(fromUserId, toUserId);
+
+        Account first  = lockAccount(firstId);
+        Account second = lockAccount(secondId);
+
+        Account from = first.getId().equals(fromUserId) ? first : second;
+        Account to   = first.getId().equals(toUserId) ? first : second;
+
+        applyTransfer(from, to, amount);
+
+        accountRepo.save(from);
+        accountRepo.save(to);
+    }
+
+    private void transferAtomic(Long fromUserId, Long toUserId, BigDecimal amount) {
+        if (accountRepo.transferAtomically(fromUserId, toUserId, amount) == 1) {
+            return;
+        }
+        // Холодный путь: выясняем причину, ничего не списано.
+        if (!accountRepo.existsById(fromUserId)) {
+            throw new ResourceNotFoundException("Account не найден для userId=" + fromUserId);
+        }
+        if (!accountRepo.existsById(toUserId)) {
+            throw new ResourceNotFoundException("Account не найден для userId=" + toUserId);
+        }
+        throw new InsufficientFundsException(fromUserId,
+                "недостаточно средств для перевода " + amount);
+    }
+
+    /**
+     * Перевод через in-memory движок: без транзакции и без повторов — конфликтов нет,
+     * каждый счёт меняет только поток его шарда.
+     * С Idempotency-Key ключ вставляется в транзакции, которая держится открытой,
+     * пока движок выполняет перевод: ошибка перевода откатывает и ключ, а конкурентный
+     * повтор ждёт на строке ключа. Если перевод не подтвердился за transfer.engine.timeout-ms,
+     * он ещё может записаться в журнал (движок пишет журнал своей транзакцией), поэтому ключ
+     * не откатывается, а коммитится как PENDING, и итог ему дописывает сам перевод;
+     * ключ, оставшийся PENDING после падения, движок при старте сверяет с журналом.
+     */
+    private void transferInMemory(Long fromUserId, Long toUserId, BigDecimal amount, String idempotencyKey) {
+        InMemoryLedgerEngine engine = ledgerEngine.getObject();
+        if (idempotencyKey == null) {
+            await(engine.transfer(fromUserId, toUserId, amount), engineTimeoutMs);
+            return;
+        }
+        TransferPendingException pending = txTemplate.execute(status -> {
+            if (!idempotencyService.register(fromUserId, idempotencyKey, toUserId, amount)) {
+                return null;
+            }
+            CompletableFuture<Void> result = engine.transfer(fromUserId, toUserId, amount, idempotencyKey);
+            try {
+                await(result, engineTimeoutMs);
+                return null;
+            } catch (TransferPendingException e) {
+                idempotencyService.markPending(fromUserId, idempotencyKey);
+                // после markPending: его строка заблокирована до коммита, и итог не обгонит PENDING
+                result.whenCompleteAsync((ok, failure) -> idempotencyService.resolvePending(
+                        fromUserId, idempotencyKey, failure == null ? null : unwrap(failure)));
+                return e;
+            }
+        });
+        if (pending != null) {
+            throw pending;
+        }
+    }
+
+    /**
+     * Перевод в пачке group commit. Не дождались — перевод, который пачка ещё не забрала,
+     * снимается с очереди и это отказ; забранный уже может закоммититься, и это не отказ.
+     */
+    private void transferGrouped(Long fromUserId, Long toUserId, BigDecimal amount) {
+        TransferGroupCommitter committer = groupCommitter.getObject();
+        CompletableFuture<Void> result = committer.submit(fromUserId, toUserId, amount);
+        try {
+            await(result, groupTimeoutMs);
+        } catch (TransferPendingException e) {
+            if (committer.withdraw(result)) {
+                throw new IllegalStateException("Перевод не выполнен: group commit не взял его в работу за "
+                        + groupTimeoutMs + " мс");
+            }
+            throw e;
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        return cause instanceof RuntimeException re ? re : new IllegalStateException(cause);
+    }
+
+    /**
+     * Ждёт перевод, выполняемый другим потоком, и пробрасывает его исключение как есть.
+     * @throws TransferPendingException если перевод не подтвердился за timeoutMs: он уже в очереди
+     *                                  и может выполниться позже, так что это не отказ
+     */
+    private static void await(CompletableFuture<Void> result, long timeoutMs) {
+        try {
+            result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new TransferPendingException("Перевод не подтверждён за " + timeoutMs + " мс и ещё может выполниться");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferPendingException("Ожидание перевода прервано, перевод ещё может выполниться");
+        }
+    }
+
+    /**
+     * Перевод записью в журнал transfers: строки счетов не меняются и не блокируются,
+     * баланс переносит LedgerAggregatorService. Переводы одного отправителя
+     * сериализуются advisory-блокировкой, чтобы не потратить один остаток дважды.
+     */
+    private void transferLedger(Long fromUserId, Long toUserId, BigDecimal amount, String idempotencyKey) {
+        ledgerRepo.lockSender(fromUserId);
+        if (ledgerRepo.append(fromUserId, toUserId, amount, idempotencyKey)) {
+            return;
+        }
+        if (!accountRepo.existsById(fromUserId)) {
+            throw new ResourceNotFoundException("Account не найден для userId=" + fromUserId);
+        }
+        if (!accountRepo.existsById(toUserId)) {
+            throw new ResourceNotFoundException("Account не найден для userId=" + toUserId);
+        }
+        throw new InsufficientFundsException(fromUserId,
+                "недостаточно средств для перевода " + amount);
+    }
+
+    private Account lockAccount(Long userId) {
+        return accountRepo.findByIdForUpdate(userId)
+                .map(interest::materialize)
+                .orElseThrow(() ->
+                        new ResourceNotFoundException("Account не найден для userId=" + userId));
+    }
+
+    private void applyTransfer(Account from, Account to, BigDecimal amount) {
+        Money money = Money.of(amount);
+        Money newFromBalance = from.getBalance().minus(money);
+        if (newFromBalance.isNegative()) {
+            throw new InsufficientFundsException(from.getId(),
+                    "недостаточно средств для перевода " + amount);
+        }
+
+        from.setBalance(newFromBalance);
+        to.setBalance(to.getBalance().plus(money));
+    }
+
+    /**
+     * Повторяет попытку при конфликте версий/блокировок с паузой {@link ConflictBackoff}.
+     */
+    private void executeWithRetry(Runnable attempt) {
+        ConflictBackoff backoff = new ConflictBackoff(initialBackoffMs, maxBackoffMs);
+        for (int i = 1; ; i++) {
+            try {
+                attempt.run();
+                return;
+            } catch (ConcurrencyFailureException e) {
+                meterRegistry.counter("transfer.conflicts", "mode", mode.name()).increment();
+                if (i >= maxAttempts) {
+                    meterRegistry.counter("transfer.retries.exhausted", "mode", mode.name()).increment();
+                    throw e;
+                }
+                meterRegistry.counter("transfer.retries", "mode", mode.name()).increment();
+                backoff.pause(e);
+            }
+        }
+    }
+}
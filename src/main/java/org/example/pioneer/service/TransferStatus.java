@@ -0,0 +1,14 @@
+package org.example.pioneer.service;
+
+/**
+ * Итог одного перевода в пакете.
+ */
+public enum TransferStatus {
+    COMPLETED,
+    /** Некорректный перевод: сумма ≤ 0, больше 4 знаков после запятой или перевод самому себе. */
+    REJECTED,
+    ACCOUNT_NOT_FOUND,
+    INSUFFICIENT_FUNDS,
+    /** Сам перевод прошёл бы, но пакет ALL_OR_NOTHING откатился из-за другого элемента. */
+    ROLLED_BACK
+}
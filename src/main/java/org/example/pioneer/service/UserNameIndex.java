@@ -0,0 +1,242 @@
+package org.example.pioneer.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.pioneer.repository.UserRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Индекс имён в памяти для поиска по nameStartsWith (user.search.name-index.enabled=true).
+ * <p>
+ * Ключ — имя в верхнем регистре и id: "ALICE\0…042", значение — id и дата рождения.
+ * Порядок ключей тот же, что у поиска по имени в БД (UserSpecifications.nameKey, затем id),
+ * поэтому курсор, выданный индексом, продолжается в БД и наоборот.
+ * Префикс — это непрерывный диапазон ключей, поэтому запрос nameStartsWith (+ dateOfBirthAfter)
+ * отвечает обходом этого диапазона без обращения к Postgres: совпадения идут в порядке ключа,
+ * обход останавливается, как только набрана страница; из БД затем читаются только её строки.
+ * <p>
+ * Индекс строится потоковым чтением users при старте, до приёма трафика, и обновляется
+ * после коммита в UserService.updateName/updateDateOfBirth. Изменения, сделанные другими
+ * узлами, он видит после полной перестройки раз в user.search.name-index.rebuild-ms;
+ * до неё лишние id отсекает проверка прочитанных строк, а пропущенные не находятся.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "user.search.name-index.enabled", havingValue = "true")
+public class UserNameIndex implements SmartLifecycle {
+
+    private static final char SEPARATOR = '\0';
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int ID_DIGITS = 19;
+
+    private final UserRepository userRepo;
+    private final TransactionTemplate txTemplate;
+
+    private volatile ConcurrentSkipListMap<String, Row> rows;
+    /**
+     * Изменения, пришедшие во время перестройки: потоковое чтение могло застать строку до них,
+     * поэтому они повторяются поверх нового индекса перед его публикацией. Под монитором индекса.
+     */
+    private List<Change> changedDuringRebuild;
+
+    public UserNameIndex(UserRepository userRepo, TransactionTemplate txTemplate, MeterRegistry registry) {
+        this.userRepo = userRepo;
+        this.txTemplate = txTemplate;
+        Gauge.builder("user.name.index.size", this, index -> index.rows == null ? 0 : index.rows.size())
+                .register(registry);
+    }
+
+    /**
+     * Страница пользователей, чьё имя начинается с prefix (без учёта регистра)
+     * и дата рождения позже dateOfBirthAfter, в порядке индекса: имя, затем id.
+     * @param dateOfBirthAfter null — без фильтра по дате
+     * @param countLimit       до скольких совпадений считать total; дальше обход не идёт,
+     *                         если страница уже набрана
+     * @return null, если индекс ещё не построен или prefix содержит шаблоны LIKE (% и _):
+     * такой запрос выполняется в БД
+     */
+    public Hits find(String prefix, LocalDate dateOfBirthAfter, long offset, int limit, long countLimit) {
+        NavigableMap<String, Row> range = range(prefix);
+        return range == null ? null : walk(range, dateOfBirthAfter, offset, limit, countLimit);
+    }
+
+    /**
+     * Следующая страница для листания курсором: совпадения после ключа afterKey.
+     * Есть ли ещё страницы — total больше числа id.
+     * @param afterKey {@link #key(String, long)} последней строки предыдущей страницы; null — с начала
+     * @return null — как у {@link #find}
+     */
+    public Hits findAfter(String prefix, LocalDate dateOfBirthAfter, String afterKey, int limit) {
+        NavigableMap<String, Row> range = range(prefix);
+        if (range == null) {
+            return null;
+        }
+        if (afterKey != null) {
+            range = range.tailMap(afterKey, false);
+        }
+        return walk(range, dateOfBirthAfter, 0, limit, (long) limit + 1);
+    }
+
+    /**
+     * Переиндексировать пользователя после коммита текущей транзакции.
+     * @param oldName имя до изменения — по нему находится прежний ключ
+     */
+    public void update(long id, String oldName, String name, LocalDate dateOfBirth) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(id, oldName, name, dateOfBirth);
+                }
+            });
+        } else {
+            apply(id, oldName, name, dateOfBirth);
+        }
+    }
+
+    /**
+     * Полная перестройка по таблице users; до её конца запросы обслуживает прежний индекс.
+     */
+    @Scheduled(fixedDelayString = "${user.search.name-index.rebuild-ms:300000}",
+            initialDelayString = "${user.search.name-index.rebuild-ms:300000}")
+    public void rebuild() {
+        long started = System.nanoTime();
+        ConcurrentSkipListMap<String, Row> fresh = new ConcurrentSkipListMap<>();
+        synchronized (this) {
+            changedDuringRebuild = new ArrayList<>();
+        }
+        try {
+            txTemplate.executeWithoutResult(status -> userRepo.forEachSearchRow((id, name, dateOfBirth) ->
+                    fresh.put(key(name, id), new Row(id, epochDay(dateOfBirth)))));
+            synchronized (this) {
+                changedDuringRebuild.forEach(change -> change.applyTo(fresh));
+                rows = fresh;
+            }
+        } finally {
+            synchronized (this) {
+                changedDuringRebuild = null;
+            }
+        }
+        log.info("Индекс имён: {} пользователей за {} мс", fresh.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private synchronized void apply(long id, String oldName, String name, LocalDate dateOfBirth) {
+        Change change = new Change(key(oldName, id), key(name, id), new Row(id, epochDay(dateOfBirth)));
+        if (rows != null) {
+            change.applyTo(rows);
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(change);
+        }
+    }
+
+    private NavigableMap<String, Row> range(String prefix) {
+        ConcurrentSkipListMap<String, Row> current = rows;
+        if (current == null || prefix.indexOf('%') >= 0 || prefix.indexOf('_') >= 0) {
+            return null;
+        }
+        String from = normalize(prefix);
+        return current.subMap(from, true, from + Character.MAX_VALUE, false);
+    }
+
+    private static Hits walk(NavigableMap<String, Row> range, LocalDate dateOfBirthAfter,
+                             long offset, int limit, long countLimit) {
+        long after = epochDay(dateOfBirthAfter);
+        long[] ids = new long[Math.min(limit, 64)];
+        int n = 0;
+        long total = 0;
+        String lastKey = null;
+        for (Map.Entry<String, Row> entry : range.entrySet()) {
+            Row row = entry.getValue();
+            if (after != NO_DATE && (row.dateOfBirth() == NO_DATE || row.dateOfBirth() <= after)) {
+                continue;
+            }
+            if (total >= offset && n < limit) {
+                if (n == ids.length) {
+                    ids = Arrays.copyOf(ids, (int) Math.min((long) n * 2, limit));
+                }
+                ids[n++] = row.id();
+                lastKey = entry.getKey();
+            }
+            total++;
+            if (total >= countLimit && total >= offset + limit) {
+                break;
+            }
+        }
+        return new Hits(Arrays.copyOf(ids, n), total, lastKey);
+    }
+
+    // --- SmartLifecycle: индекс строится раньше веб-сервера, см. getPhase ---
+
+    @Override
+    public void start() {
+        rebuild();
+    }
+
+    @Override
+    public void stop() {
+        rows = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return rows != null;
+    }
+
+    /** Фаза веб-сервера — DEFAULT_PHASE - 2048; с фазой по умолчанию первые запросы шли бы мимо индекса. */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    static String normalize(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Ключ индекса; по нему же продолжается листание курсором.
+     * Id дополнен нулями до 19 цифр, чтобы при одинаковом имени ключи шли по возрастанию id.
+     */
+    static String key(String name, long id) {
+        String digits = Long.toString(id);
+        return normalize(name) + SEPARATOR + "0".repeat(ID_DIGITS - digits.length()) + digits;
+    }
+
+    private static long epochDay(LocalDate date) {
+        return date == null ? NO_DATE : date.toEpochDay();
+    }
+
+    /**
+     * @param ids     id страницы в порядке индекса
+     * @param total   сколько совпадений насчитал обход (не больше countLimit, если страница набрана раньше)
+     * @param lastKey ключ последнего id страницы; null — страница пуста
+     */
+    public record Hits(long[] ids, long total, String lastKey) {
+    }
+
+    private record Row(long id, long dateOfBirth) {
+    }
+
+    private record Change(String oldKey, String newKey, Row row) {
+        void applyTo(Map<String, Row> target) {
+            target.remove(oldKey);
+            target.put(newKey, row);
+        }
+    }
+}
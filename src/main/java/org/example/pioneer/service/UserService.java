@@ -3,10 +3,12 @@ package org.example.pioneer.service;
 import lombok.RequiredArgsConstructor;
 import org.example.pioneer.exception.ResourceNotFoundException;
 import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
 import org.example.pioneer.repository.UserRepository;
 import org.example.pioneer.repository.spec.UserSpecifications;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
@@ -15,7 +17,12 @@ import org.springframework.transaction.annotation.Transactional;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.springframework.data.jpa.domain.Specification.where;
 
@@ -25,13 +32,21 @@ import static org.springframework.data.jpa.domain.Specification.where;
 public class UserService {
 
     private final UserRepository userRepo;
+    private final ObjectProvider<UserNameIndex> nameIndex;
+
+    /** Порядок поиска по имени — одинаковый в индексе имён и в БД, см. UserSpecifications.nameKey. */
+    private static final Sort BY_NAME = Sort.by(Sort.Order.asc("name").ignoreCase(), Sort.Order.asc("id"));
+    private static final Sort BY_ID = Sort.by("id").ascending();
+
+    @Value("${user.search.count-cap:10000}")
+    private int countCap = 10000;
 
     /**
      * Получение пользователя по ID (для любого, 404 если не найден).
+     * Снимок берётся из кэша users.
      */
-    @Cacheable(value = "users", key = "#id")
-    public User getById(@Min(1) Long id) {
-        return userRepo.findById(id)
+    public UserSnapshot getById(@Min(1) Long id) {
+        return userRepo.findSnapshotById(id)
                 .orElseThrow(() ->
                         new ResourceNotFoundException("User не найден, id=" + id)
                 );
@@ -42,16 +57,141 @@ public class UserService {
      * Фильтры:
      *  - dateOfBirthAfter: date_of_birth &gt; переданной даты
      *  - nameStartsWith: name LIKE '{prefix}%'
-     *  - emailEquals: точное совпадение e-mail (JOIN на email_data)
-     *  - phoneEquals: точное совпадение телефона (JOIN на phone_data)
+     *  - emailEquals: точное совпадение e-mail (EXISTS по email_data)
+     *  - phoneEquals: точное совпадение телефона (EXISTS по phone_data)
+     * Запрос только по имени и дате рождения при включённом {@link UserNameIndex}
+     * отвечается индексом: из БД читаются лишь строки страницы.
+     * Строки читаются сразу в снимки (id, name, date_of_birth), без сущностей.
+     * Всего — точный COUNT(*), см. {@link CountMode#EXACT}.
      */
-    public Page<User> search(Optional<LocalDate> dateOfBirthAfter,
+    public Page<UserSnapshot> search(Optional<LocalDate> dateOfBirthAfter,
                              Optional<String> nameStartsWith,
                              Optional<String> emailEquals,
                              Optional<String> phoneEquals,
                              @Min(0) int page,
                              @Min(1) int size) {
+        return search(dateOfBirthAfter, nameStartsWith, emailEquals, phoneEquals, page, size, CountMode.EXACT);
+    }
+
+    /**
+     * Тот же поиск с выбором способа подсчёта totalElements.
+     * Поиск по имени отдаёт пользователей в порядке имени (без учёта регистра), затем id —
+     * и из индекса имён, и из БД, поэтому страницы не зависят от того, какой узел ответил.
+     * Индекс имён считает совпадения обходом без запроса: для CAPPED и ESTIMATED —
+     * до user.search.count-cap.
+     * @param countMode EXACT — COUNT(*), CAPPED — не больше user.search.count-cap,
+     *                  ESTIMATED — оценка планировщика Postgres
+     */
+    public Page<UserSnapshot> search(Optional<LocalDate> dateOfBirthAfter,
+                             Optional<String> nameStartsWith,
+                             Optional<String> emailEquals,
+                             Optional<String> phoneEquals,
+                             @Min(0) int page,
+                             @Min(1) int size,
+                             CountMode countMode) {
+
+        Pageable pg = PageRequest.of(page, size, nameStartsWith.isPresent() ? BY_NAME : BY_ID);
+        UserNameIndex index = usableIndex(nameStartsWith, emailEquals, phoneEquals);
+        UserNameIndex.Hits hits = index == null ? null : index.find(nameStartsWith.get(),
+                dateOfBirthAfter.orElse(null), pg.getOffset(), size,
+                countMode == CountMode.EXACT ? Long.MAX_VALUE : countCap);
+        if (hits != null) {
+            return new PageImpl<>(hydrate(hits.ids(), dateOfBirthAfter, nameStartsWith), pg, hits.total());
+        }
+        Specification<User> spec = filters(dateOfBirthAfter, nameStartsWith, emailEquals, phoneEquals);
+        return switch (countMode) {
+            case EXACT -> userRepo.findSnapshots(spec, pg);
+            case CAPPED -> userRepo.findSnapshots(spec, pg, () -> userRepo.countCapped(spec, countCap));
+            case ESTIMATED -> userRepo.findSnapshots(spec, pg, () -> userRepo.estimateCount(
+                    dateOfBirthAfter.orElse(null), nameStartsWith.orElse(null),
+                    emailEquals.orElse(null), phoneEquals.orElse(null)));
+        };
+    }
+
+    /**
+     * из предыдущей страницы, в порядке поиска. Нет ни OFFSET, ни COUNT, поэтому цена
+     * из предыдущей страницы. Нет ни OFFSET, ни COUNT, поэтому цена
+     * страницы не зависит от глубины листания. Читается size + 1 строка: лишняя говорит,
+     * есть ли следующая страница. Поиск по имени идёт в порядке имени, затем id, и продолжает
+     * с имени и id из курсора — одинаково через индекс имён и в БД; курсор старого формата,
+     * только с id, продолжает по id.
+     * @param after курсор из предыдущего ответа ({@link SearchCursor}); пусто — первая страница
+     * @throws IllegalArgumentException, если курсор испорчен
+     */
+    public Slice<UserSnapshot> searchAfter(Optional<LocalDate> dateOfBirthAfter,
+                                   Optional<String> nameStartsWith,
+                                   Optional<String> emailEquals,
+                                   Optional<String> phoneEquals,
+                                   Optional<String> after,
+                                   @Min(1) int size) {
+
+        SearchCursor cursor = after.isPresent() && !after.get().isEmpty() ? SearchCursor.decode(after.get()) : null;
+        boolean byName = nameStartsWith.isPresent() && (cursor == null || cursor.name() != null);
+        UserNameIndex index = byName ? usableIndex(nameStartsWith, emailEquals, phoneEquals) : null;
+        if (index != null) {
+            String afterKey = cursor == null ? null : UserNameIndex.key(cursor.name(), cursor.id());
+            UserNameIndex.Hits hits = index.findAfter(nameStartsWith.get(), dateOfBirthAfter.orElse(null), afterKey, size);
+            List<UserSnapshot> rows = List.of();
+            // страница, целиком отсеянная проверкой, не должна обрывать листание: курсор берётся из строк
+            while (hits != null) {
+                rows = hydrate(hits.ids(), dateOfBirthAfter, nameStartsWith);
+                boolean hasNext = hits.total() > hits.ids().length;
+                if (!rows.isEmpty() || !hasNext) {
+                    return new SliceImpl<>(rows, PageRequest.of(0, size, BY_NAME), hasNext);
+                }
+                hits = index.findAfter(nameStartsWith.get(), dateOfBirthAfter.orElse(null), hits.lastKey(), size);
+            }
+        }
+        Sort sort = byName ? BY_NAME : BY_ID;
+        Specification<User> spec = filters(dateOfBirthAfter, nameStartsWith, emailEquals, phoneEquals);
+        if (cursor != null) {
+            spec = spec.and(byName
+                    ? UserSpecifications.afterName(cursor.name(), cursor.id())
+                    : UserSpecifications.idGreaterThan(cursor.id()));
+        }
+        List<UserSnapshot> rows = userRepo.findSnapshots(spec, sort, size + 1);
+        boolean hasNext = rows.size() > size;
+        return new SliceImpl<>(hasNext ? rows.subList(0, size) : rows, PageRequest.of(0, size, sort), hasNext);
+    }
 
+    /**
+     * {@link UserNameIndex}, если он включён и покрывает фильтры; сам индекс ещё может
+     * ответить null (не построен, шаблон LIKE) — тогда поиск идёт в БД.
+     */
+    private UserNameIndex usableIndex(Optional<String> nameStartsWith,
+                                      Optional<String> emailEquals,
+                                      Optional<String> phoneEquals) {
+        if (nameStartsWith.isEmpty() || emailEquals.isPresent() || phoneEquals.isPresent()) {
+            return null;
+        }
+        return nameIndex.getIfAvailable();
+    }
+
+    /**
+     * Строки пользователей в порядке ids. Индекс мог отстать от БД (изменение на другом узле),
+     * поэтому прочитанные строки ещё раз проверяются фильтрами.
+     */
+    private List<UserSnapshot> hydrate(long[] ids,
+                               Optional<LocalDate> dateOfBirthAfter,
+                               Optional<String> nameStartsWith) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        Map<Long, UserSnapshot> byId = userRepo.findSnapshotsByIdIn(Arrays.stream(ids).boxed().toList()).stream()
+                .collect(Collectors.toMap(UserSnapshot::id, Function.identity()));
+        String prefix = UserNameIndex.normalize(nameStartsWith.orElse(""));
+        return Arrays.stream(ids)
+                .mapToObj(byId::get)
+                .filter(u -> u != null && UserNameIndex.normalize(u.name()).startsWith(prefix))
+                .filter(u -> dateOfBirthAfter.isEmpty()
+                        || u.dateOfBirth() != null && u.dateOfBirth().isAfter(dateOfBirthAfter.get()))
+                .toList();
+    }
+
+    private Specification<User> filters(Optional<LocalDate> dateOfBirthAfter,
+                                        Optional<String> nameStartsWith,
+                                        Optional<String> emailEquals,
+                                        Optional<String> phoneEquals) {
         Specification<User> spec = where(null);
 
         if (dateOfBirthAfter.isPresent()) {
@@ -66,9 +206,7 @@ public class UserService {
         if (phoneEquals.isPresent()) {
             spec = spec.and(UserSpecifications.hasPhone(phoneEquals.get()));
         }
-
-        Pageable pg = PageRequest.of(page, size, Sort.by("id").ascending());
-        return userRepo.findAll(spec, pg);
+        return spec;
     }
 
     /**
@@ -79,9 +217,11 @@ public class UserService {
     @CacheEvict(value = "users", key = "#userId")
     public void updateName(@Min(1) Long userId,
                            @NotBlank String newName) {
-        User u = getById(userId);
+        User u = load(userId);
+        String oldName = u.getName();
         u.setName(newName);
         userRepo.save(u);
+        reindex(u, oldName);
     }
 
     /**
@@ -94,7 +234,7 @@ public class UserService {
         if (newPasswordHash.length() < 8) {
             throw new IllegalArgumentException("Пароль должен быть не менее 8 символов");
         }
-        User u = getById(userId);
+        User u = load(userId);
         u.setPasswordHash(newPasswordHash);
         userRepo.save(u);
     }
@@ -109,8 +249,23 @@ public class UserService {
         if (newDateOfBirth.isAfter(LocalDate.now())) {
             throw new IllegalArgumentException("Дата рождения не может быть в будущем");
         }
-        User u = getById(userId);
+        User u = load(userId);
         u.setDateOfBirth(newDateOfBirth);
         userRepo.save(u);
+        reindex(u, u.getName());
+    }
+
+    private void reindex(User u, String oldName) {
+        UserNameIndex index = nameIndex.getIfAvailable();
+        if (index != null) {
+            index.update(u.getId(), oldName, u.getName(), u.getDateOfBirth());
+        }
+    }
+
+    private User load(Long id) {
+        return userRepo.findById(id)
+                .orElseThrow(() ->
+                        new ResourceNotFoundException("User не найден, id=" + id)
+                );
     }
-}
\ No newline at end of file
+}
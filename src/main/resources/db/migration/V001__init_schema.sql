@@ -1,5 +1,3 @@
--
-
 -- таблица users
 CREATE TABLE IF NOT EXISTS users (
                                                   id              BIGSERIAL PRIMARY KEY,
@@ -0,0 +1,13 @@
+-- ключи идемпотентности переводов (заголовок Idempotency-Key)
+CREATE TABLE IF NOT EXISTS transfer_idempotency_keys (
+    user_id     BIGINT         NOT NULL,
+    idem_key    VARCHAR(255)   NOT NULL,
+    to_user_id  BIGINT         NOT NULL,
+    amount      NUMERIC(19,4)  NOT NULL,
+    created_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    CONSTRAINT pk_transfer_idempotency_keys PRIMARY KEY (user_id, idem_key)
+);
+
+-- для периодической чистки по TTL
+CREATE INDEX IF NOT EXISTS idx_transfer_idempotency_keys_created_at
+    ON transfer_idempotency_keys (created_at);
@@ -0,0 +1,22 @@
+-- журнал переводов (transfer.mode=LEDGER): строки только добавляются,
+-- в accounts.balance их переносит агрегатор
+CREATE TABLE IF NOT EXISTS transfers (
+    id            BIGSERIAL PRIMARY KEY,
+    from_user_id  BIGINT         NOT NULL,
+    to_user_id    BIGINT         NOT NULL,
+    amount        NUMERIC(19,4)  NOT NULL,
+    idem_key      VARCHAR(255),
+    created_at    TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    applied       BOOLEAN        NOT NULL DEFAULT FALSE,
+    CONSTRAINT fk_transfers_from FOREIGN KEY (from_user_id) REFERENCES accounts(id),
+    CONSTRAINT fk_transfers_to   FOREIGN KEY (to_user_id)   REFERENCES accounts(id)
+);
+
+-- история по счёту
+CREATE INDEX IF NOT EXISTS idx_transfers_from_user_id ON transfers (from_user_id);
+CREATE INDEX IF NOT EXISTS idx_transfers_to_user_id   ON transfers (to_user_id);
+
+-- непримененные записи: очередь агрегатора и расчёт доступного остатка
+CREATE INDEX IF NOT EXISTS idx_transfers_pending_id   ON transfers (id)           WHERE NOT applied;
+CREATE INDEX IF NOT EXISTS idx_transfers_pending_from ON transfers (from_user_id) WHERE NOT applied;
+CREATE INDEX IF NOT EXISTS idx_transfers_pending_to   ON transfers (to_user_id)   WHERE NOT applied;
@@ -0,0 +1,11 @@
+-- номер прогона начисления, в котором счёт последний раз получил проценты
+-- (interest.mode=CHUNKED): продолженный прогон не начислит второй раз
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS accrual_run BIGINT;
+
+-- прогоны начисления и их контрольные точки
+CREATE TABLE IF NOT EXISTS interest_accrual_runs (
+    id           BIGSERIAL PRIMARY KEY,
+    started_at   TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    finished_at  TIMESTAMP WITH TIME ZONE,
+    last_id      BIGINT NOT NULL DEFAULT 0
+);
@@ -0,0 +1,3 @@
+-- interest.mode=LAZY: balance хранит базу на начало периода accrual_epoch
+-- (номер 30-секундного периода от эпохи Unix); проценты считаются при чтении
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS accrual_epoch BIGINT;
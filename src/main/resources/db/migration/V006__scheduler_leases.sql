@@ -0,0 +1,7 @@
+-- аренды фоновых задач: в кластере задачу выполняет один узел
+CREATE TABLE IF NOT EXISTS scheduler_leases (
+    name         VARCHAR(64)  PRIMARY KEY,
+    owner        VARCHAR(255) NOT NULL,
+    expires_at   TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_period  BIGINT
+);
@@ -0,0 +1,4 @@
+-- сколько периодов начисляет прогон и какой период он закрывает:
+-- продолженный прогон догоняет ровно те периоды, с которыми начинался
+ALTER TABLE interest_accrual_runs ADD COLUMN IF NOT EXISTS periods BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE interest_accrual_runs ADD COLUMN IF NOT EXISTS target_period BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,15 @@
+-- индексы под фильтры GET /api/users (UserSpecifications):
+-- выражения совпадают с теми, что генерирует поиск, иначе планировщик их не использует
+
+-- hasEmail: EXISTS (... WHERE user_id = u.id AND lower(email) = ?)
+CREATE INDEX IF NOT EXISTS idx_email_data_lower_email ON email_data (lower(email));
+
+-- hasPhone: EXISTS (... WHERE user_id = u.id AND phone = ?)
+CREATE INDEX IF NOT EXISTS idx_phone_data_phone ON phone_data (phone);
+
+-- nameStartsWith: upper(name) LIKE 'X%'; text_pattern_ops нужен для LIKE по префиксу
+-- при любой collation базы
+CREATE INDEX IF NOT EXISTS idx_users_upper_name ON users (upper(name) text_pattern_ops);
+
+-- dateOfBirthAfter: date_of_birth > ?
+CREATE INDEX IF NOT EXISTS idx_users_date_of_birth ON users (date_of_birth);
@@ -0,0 +1,4 @@
+-- итог перевода по ключу идемпотентности: NULL — выполнен,
+-- иначе окончательный отказ (INSUFFICIENT_FUNDS, ACCOUNT_NOT_FOUND), который повтор получит снова
+ALTER TABLE transfer_idempotency_keys ADD COLUMN IF NOT EXISTS outcome VARCHAR(32);
+ALTER TABLE transfer_idempotency_keys ADD COLUMN IF NOT EXISTS failure_message VARCHAR(500);
@@ -0,0 +1,6 @@
+-- Поиск по имени идёт в порядке (upper(name) COLLATE "C", id) — том же, что у индекса имён в памяти,
+-- и листается курсором по этой паре. В collation C обычный btree подходит и для LIKE по префиксу,
+-- поэтому индекс с text_pattern_ops больше не нужен.
+CREATE INDEX IF NOT EXISTS idx_users_name_key ON users ((upper(name) COLLATE "C"), id);
+
+DROP INDEX IF EXISTS idx_users_upper_name;
@@ -0,0 +1,56 @@
+package org.example.pioneer.cache;
+
+import org.example.pioneer.cache.CacheInvalidationBus.Invalidation;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Формат сообщения сброса; доставку между узлами проверяет TwoLevelCacheTest.
+ */
+class CacheInvalidationBusTest {
+
+    @Test
+    void longAndStringKeys_roundTripWithType() {
+        Invalidation byId = Invalidation.decode(new Invalidation("node", "users", 42L).encode());
+        Invalidation byLogin = Invalidation.decode(new Invalidation("node", "usersByLogin", "42\nx").encode());
+
+        assertEquals(new Invalidation("node", "users", 42L), byId);
+        // "42" и 42 — разные ключи Caffeine
+        assertEquals(new Invalidation("node", "usersByLogin", "42\nx"), byLogin);
+    }
+
+    @Test
+    void wholeCacheAndOtherKeyTypes_becomeClear() {
+        assertNull(Invalidation.decode(new Invalidation("node", "users", null).encode()).key());
+        assertNull(Invalidation.decode(new Invalidation("node", "users", new SimpleKey(1L, 2L)).encode()).key());
+    }
+
+    @Test
+    void foreignMessages_areRejected() {
+        byte[] jdk = new JdkSerializationRedisSerializer().serialize(new Payload());
+
+        assertThrows(IllegalArgumentException.class, () -> Invalidation.decode(jdk));
+        assertThrows(IllegalArgumentException.class,
+                () -> Invalidation.decode("node\nusers\nL\nnot-a-number".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Invalidation.decode("node\nusers".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void unreadableMessage_isIgnored() {
+        CacheInvalidationBus bus = new CacheInvalidationBus(null, "test");
+
+        assertDoesNotThrow(() -> bus.onMessage(new DefaultMessage(
+                "test".getBytes(StandardCharsets.UTF_8), new byte[]{(byte) 0xAC, (byte) 0xED}), null));
+    }
+
+    static class Payload implements Serializable {
+    }
+}
@@ -0,0 +1,302 @@
+package org.example.pioneer.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.pioneer.cache.TwoLevelCacheManager.CacheSpec;
+import org.example.pioneer.model.EmailData;
+import org.example.pioneer.model.PhoneData;
+import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
+import org.example.pioneer.repository.EmailDataRepository;
+import org.example.pioneer.repository.PhoneDataRepository;
+import org.example.pioneer.repository.UserRepository;
+import org.example.pioneer.service.EmailService;
+import org.example.pioneer.service.PhoneDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Аннотации кэша на репозиториях с настоящим прокси и локальным TwoLevelCacheManager;
+ * репозитории — моки над картами в памяти.
+ * Проверяется, что запись сбрасывает ровно свои ключи: чтения не устаревают,
+ * а доля попаданий под смешанной нагрузкой остаётся высокой.
+ */
+@SpringJUnitConfig(ContactCacheEvictionTest.Config.class)
+class ContactCacheEvictionTest {
+
+    private static final int USERS = 200;
+
+    @Autowired
+    private EmailDataRepository emailRepo;
+    @Autowired
+    private PhoneDataRepository phoneRepo;
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private EmailService emailService;
+    @Autowired
+    private PhoneDataService phoneService;
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+    @Autowired
+    private Store store;
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        store.reset();
+    }
+
+    @Test
+    void updateEmail_evictsOldKeyNewKeyAndOwnersList() {
+        assertTrue(emailRepo.findByEmail("u1-0@x.com").isPresent());
+        assertTrue(emailRepo.findByEmail("moved@x.com").isEmpty()); // закэширован «не найден»
+        assertEquals(2, emailService.getAllForUser(1L).size());
+
+        Long id = store.emails.values().stream()
+                .filter(e -> e.getEmail().equals("u1-0@x.com")).findFirst().orElseThrow().getId();
+        emailService.updateEmail(1L, id, "moved@x.com");
+
+        assertTrue(emailRepo.findByEmail("u1-0@x.com").isEmpty());
+        assertEquals(id, emailRepo.findByEmail("moved@x.com").orElseThrow().getId());
+        assertTrue(emailService.getAllForUser(1L).stream().anyMatch(e -> e.getEmail().equals("moved@x.com")));
+    }
+
+    @Test
+    void updateEmail_keepsOtherUsersEntriesCached() {
+        emailRepo.findByEmail("u2-0@x.com");
+        emailService.getAllForUser(2L);
+        double missesBefore = misses();
+
+        Long id = store.emails.values().stream()
+                .filter(e -> e.getEmail().equals("u1-0@x.com")).findFirst().orElseThrow().getId();
+        emailService.updateEmail(1L, id, "moved@x.com");
+        emailRepo.findByEmail("u2-0@x.com");
+        emailService.getAllForUser(2L);
+
+        // existsByEmail не кэшируется, остальные чтения чужих ключей — попадания
+        assertEquals(missesBefore, misses());
+    }
+
+    @Test
+    void deletePhone_evictsItsKeyAndOwnersList() {
+        assertTrue(phoneRepo.findByPhone("7001-0").isPresent());
+        assertEquals(2, phoneService.getAllForUser(1L).size());
+        phoneRepo.findByPhone("7002-0");
+
+        Long id = store.phones.values().stream()
+                .filter(p -> p.getPhone().equals("7001-0")).findFirst().orElseThrow().getId();
+        phoneService.deletePhone(1L, id);
+
+        assertTrue(phoneRepo.findByPhone("7001-0").isEmpty());
+        assertEquals(1, phoneService.getAllForUser(1L).size());
+        double missesBefore = misses();
+        phoneRepo.findByPhone("7002-0");
+        assertEquals(missesBefore, misses());
+    }
+
+    @Test
+    void updatePhone_evictsOldAndNewKey() {
+        phoneRepo.findByPhone("7001-0");
+        assertTrue(phoneRepo.findByPhone("7999").isEmpty());
+
+        Long id = store.phones.values().stream()
+                .filter(p -> p.getPhone().equals("7001-0")).findFirst().orElseThrow().getId();
+        phoneService.updatePhone(1L, id, "7999");
+
+        assertTrue(phoneRepo.findByPhone("7001-0").isEmpty());
+        assertEquals(id, phoneRepo.findByPhone("7999").orElseThrow().getId());
+    }
+
+    @Test
+    void saveUser_evictsIdAndLoginKeysOnly() {
+        assertEquals("Name1", userRepo.findSnapshotById(1L).orElseThrow().name());
+        assertEquals("Name1", userRepo.findByLogin("login1").orElseThrow().getName());
+        userRepo.findSnapshotById(2L);
+
+        User u = store.users.get(1L);
+        u.setName("Renamed");
+        userRepo.save(u);
+
+        assertEquals("Renamed", userRepo.findSnapshotById(1L).orElseThrow().name());
+        assertEquals("Renamed", userRepo.findByLogin("login1").orElseThrow().getName());
+        double missesBefore = misses();
+        userRepo.findSnapshotById(2L);
+        assertEquals(missesBefore, misses());
+    }
+
+    @Test
+    void mixedLoad_readsStayFreshAndMostlyHit() {
+        double hitsBefore = count("l1", "hit") + count("l2", "hit");
+        double missesBefore = misses();
+        Random rnd = new Random(42);
+        int renames = 0;
+        for (int i = 0; i < 20_000; i++) {
+            long userId = 1 + rnd.nextInt(USERS);
+            List<EmailData> current = store.emailsOf(userId);
+            EmailData target = current.get(rnd.nextInt(current.size()));
+            int op = rnd.nextInt(100);
+            if (op < 5) {
+                emailService.updateEmail(userId, target.getId(), "u" + userId + "-r" + (++renames) + "@x.com");
+            } else if (op < 55) {
+                EmailData cached = emailRepo.findByEmail(target.getEmail()).orElseThrow();
+                assertEquals(target.getId(), cached.getId());
+            } else {
+                List<String> cached = emailService.getAllForUser(userId).stream().map(EmailData::getEmail).sorted().toList();
+                assertEquals(current.stream().map(EmailData::getEmail).sorted().toList(), cached);
+            }
+        }
+
+        double hits = count("l1", "hit") + count("l2", "hit") - hitsBefore;
+        double ratio = hits / (hits + misses() - missesBefore);
+        // ~600 холодных промахов + 2 ключа на каждую из ~1000 смен; со сбросом allEntries было бы ~0.1
+        assertTrue(ratio > 0.8, "доля попаданий " + ratio);
+    }
+
+    private double misses() {
+        return count("all", "miss");
+    }
+
+    private double count(String level, String result) {
+        return meterRegistry.find("cache.lookups").tag("level", level).tag("result", result).counters().stream()
+                .mapToDouble(c -> c.count()).sum();
+    }
+
+    /**
+     * "База" для моков репозиториев.
+     */
+    static class Store {
+        final Map<Long, User> users = new ConcurrentHashMap<>();
+        final Map<Long, EmailData> emails = new ConcurrentHashMap<>();
+        final Map<Long, PhoneData> phones = new ConcurrentHashMap<>();
+        private final AtomicLong ids = new AtomicLong();
+
+        void reset() {
+            users.clear();
+            emails.clear();
+            phones.clear();
+            for (long u = 1; u <= USERS; u++) {
+                User user = User.builder().id(u).login("login" + u).passwordHash("h")
+                        .name("Name" + u).dateOfBirth(LocalDate.of(1990, 1, 1)).build();
+                users.put(u, user);
+                for (int k = 0; k < 2; k++) {
+                    long id = ids.incrementAndGet();
+                    emails.put(id, EmailData.builder().id(id).email("u" + u + "-" + k + "@x.com")
+                            .primaryFlag(k == 0).user(user).build());
+                    phones.put(id, PhoneData.builder().id(id).phone("7" + String.format("%03d", u) + "-" + k)
+                            .primaryFlag(k == 0).user(user).build());
+                }
+            }
+        }
+
+        List<EmailData> emailsOf(long userId) {
+            return emails.values().stream().filter(e -> e.getUser().getId() == userId).toList();
+        }
+
+        List<PhoneData> phonesOf(long userId) {
+            return phones.values().stream().filter(p -> p.getUser().getId() == userId).toList();
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+
+        @Bean
+        Store store() {
+            return new Store();
+        }
+
+        @Bean
+        SimpleMeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        TwoLevelCacheManager cacheManager(MeterRegistry meterRegistry) {
+            return new TwoLevelCacheManager(
+                    List.of("users", "usersByLogin", "emails", "emailsByUser", "phones", "phonesByUser"),
+                    name -> new CacheSpec(Duration.ofMinutes(10), Duration.ofMinutes(10), 10_000),
+                    null, new SnapshotCodec(), new CacheInvalidationBus(null, "test"), meterRegistry);
+        }
+
+        @Bean
+        UserRepository userRepository(Store store) {
+            UserRepository repo = mock(UserRepository.class);
+            when(repo.existsById(anyLong())).thenAnswer(inv -> store.users.containsKey(inv.<Long>getArgument(0)));
+            when(repo.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(store.users.get(inv.<Long>getArgument(0))));
+            when(repo.findSnapshotById(anyLong())).thenAnswer(inv -> Optional.ofNullable(store.users.get(inv.<Long>getArgument(0)))
+                    .map(u -> new UserSnapshot(u.getId(), u.getName(), u.getDateOfBirth())));
+            when(repo.findByLogin(anyString())).thenAnswer(inv -> store.users.values().stream()
+                    .filter(u -> u.getLogin().equals(inv.getArgument(0))).findFirst());
+            when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+            return repo;
+        }
+
+        @Bean
+        EmailDataRepository emailDataRepository(Store store) {
+            EmailDataRepository repo = mock(EmailDataRepository.class);
+            when(repo.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(store.emails.get(inv.<Long>getArgument(0))));
+            when(repo.findByEmail(anyString())).thenAnswer(inv -> store.emails.values().stream()
+                    .filter(e -> e.getEmail().equals(inv.getArgument(0))).findFirst());
+            when(repo.existsByEmail(anyString())).thenAnswer(inv -> store.emails.values().stream()
+                    .anyMatch(e -> e.getEmail().equals(inv.getArgument(0))));
+            when(repo.findAllByUserId(anyLong())).thenAnswer(inv -> store.emailsOf(inv.getArgument(0)));
+            when(repo.save(any())).thenAnswer(inv -> {
+                EmailData e = inv.getArgument(0);
+                store.emails.put(e.getId(), e);
+                return e;
+            });
+            doAnswer(inv -> store.emails.remove(inv.<EmailData>getArgument(0).getId())).when(repo).delete(any());
+            return repo;
+        }
+
+        @Bean
+        PhoneDataRepository phoneDataRepository(Store store) {
+            PhoneDataRepository repo = mock(PhoneDataRepository.class);
+            when(repo.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(store.phones.get(inv.<Long>getArgument(0))));
+            when(repo.findByPhone(anyString())).thenAnswer(inv -> store.phones.values().stream()
+                    .filter(p -> p.getPhone().equals(inv.getArgument(0))).findFirst());
+            when(repo.existsByPhone(anyString())).thenAnswer(inv -> store.phones.values().stream()
+                    .anyMatch(p -> p.getPhone().equals(inv.getArgument(0))));
+            when(repo.findAllByUserId(anyLong())).thenAnswer(inv -> store.phonesOf(inv.getArgument(0)));
+            when(repo.save(any())).thenAnswer(inv -> {
+                PhoneData p = inv.getArgument(0);
+                store.phones.put(p.getId(), p);
+                return p;
+            });
+            doAnswer(inv -> store.phones.remove(inv.<PhoneData>getArgument(0).getId())).when(repo).delete(any());
+            return repo;
+        }
+
+        @Bean
+        EmailService emailService(EmailDataRepository emailRepo, UserRepository userRepo) {
+            return new EmailService(emailRepo, userRepo);
+        }
+
+        @Bean
+        PhoneDataService phoneDataService(PhoneDataRepository phoneRepo, UserRepository userRepo) {
+            return new PhoneDataService(phoneRepo, userRepo);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.pioneer.cache;
+
+import org.example.pioneer.model.AccountSnapshot;
+import org.example.pioneer.model.EmailData;
+import org.example.pioneer.model.Money;
+import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCodecTest {
+
+    private final SnapshotCodec codec = new SnapshotCodec();
+
+    @Test
+    void userSnapshot_roundTrip() {
+        UserSnapshot user = new UserSnapshot(42L, "Алиса", LocalDate.of(1990, 1, 31));
+
+        assertEquals(user, codec.deserialize(codec.serialize(user)));
+    }
+
+    @Test
+    void accountSnapshot_roundTripWithNullEpoch() {
+        AccountSnapshot account = new AccountSnapshot(7L, Money.of("123.4567"), Money.of("-0.0001"), null, 5L);
+
+        assertEquals(account, codec.deserialize(codec.serialize(account)));
+    }
+
+    @Test
+    void nullValue_roundTrip() {
+        assertSame(NullValue.INSTANCE, codec.deserialize(codec.serialize(NullValue.INSTANCE)));
+    }
+
+    @Test
+    void snapshots_areMuchSmallerThanJdkSerializedEntity() {
+        User entity = User.builder().id(42L).login("alice").passwordHash("hash")
+                .name("Alice").dateOfBirth(LocalDate.of(1990, 1, 1)).build();
+        int jdk = new JdkSerializationRedisSerializer().serialize(entity).length;
+        int snapshot = codec.serialize(new UserSnapshot(42L, "Alice", LocalDate.of(1990, 1, 1))).length;
+
+        assertTrue(snapshot * 10 < jdk, snapshot + " байт против " + jdk);
+        assertEquals(1 + 8 * 5, codec.serialize(
+                new AccountSnapshot(1L, Money.of("1"), Money.of("1"), 1L, 1L)).length);
+    }
+
+    @Test
+    void otherValues_fallBackToJdkSerialization() {
+        EmailData email = EmailData.builder().id(1L).email("a@x.com").primaryFlag(true).build();
+
+        Object out = codec.deserialize(codec.serialize(List.of(email)));
+
+        assertEquals("a@x.com", ((EmailData) ((List<?>) out).get(0)).getEmail());
+    }
+
+    @Test
+    void unknownOrTruncatedValue_isRejected() {
+        assertThrows(SerializationException.class, () -> codec.deserialize(new byte[]{99}));
+        byte[] account = codec.serialize(new AccountSnapshot(1L, Money.of("1"), Money.of("1"), 1L, 1L));
+        assertThrows(SerializationException.class, () -> codec.deserialize(Arrays.copyOf(account, 10)));
+    }
+
+    @Test
+    void nameLengthBeyondValue_isRejectedWithoutAllocation() {
+        byte[] user = codec.serialize(new UserSnapshot(1L, "Alice", null));
+        ByteBuffer.wrap(user).putInt(1 + 8, Integer.MAX_VALUE);
+
+        assertThrows(SerializationException.class, () -> codec.deserialize(user));
+    }
+
+    @Test
+    void jdkValueOfForeignClass_isRejected() {
+        // любой Serializable-класс вне списка, например из зависимостей приложения
+        byte[] foreign = new JdkSerializationRedisSerializer().serialize(new Foreign("x"));
+
+        assertThrows(SerializationException.class, () -> codec.deserialize(foreign));
+    }
+
+    record Foreign(String value) implements Serializable {
+    }
+}
@@ -0,0 +1,285 @@
+package org.example.pioneer.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.pioneer.cache.TwoLevelCacheManager.CacheSpec;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Загрузка через get(key, loader): single-flight, stale-while-revalidate, раннее обновление.
+ * Только L1; часы ручные, фоновое обновление выполняется сразу в читающем потоке.
+ */
+class TwoLevelCacheLoadTest {
+
+    private static final Duration LOCAL_TTL = Duration.ofSeconds(10);
+    private static final Duration NEGATIVE_TTL = Duration.ofSeconds(30);
+
+    private final AtomicLong now = new AtomicLong(1);
+    private final Ticker ticker = now::get;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void concurrentMisses_loadOnce() throws Exception {
+        TwoLevelCache cache = cache(Duration.ZERO, 0);
+        int callers = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> cache.get(1L, () -> {
+                    loads.incrementAndGet();
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                    return new ArrayList<>(List.of("alice"));
+                })));
+            }
+            awaitCount("coalesced", callers - 1);
+            release.countDown();
+
+            List<List<String>> values = new ArrayList<>();
+            for (Future<List<String>> result : results) {
+                values.add(result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            values.forEach(v -> assertEquals(List.of("alice"), v));
+            // каждый получил свой экземпляр
+            assertEquals(callers, values.stream().map(System::identityHashCode).distinct().count());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void loaderFailure_reachesWaiters_andIsNotCached() throws Exception {
+        TwoLevelCache cache = cache(Duration.ZERO, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> leader = pool.submit(() -> cache.get(1L, () -> {
+                started.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+                throw new IllegalStateException("БД недоступна");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Object> waiter = pool.submit(() -> cache.get(1L, () -> "не должен вызываться"));
+            awaitCount("coalesced", 1);
+            release.countDown();
+
+            assertInstanceOf(IllegalStateException.class, rootCause(assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS))));
+            assertInstanceOf(IllegalStateException.class, rootCause(assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS))));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals("alice", cache.get(1L, () -> "alice"));
+    }
+
+    @Test
+    void expiredEntry_withinStaleWindow_isServedAndRefreshed() {
+        TwoLevelCache cache = cache(Duration.ofSeconds(5), 0);
+        cache.get(1L, () -> "v1");
+
+        now.addAndGet(LOCAL_TTL.plusSeconds(1).toNanos());
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("v1", cache.get(1L, () -> {
+            loads.incrementAndGet();
+            return "v2";
+        }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, count("stale-refresh"));
+        assertEquals("v2", cache.get(1L, () -> "v3"));
+    }
+
+    @Test
+    void expiredEntry_pastStaleWindow_loadsSynchronously() {
+        TwoLevelCache cache = cache(Duration.ofSeconds(5), 0);
+        cache.get(1L, () -> "v1");
+
+        now.addAndGet(LOCAL_TTL.plusSeconds(6).toNanos());
+
+        assertEquals("v2", cache.get(1L, () -> "v2"));
+        assertEquals(0.0, count("stale-refresh"));
+    }
+
+    @Test
+    void expiredEntry_withoutStaleWindow_isNotServed() {
+        TwoLevelCache cache = cache(Duration.ZERO, 0);
+        cache.get(1L, () -> "v1");
+
+        now.addAndGet(LOCAL_TTL.plusSeconds(1).toNanos());
+
+        assertEquals("v2", cache.get(1L, () -> "v2"));
+    }
+
+    @Test
+    void earlyRefresh_reloadsFreshEntryBeforeExpiry() {
+        TwoLevelCache cache = cache(Duration.ZERO, 1e9);
+        cache.get(1L, () -> slowLoad("v1"));
+
+        now.addAndGet(LOCAL_TTL.toNanos() / 2);
+
+        // до истечения отдаётся текущее значение, обновление идёт "в фоне"
+        assertEquals("v1", cache.get(1L, () -> slowLoad("v2")));
+        assertEquals(1.0, count("early-refresh"));
+        assertEquals("v2", cache.get(1L, () -> slowLoad("v3")));
+    }
+
+    @Test
+    void earlyRefresh_disabledWithZeroBeta() {
+        TwoLevelCache cache = cache(Duration.ZERO, 0);
+        cache.get(1L, () -> slowLoad("v1"));
+
+        now.addAndGet(LOCAL_TTL.minusSeconds(1).toNanos());
+
+        assertEquals("v1", cache.get(1L, () -> slowLoad("v2")));
+        assertEquals(0.0, count("early-refresh"));
+    }
+
+    @Test
+    void evictDuringLoad_discardsLoadedValue() {
+        TwoLevelCache cache = cache(Duration.ZERO, 0);
+
+        assertEquals("old", cache.get(1L, () -> {
+            // запись в БД и сброс ключа, пока загрузка читала старое значение
+            cache.evict(1L);
+            return "old";
+        }));
+
+        assertEquals(1.0, count("discarded"));
+        assertEquals("new", cache.get(1L, () -> "new"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictDuringRemoteRead_doesNotPromoteToLocal() {
+        RedisTemplate<String, byte[]> redis = mock(RedisTemplate.class);
+        ValueOperations<String, byte[]> ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        SnapshotCodec codec = new SnapshotCodec();
+        TwoLevelCache cache = cache(new CacheSpec(Duration.ofMinutes(10), LOCAL_TTL, 100,
+                Duration.ZERO, 0, Duration.ZERO, 0), redis);
+        when(ops.get("users::1")).thenAnswer(inv -> {
+            // значение в Redis уже прочитано, и тут другой узел сбрасывает ключ
+            cache.invalidateLocal(1L);
+            return codec.serialize("old");
+        });
+
+        assertEquals("old", cache.get(1L).get());
+        assertEquals("old", cache.get(1L, () -> "не должен вызываться"));
+
+        assertEquals(2.0, count("discarded"));
+        // в L1 ничего не легло: оба чтения дошли до Redis
+        verify(ops, times(2)).get("users::1");
+    }
+
+    private TwoLevelCache cache(Duration staleTtl, double beta) {
+        return cache(new CacheSpec(Duration.ofMinutes(10), LOCAL_TTL, 100, staleTtl, beta, Duration.ZERO, 0));
+    }
+
+    private TwoLevelCache cache(CacheSpec spec) {
+        return cache(spec, null);
+    }
+
+    private TwoLevelCache cache(CacheSpec spec, RedisTemplate<String, byte[]> redis) {
+        return new TwoLevelCache("users",
+                Caffeine.newBuilder()
+                        .expireAfterWrite(spec.localTtl().plus(spec.staleTtl()))
+                        .ticker(ticker)
+                        .build(),
+                redis, new SnapshotCodec(), spec, ticker, Runnable::run, new CacheInvalidationBus(null, "test"), registry);
+    }
+
+    @Test
+    void missingKey_isRememberedForNegativeTtl() {
+        TwoLevelCache cache = cache(new CacheSpec(Duration.ofMinutes(10), LOCAL_TTL, 100,
+                Duration.ZERO, 0, NEGATIVE_TTL, 100));
+        AtomicInteger loads = new AtomicInteger();
+        Callable<String> notFound = () -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertNull(cache.get(1L, notFound));
+        assertNull(cache.get(1L, notFound));
+        assertNull(cache.get(1L).get());
+        assertEquals(1, loads.get());
+        assertEquals(2.0, registry.counter("cache.lookups", "cache", "users", "level", "negative", "result", "hit").count());
+
+        now.addAndGet(NEGATIVE_TTL.toNanos());
+        assertNull(cache.get(1L, notFound));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void missingKey_createdLater_isVisibleAtOnce() {
+        TwoLevelCache cache = cache(new CacheSpec(Duration.ofMinutes(10), LOCAL_TTL, 100,
+                Duration.ZERO, 0, NEGATIVE_TTL, 100));
+        assertNull(cache.get(1L, () -> null));
+        assertNull(cache.get(2L, () -> null));
+
+        // save сбрасывает ключ; put от @CachePut заменяет «не найдено»
+        cache.evict(1L);
+        cache.put(2L, "bob");
+
+        assertEquals("alice", cache.get(1L, () -> "alice"));
+        assertEquals("bob", cache.get(2L, () -> "не должен вызываться"));
+    }
+
+    @Test
+    void missingKeys_doNotEvictValues() {
+        TwoLevelCache cache = cache(new CacheSpec(Duration.ofMinutes(10), LOCAL_TTL, 100,
+                Duration.ZERO, 0, NEGATIVE_TTL, 100));
+        cache.get(0L, () -> "alice");
+
+        for (long id = 1; id <= 1_000; id++) {
+            cache.get(id, () -> null);
+        }
+
+        assertEquals("alice", cache.get(0L, () -> "не должен вызываться"));
+    }
+
+    private String slowLoad(String value) {
+        now.addAndGet(Duration.ofMillis(100).toNanos());
+        return value;
+    }
+
+    private double count(String type) {
+        return registry.counter("cache.loads", "cache", "users", "type", type).count();
+    }
+
+    private void awaitCount(String type, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (count(type) < expected) {
+            assertTrue(System.nanoTime() < deadline, "ожидающих меньше " + expected);
+            Thread.sleep(5);
+        }
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
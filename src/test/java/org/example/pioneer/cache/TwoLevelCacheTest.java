@@ -0,0 +1,212 @@
+package org.example.pioneer.cache;
+
+import com.github.fppt.jedismock.RedisServer;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.pioneer.cache.TwoLevelCacheManager.CacheSpec;
+import org.example.pioneer.config.CacheConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Два "узла" с отдельными L1 над одним Redis; вместо Redis — jedis-mock в том же процессе.
+ */
+class TwoLevelCacheTest {
+
+    private static final String CHANNEL = "test:cache-invalidation";
+
+    private RedisServer server;
+    private boolean redisRunning;
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+    private final List<RedisMessageListenerContainer> containers = new ArrayList<>();
+
+    private Node a;
+    private Node b;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = RedisServer.newRedisServer();
+        server.start();
+        redisRunning = true;
+        a = node();
+        b = node();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        containers.forEach(c -> {
+            try {
+                c.destroy();
+            } catch (Exception ignored) {
+            }
+        });
+        factories.forEach(LettuceConnectionFactory::destroy);
+        if (redisRunning) {
+            server.stop();
+        }
+    }
+
+    private void stopRedis() throws IOException {
+        server.stop();
+        redisRunning = false;
+    }
+
+    @Test
+    void put_onOneNode_isReadFromRedisOnOther() {
+        a.cache().put(1L, "alice");
+
+        assertEquals("alice", b.cache().get(1L, String.class));
+        assertEquals(1.0, b.count("l2", "hit"));
+
+        // второе чтение — уже из L1
+        assertEquals("alice", b.cache().get(1L, String.class));
+        assertEquals(1.0, b.count("l1", "hit"));
+    }
+
+    @Test
+    void evict_onOneNode_dropsOtherNodesLocalCopy() {
+        a.cache().put(1L, "alice");
+        assertEquals("alice", b.cache().get(1L, String.class));
+
+        a.cache().evict(1L);
+
+        await(() -> b.cache().get(1L) == null);
+        assertNull(a.cache().get(1L));
+    }
+
+    @Test
+    void put_onOneNode_replacesOtherNodesLocalCopy() {
+        a.cache().put(1L, "alice");
+        assertEquals("alice", b.cache().get(1L, String.class));
+
+        a.cache().put(1L, "alice-2");
+
+        await(() -> "alice-2".equals(b.cache().get(1L, String.class)));
+    }
+
+    @Test
+    void clear_dropsAllKeysOnAllNodes() {
+        a.cache().put(1L, "alice");
+        a.cache().put(2L, "bob");
+        assertEquals("bob", b.cache().get(2L, String.class));
+
+        a.cache().clear();
+
+        await(() -> b.cache().get(1L) == null && b.cache().get(2L) == null);
+    }
+
+    @Test
+    void localHit_doesNotTouchRedis() throws IOException {
+        a.cache().put(1L, "alice");
+        stopRedis();
+
+        assertEquals("alice", a.cache().get(1L, String.class));
+        assertEquals(1.0, a.count("l1", "hit"));
+    }
+
+    @Test
+    void redisDown_cacheKeepsWorkingLocally() throws IOException {
+        stopRedis();
+
+        a.cache().put(1L, "alice");
+        assertEquals("alice", a.cache().get(1L, String.class));
+        assertEquals("loaded", a.cache().get(2L, () -> "loaded"));
+        assertEquals("loaded", a.cache().get(2L, String.class));
+    }
+
+    @Test
+    void reads_returnIndependentCopies() {
+        a.cache().put(1L, new ArrayList<>(List.of("x")));
+
+        @SuppressWarnings("unchecked")
+        List<String> first = a.cache().get(1L, List.class);
+        first.add("mutated");
+
+        assertEquals(List.of("x"), a.cache().get(1L, List.class));
+    }
+
+    @Test
+    void nullValue_isCached() {
+        int[] loads = {0};
+        assertNull(a.cache().get(1L, () -> {
+            loads[0]++;
+            return null;
+        }));
+        assertNull(b.cache().get(1L, () -> {
+            loads[0]++;
+            return null;
+        }));
+
+        assertEquals(1, loads[0]);
+    }
+
+    @Test
+    void unreadableValue_isTreatedAsMiss() {
+        CacheConfig.cacheRedisTemplate(factories.get(0)).opsForValue().set("users::1", new byte[]{99});
+
+        assertEquals("loaded", b.cache().get(1L, () -> "loaded"));
+        assertEquals("loaded", a.cache().get(1L, String.class));
+    }
+
+    private Node node() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(server.getHost(), server.getBindPort());
+        LettuceClientConfiguration client = LettuceClientConfiguration.builder()
+                .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+                .commandTimeout(Duration.ofMillis(500))
+                .build();
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(config, client);
+        factory.afterPropertiesSet();
+        factories.add(factory);
+
+        RedisTemplate<String, byte[]> redis = CacheConfig.cacheRedisTemplate(factory);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(List.of("users"),
+                name -> new CacheSpec(Duration.ofMinutes(10), Duration.ofMinutes(1), 100),
+                redis, new SnapshotCodec(), new CacheInvalidationBus(redis, CHANNEL), registry);
+        manager.afterPropertiesSet();
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(manager.getBus(), new ChannelTopic(CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+        containers.add(container);
+        return new Node(manager.getTwoLevelCache("users"), registry);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "условие не выполнилось за 5 с");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    private record Node(Cache cache, SimpleMeterRegistry registry) {
+        double count(String level, String result) {
+            return registry.counter("cache.lookups", "cache", "users", "level", level, "result", result).count();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package org.example.pioneer.engine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.pioneer.exception.InsufficientFundsException;
+import org.example.pioneer.exception.ResourceNotFoundException;
+import org.example.pioneer.repository.AccountBatchRepository;
+import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.TransferEntryRepository;
+import org.example.pioneer.repository.TransferIdempotencyKeyRepository;
+import org.example.pioneer.repository.TransferLedgerRepository;
+import org.example.pioneer.service.InterestAccrualStartedEvent;
+import org.example.pioneer.service.InterestAccruedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Движок на настоящих потоках шардов; репозитории — моки,
+ * "база" — карта балансов и список записей журнала, которые переносит {@link #aggregate()}.
+ */
+class InMemoryLedgerEngineTest {
+
+    private final Map<Long, BigDecimal> db = new ConcurrentHashMap<>();
+    private final List<TransferLedgerRepository.Entry> journal = new ArrayList<>();
+    private AccountRepository accountRepo;
+    private TransferEntryRepository journalRepo;
+    private TransferIdempotencyKeyRepository keyRepo;
+    private SimpleMeterRegistry registry;
+    private InMemoryLedgerEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        db.put(1L, new BigDecimal("100.00"));
+        db.put(2L, new BigDecimal("50.00"));
+        db.put(3L, new BigDecimal("0.00"));
+
+        accountRepo = mock(AccountRepository.class);
+        doAnswer(inv -> {
+            AccountBatchRepository.BalanceConsumer c = inv.getArgument(0);
+            db.forEach(c::accept);
+            return null;
+        }).when(accountRepo).forEachBalance(any());
+        when(accountRepo.findBalances(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            Map<Long, BigDecimal> out = new HashMap<>();
+            ids.forEach(id -> {
+                if (db.containsKey(id)) out.put(id, db.get(id));
+            });
+            return out;
+        });
+
+        journalRepo = mock(TransferEntryRepository.class);
+        doAnswer(inv -> {
+            List<TransferLedgerRepository.Entry> rows = inv.getArgument(0);
+            synchronized (journal) {
+                journal.addAll(rows);
+            }
+            return null;
+        }).when(journalRepo).appendAll(anyList());
+        when(journalRepo.pendingDeltas()).thenAnswer(inv -> pendingDeltas());
+        when(journalRepo.pendingDelta(anyLong())).thenAnswer(inv ->
+                pendingDeltas().getOrDefault(inv.<Long>getArgument(0), BigDecimal.ZERO));
+
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        registry = new SimpleMeterRegistry();
+        keyRepo = mock(TransferIdempotencyKeyRepository.class);
+        engine = new InMemoryLedgerEngine(accountRepo, journalRepo, keyRepo, new TransactionTemplate(txManager), registry);
+        ReflectionTestUtils.setField(engine, "shardCount", 2);
+        ReflectionTestUtils.setField(engine, "ringSize", 8);
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    @Test
+    void transfer_isJournaledBeforeCompletion() throws Exception {
+        engine.transfer(1L, 2L, new BigDecimal("30.00")).get(1, TimeUnit.SECONDS);
+
+        assertEquals(1, journal.size());
+        TransferLedgerRepository.Entry row = journal.get(0);
+        assertEquals(1L, row.fromId());
+        assertEquals(2L, row.toId());
+        assertEquals(0, new BigDecimal("30").compareTo(row.amount()));
+        assertEquals(0, new BigDecimal("70").compareTo(engine.balanceOf(1L).get()));
+        assertEquals(0, new BigDecimal("80").compareTo(engine.balanceOf(2L).get()));
+    }
+
+    @Test
+    void idempotencyKey_isWrittenToJournal_andPendingKeysAreSettledOnStart() throws Exception {
+        engine.transfer(1L, 2L, new BigDecimal("30.00"), "k-1").get(1, TimeUnit.SECONDS);
+
+        assertEquals("k-1", journal.get(0).idemKey());
+        InOrder order = inOrder(keyRepo);
+        order.verify(keyRepo).settlePendingFromJournal();
+        order.verify(keyRepo).deleteAllPending();
+    }
+
+    @Test
+    void restart_replaysUnappliedJournal() throws Exception {
+        engine.transfer(1L, 2L, new BigDecimal("30.00")).get(1, TimeUnit.SECONDS);
+        // "падение": агрегатор журнал ещё не перенёс
+        engine.stop();
+        engine.start();
+
+        assertEquals(0, new BigDecimal("70").compareTo(engine.balanceOf(1L).get(1, TimeUnit.SECONDS)));
+        assertEquals(0, new BigDecimal("80").compareTo(engine.balanceOf(2L).get(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void journalFailure_rejectsTransferAndRevertsBalances() throws Exception {
+        doThrow(new DataAccessResourceFailureException("нет соединения")).when(journalRepo).appendAll(anyList());
+        ReflectionTestUtils.setField(engine, "journalAttempts", 2);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> engine.transfer(1L, 2L, new BigDecimal("30")).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DataAccessResourceFailureException.class, e.getCause());
+
+        assertEquals(0, new BigDecimal("100").compareTo(engine.balanceOf(1L).get(1, TimeUnit.SECONDS)));
+        assertEquals(0, new BigDecimal("50").compareTo(engine.balanceOf(2L).get(1, TimeUnit.SECONDS)));
+        assertEquals(1.0, registry.counter("ledger.journal.rejected").count());
+        // две попытки пачкой и одна — по одному переводу
+        verify(journalRepo, times(3)).appendAll(anyList());
+    }
+
+    @Test
+    void creditIsNotSpendableUntilJournaled() throws Exception {
+        CountDownLatch journalOpen = new CountDownLatch(1);
+        doAnswer(inv -> {
+            journalOpen.await(5, TimeUnit.SECONDS);
+            List<TransferLedgerRepository.Entry> rows = inv.getArgument(0);
+            synchronized (journal) {
+                journal.addAll(rows);
+            }
+            return null;
+        }).when(journalRepo).appendAll(anyList());
+
+        CompletableFuture<Void> incoming = engine.transfer(1L, 3L, new BigDecimal("30"));
+        // зачисление на счёт 3 ещё не в журнале: тратить его нельзя
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> engine.transfer(3L, 2L, new BigDecimal("10")).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(InsufficientFundsException.class, e.getCause());
+        assertEquals(0, BigDecimal.ZERO.compareTo(engine.balanceOf(3L).get(1, TimeUnit.SECONDS)));
+
+        journalOpen.countDown();
+        incoming.get(5, TimeUnit.SECONDS);
+        engine.transfer(3L, 2L, new BigDecimal("10")).get(5, TimeUnit.SECONDS);
+        assertEquals(0, new BigDecimal("20").compareTo(engine.balanceOf(3L).get(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void rejectedCredit_neverLeavesNegativeBalance() throws Exception {
+        doThrow(new DataAccessResourceFailureException("нет соединения")).when(journalRepo).appendAll(anyList());
+        ReflectionTestUtils.setField(engine, "journalAttempts", 1);
+
+        CompletableFuture<Void> incoming = engine.transfer(1L, 3L, new BigDecimal("30"));
+        CompletableFuture<Void> spend = engine.transfer(3L, 2L, new BigDecimal("30"));
+
+        assertThrows(ExecutionException.class, () -> incoming.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> spend.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(InsufficientFundsException.class, e.getCause());
+        assertEquals(0, BigDecimal.ZERO.compareTo(engine.balanceOf(3L).get(1, TimeUnit.SECONDS)));
+        assertEquals(0, new BigDecimal("100").compareTo(engine.balanceOf(1L).get(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void transfer_insufficientFunds() {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> engine.transfer(2L, 1L, new BigDecimal("50.01")).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(InsufficientFundsException.class, e.getCause());
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    void transfer_missingRecipient_refundsSender() throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> engine.transfer(1L, 99L, new BigDecimal("10")).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ResourceNotFoundException.class, e.getCause());
+
+        assertEquals(0, new BigDecimal("100").compareTo(engine.balanceOf(1L).get(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void transfer_creditFails_refundsSender() throws Exception {
+        // зачисление переполнит баланс получателя в единицах
+        db.put(4L, new BigDecimal("922337203685477.0000"));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> engine.transfer(1L, 4L, new BigDecimal("1")).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ArithmeticException.class, e.getCause());
+
+        assertEquals(0, new BigDecimal("100").compareTo(engine.balanceOf(1L).get(1, TimeUnit.SECONDS)));
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    void transfer_accountCreatedAfterStart_isLoadedOnDemand() throws Exception {
+        db.put(4L, new BigDecimal("5"));
+
+        engine.transfer(4L, 3L, new BigDecimal("5")).get(1, TimeUnit.SECONDS);
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(engine.balanceOf(4L).get(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void concurrentTransfers_conserveTotal() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long from = t % 2 == 0 ? 1L : 2L;
+            long to = t % 2 == 0 ? 2L : 1L;
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    CompletableFuture<Void> f = engine.transfer(from, to, new BigDecimal("0.01"));
+                    synchronized (results) {
+                        results.add(f);
+                    }
+                }
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) {
+            th.join();
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        engine.stop();
+        assertEquals(2000, journal.size());
+        aggregate();
+        assertEquals(0, new BigDecimal("150").compareTo(db.get(1L).add(db.get(2L))));
+        assertEquals(0, new BigDecimal("100").compareTo(db.get(1L)));
+    }
+
+    @Test
+    void interestAccrued_addsAccruedAmountsWhileTransfersContinue() throws Exception {
+        engine.transfer(1L, 2L, new BigDecimal("10")).get(1, TimeUnit.SECONDS);
+        aggregate();
+
+        engine.onInterestAccrualStarted(new InterestAccrualStartedEvent());
+        // начисление прошло в обход движка, переводы при этом не останавливаются
+        db.computeIfPresent(2L, (id, b) -> b.add(new BigDecimal("6")));
+        engine.transfer(1L, 2L, new BigDecimal("5")).get(1, TimeUnit.SECONDS);
+        engine.onInterestAccrued(new InterestAccruedEvent(Map.of(2L, new BigDecimal("6")), true));
+
+        assertEquals(0, new BigDecimal("71").compareTo(engine.balanceOf(2L).get(1, TimeUnit.SECONDS)));
+        assertEquals(0, new BigDecimal("85").compareTo(engine.balanceOf(1L).get(1, TimeUnit.SECONDS)));
+        verify(accountRepo, never()).findBalances(anyCollection());
+    }
+
+    @Test
+    void accountUnknownToEngine_isLoadedOnlyAfterAccrualFinishes() throws Exception {
+        db.put(4L, new BigDecimal("20.00"));
+
+        engine.onInterestAccrualStarted(new InterestAccrualStartedEvent());
+        db.computeIfPresent(4L, (id, b) -> b.add(new BigDecimal("2")));
+        CompletableFuture<BigDecimal> read = engine.balanceOf(4L);
+        engine.onInterestAccrued(new InterestAccruedEvent(Map.of(4L, new BigDecimal("2")), false));
+        Thread.sleep(50);
+        assertFalse(read.isDone());
+
+        engine.onInterestAccrued(new InterestAccruedEvent(Map.of(), true));
+        // баланс из БД уже с процентами — второй раз они не прибавляются
+        assertEquals(0, new BigDecimal("22").compareTo(read.get(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void toUnits_rejectsTooManyDecimals() {
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.transfer(1L, 2L, new BigDecimal("0.00001")));
+    }
+
+    private Map<Long, BigDecimal> pendingDeltas() {
+        Map<Long, BigDecimal> deltas = new HashMap<>();
+        synchronized (journal) {
+            for (TransferLedgerRepository.Entry t : journal) {
+                deltas.merge(t.fromId(), t.amount().negate(), BigDecimal::add);
+                deltas.merge(t.toId(), t.amount(), BigDecimal::add);
+            }
+        }
+        return deltas;
+    }
+
+    /** Работа LedgerAggregatorService: перенос журнала в балансы. */
+    private void aggregate() {
+        synchronized (journal) {
+            pendingDeltas().forEach((id, d) -> db.merge(id, d, BigDecimal::add));
+            journal.clear();
+        }
+    }
+}
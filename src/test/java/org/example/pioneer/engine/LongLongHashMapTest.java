@@ -0,0 +1,50 @@
+package org.example.pioneer.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongHashMapTest {
+
+    @Test
+    void putGet_zeroAndNegativeKeys() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        map.put(0L, 7L);
+        map.put(-5L, 3L);
+
+        assertEquals(7L, map.get(0L));
+        assertEquals(3L, map.get(-5L));
+        assertEquals(LongLongHashMap.MISSING, map.get(42L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void addTo_missingKeyCountsAsZero() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        map.addTo(1L, -10L);
+        map.addTo(1L, 25L);
+
+        assertEquals(15L, map.get(1L));
+    }
+
+    @Test
+    void growsAndMatchesHashMap() {
+        LongLongHashMap map = new LongLongHashMap(2);
+        Map<Long, Long> expected = new HashMap<>();
+        Random rnd = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long key = rnd.nextInt(3_000);
+            map.addTo(key, i);
+            expected.merge(key, (long) i, Long::sum);
+        }
+
+        assertEquals(expected.size(), map.size());
+        Map<Long, Long> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.pioneer.model;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigUtil;
+import org.hibernate.annotations.Cache;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Каждому региону из @Cache нужен раздел в application.conf:
+ * с missing_cache_strategy=fail без него приложение не стартует.
+ */
+class HibernateCacheRegionsTest {
+
+    private static final List<Class<?>> CACHED = List.of(User.class, EmailData.class, PhoneData.class, Account.class);
+
+    @Test
+    void everyRegion_isConfigured() {
+        Config config = ConfigFactory.parseResources("application.conf");
+        List<String> regions = new ArrayList<>();
+        for (Class<?> type : CACHED) {
+            Cache cache = type.getAnnotation(Cache.class);
+            assertNotNull(cache, type.getSimpleName() + " без @Cache");
+            regions.add(cache.region());
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Cache.class)) {
+                    regions.add(field.getAnnotation(Cache.class).region());
+                }
+            }
+        }
+
+        assertEquals(6, regions.size());
+        for (String region : regions) {
+            assertFalse(region.isEmpty());
+            assertTrue(config.hasPath(ConfigUtil.joinPath("caffeine", "jcache", region)),
+                    "регион " + region + " не описан в application.conf");
+        }
+    }
+
+    @Test
+    void accountRegion_expiresSoonerThanDefault() {
+        Config jcache = ConfigFactory.parseResources("application.conf").getConfig("caffeine.jcache");
+
+        assertTrue(jcache.getDuration("account.policy.eager-expiration.after-write")
+                .compareTo(jcache.getDuration("default.policy.eager-expiration.after-write")) < 0);
+    }
+}
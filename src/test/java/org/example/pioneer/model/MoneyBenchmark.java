@@ -0,0 +1,135 @@
+package org.example.pioneer.model;
+
+import org.example.pioneer.service.InterestCalculator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Арифметика горячих циклов на BigDecimal (как было в сервисах) против long-единиц {@link Money}:
+ * начисление одного периода по всем счетам и серия переводов между ними.
+ * Запуск: см. раздел «Бенчмарки» в README или main() из IDE; аллокации — с -prof gc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int TRANSFERS = 10_000;
+
+    private final InterestCalculator interest = new InterestCalculator();
+
+    private BigDecimal[] decimalBalances;
+    private BigDecimal[] decimalInitial;
+    private long[] unitBalances;
+    private long[] unitInitial;
+
+    private int[] from;
+    private int[] to;
+    private BigDecimal[] decimalAmounts;
+    private long[] unitAmounts;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Random rnd = new Random(42);
+        decimalBalances = new BigDecimal[ACCOUNTS];
+        decimalInitial = new BigDecimal[ACCOUNTS];
+        unitBalances = new long[ACCOUNTS];
+        unitInitial = new long[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BigDecimal initial = BigDecimal.valueOf(rnd.nextInt(1_000_000), 2);
+            decimalInitial[i] = initial;
+            decimalBalances[i] = initial;
+            unitInitial[i] = Money.unitsOf(initial);
+            unitBalances[i] = unitInitial[i];
+        }
+        from = new int[TRANSFERS];
+        to = new int[TRANSFERS];
+        decimalAmounts = new BigDecimal[TRANSFERS];
+        unitAmounts = new long[TRANSFERS];
+        for (int i = 0; i < TRANSFERS; i++) {
+            from[i] = rnd.nextInt(ACCOUNTS);
+            to[i] = rnd.nextInt(ACCOUNTS);
+            decimalAmounts[i] = BigDecimal.valueOf(rnd.nextInt(10_000), 2);
+            unitAmounts[i] = Money.unitsOf(decimalAmounts[i]);
+        }
+    }
+
+    @Benchmark
+    public void accrueBigDecimal(Blackhole bh) {
+        int changed = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BigDecimal current = decimalBalances[i];
+            BigDecimal next = current.multiply(InterestCalculator.INTEREST_RATE)
+                    .setScale(2, RoundingMode.HALF_EVEN)
+                    .min(decimalInitial[i].multiply(InterestCalculator.MAX_MULTIPLIER)
+                            .setScale(2, RoundingMode.HALF_EVEN));
+            if (next.compareTo(current) > 0) {
+                decimalBalances[i] = next;
+                changed++;
+            }
+        }
+        bh.consume(changed);
+    }
+
+    @Benchmark
+    public void accrueUnits(Blackhole bh) {
+        int changed = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            long current = unitBalances[i];
+            long next = interest.accrue(current, unitInitial[i], 1);
+            if (next > current) {
+                unitBalances[i] = next;
+                changed++;
+            }
+        }
+        bh.consume(changed);
+    }
+
+    @Benchmark
+    public void transferBigDecimal(Blackhole bh) {
+        int rejected = 0;
+        for (int i = 0; i < TRANSFERS; i++) {
+            BigDecimal newFrom = decimalBalances[from[i]].subtract(decimalAmounts[i]);
+            if (newFrom.signum() < 0) {
+                rejected++;
+                continue;
+            }
+            decimalBalances[from[i]] = newFrom;
+            decimalBalances[to[i]] = decimalBalances[to[i]].add(decimalAmounts[i]);
+        }
+        bh.consume(rejected);
+    }
+
+    @Benchmark
+    public void transferUnits(Blackhole bh) {
+        int rejected = 0;
+        for (int i = 0; i < TRANSFERS; i++) {
+            long newFrom = Math.subtractExact(unitBalances[from[i]], unitAmounts[i]);
+            if (newFrom < 0) {
+                rejected++;
+                continue;
+            }
+            unitBalances[from[i]] = newFrom;
+            unitBalances[to[i]] = Math.addExact(unitBalances[to[i]], unitAmounts[i]);
+        }
+        bh.consume(rejected);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
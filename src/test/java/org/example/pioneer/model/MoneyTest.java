@@ -0,0 +1,72 @@
+package org.example.pioneer.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void multiply_matchesBigDecimalHalfEven() {
+        Random rnd = new Random(7);
+        long[] rates = {Money.unitsOf(new BigDecimal("1.10")), Money.unitsOf(new BigDecimal("2.07")),
+                Money.unitsOf(new BigDecimal("0.0001")), Money.unitsOf(new BigDecimal("3.1415")), 0};
+        for (int i = 0; i < 100_000; i++) {
+            long units = rnd.nextInt(4) == 0 ? rnd.nextLong() % 1_000_000_000_000L : rnd.nextInt(2_000_000) - 1_000_000;
+            long rate = rates[rnd.nextInt(rates.length)];
+            int scale = rnd.nextInt(Money.SCALE + 1);
+
+            BigDecimal expected = Money.toBigDecimal(units).multiply(Money.toBigDecimal(rate))
+                    .setScale(scale, RoundingMode.HALF_EVEN);
+
+            assertEquals(0, expected.compareTo(Money.toBigDecimal(Money.multiplyUnits(units, rate, scale))),
+                    () -> units + " * " + rate + " @" + scale);
+        }
+    }
+
+    @Test
+    void multiply_exactHalvesGoToEven() {
+        Money rate = Money.of("1.10");
+        // 0.05 * 1.10 = 0.055 -> 0.06, 0.15 * 1.10 = 0.165 -> 0.16, -0.15 * 1.10 -> -0.16
+        assertEquals(Money.of("0.06"), Money.of("0.05").multiply(rate, 2));
+        assertEquals(Money.of("0.16"), Money.of("0.15").multiply(rate, 2));
+        assertEquals(Money.of("-0.16"), Money.of("-0.15").multiply(rate, 2));
+    }
+
+    @Test
+    void arithmetic_overflowIsReported() {
+        Money max = Money.ofUnits(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofUnits(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofUnits(Long.MIN_VALUE).minus(Money.ofUnits(1)));
+        assertThrows(ArithmeticException.class, () -> max.multiply(Money.of("1.10"), 2));
+    }
+
+    @Test
+    void multiply_largeBalanceDoesNotOverflowIntermediate() {
+        // units * rate не помещается в long, а результат помещается
+        Money big = Money.of("500000000000.00");
+
+        assertEquals(Money.of("550000000000.00"), big.multiply(Money.of("1.10"), 2));
+    }
+
+    @Test
+    void of_rejectsExtraDecimalsAndOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of("0.00001"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of("1000000000000000"));
+        assertEquals(Money.of("10"), Money.of("10.0000"));
+    }
+
+    @Test
+    void converter_roundTrip() {
+        MoneyConverter converter = new MoneyConverter();
+
+        assertEquals(0, new BigDecimal("123.4567").compareTo(
+                converter.convertToDatabaseColumn(converter.convertToEntityAttribute(new BigDecimal("123.4567")))));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
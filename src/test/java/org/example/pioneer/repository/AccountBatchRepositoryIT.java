@@ -0,0 +1,145 @@
+package org.example.pioneer.repository;
+
+import org.example.pioneer.model.Money;
+import org.example.pioneer.service.InterestCalculator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.example.pioneer.service.InterestCalculator.INTEREST_RATE;
+import static org.example.pioneer.service.InterestCalculator.MAX_MULTIPLIER;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL-начисление процентов на PostgreSQL против {@link InterestCalculator}:
+ * округление HALF_EVEN, потолок и возвращаемые приросты. Нужен Docker.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountBatchRepositoryIT {
+
+    private static final PostgreSQLContainer<?> PG = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    static {
+        PG.start();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", PG::getJdbcUrl);
+        registry.add("spring.datasource.username", PG::getUsername);
+        registry.add("spring.datasource.password", PG::getPassword);
+    }
+
+    // id -> {balance, initial_balance}; половина копейки после умножения на 1.10 —
+    // там, где ROUND в Postgres (от нуля) и HALF_EVEN расходятся
+    private static final Map<Long, String[]> ACCOUNTS = new LinkedHashMap<>();
+
+    static {
+        ACCOUNTS.put(1L, new String[]{"0.05", "0.05"});        // 0.055  -> 0.06
+        ACCOUNTS.put(2L, new String[]{"0.15", "0.15"});        // 0.165  -> 0.16
+        ACCOUNTS.put(3L, new String[]{"0.35", "0.35"});        // 0.385  -> 0.38
+        ACCOUNTS.put(4L, new String[]{"1.0150", "1.0150"});    // 1.1165 -> 1.12
+        ACCOUNTS.put(5L, new String[]{"0.0150", "0.0150"});    // 0.0165 -> 0.02
+        ACCOUNTS.put(6L, new String[]{"0.01", "0.01"});        // 0.011  -> 0.01, не растёт
+        ACCOUNTS.put(7L, new String[]{"206.00", "100.00"});    // упирается в 207.00
+        ACCOUNTS.put(8L, new String[]{"207.00", "100.00"});    // уже на потолке
+        ACCOUNTS.put(9L, new String[]{"12.3456", "10.0050"});  // потолок 20.71035 -> 20.71
+        ACCOUNTS.put(10L, new String[]{"100.00", "100.00"});
+    }
+
+    private final InterestCalculator calculator = new InterestCalculator();
+
+    @Autowired
+    private AccountRepository accountRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        jdbc.execute("TRUNCATE users CASCADE");
+        ACCOUNTS.forEach((id, b) -> {
+            jdbc.update("INSERT INTO users(id, login, password_hash, name) VALUES (?, ?, 'x', ?)",
+                    id, "u" + id, "User" + id);
+            jdbc.update("INSERT INTO accounts(id, user_id, balance, initial_balance, version) VALUES (?, ?, ?, ?, 0)",
+                    id, id, new BigDecimal(b[0]), new BigDecimal(b[1]));
+        });
+    }
+
+    @Test
+    void accrueInterest_matchesCalculator() {
+        for (long periods : new long[]{1, 3, 1_000}) {
+            Map<Long, BigDecimal> before = balances();
+
+            Map<Long, BigDecimal> accrued = accountRepo.accrueInterest(INTEREST_RATE, MAX_MULTIPLIER, periods);
+
+            assertMatchesCalculator(before, periods, accrued);
+        }
+    }
+
+    @Test
+    void accrueInterestRange_touchesOnlyRangeAndOncePerRun() {
+        Map<Long, BigDecimal> before = balances();
+
+        Map<Long, BigDecimal> accrued = accountRepo.accrueInterest(INTEREST_RATE, MAX_MULTIPLIER, 2, 7, 2, 9);
+
+        Map<Long, BigDecimal> expected = new LinkedHashMap<>();
+        for (long id = 3; id <= 9; id++) {
+            BigDecimal delta = expectedDelta(id, before.get(id), 2);
+            if (delta.signum() > 0) {
+                expected.put(id, delta);
+            }
+        }
+        assertEquals(expected, accrued);
+        assertEquals(before.get(1L), balances().get(1L));
+        assertEquals(before.get(10L), balances().get(10L));
+        assertEquals(expected.size(), jdbc.queryForObject(
+                "SELECT COUNT(*) FROM accounts WHERE accrual_run = 7", Integer.class));
+
+        // продолженный прогон 7 по тому же диапазону ничего не начисляет второй раз
+        Map<Long, BigDecimal> after = balances();
+        assertTrue(accountRepo.accrueInterest(INTEREST_RATE, MAX_MULTIPLIER, 2, 7, 2, 9).isEmpty());
+        assertEquals(after, balances());
+    }
+
+    private void assertMatchesCalculator(Map<Long, BigDecimal> before, long periods, Map<Long, BigDecimal> accrued) {
+        Map<Long, BigDecimal> after = balances();
+        Map<Long, BigDecimal> expected = new LinkedHashMap<>();
+        before.forEach((id, balance) -> {
+            BigDecimal delta = expectedDelta(id, balance, periods);
+            assertEquals(balance.add(delta), after.get(id), "счёт " + id + ", периодов " + periods);
+            if (delta.signum() > 0) {
+                expected.put(id, delta);
+            }
+        });
+        assertEquals(expected, accrued, "периодов " + periods);
+    }
+
+    private BigDecimal expectedDelta(long id, BigDecimal balance, long periods) {
+        long base = Money.unitsOf(balance);
+        long next = calculator.accrue(base, Money.unitsOf(new BigDecimal(ACCOUNTS.get(id)[1])), periods);
+        return Money.toBigDecimal(next - base);
+    }
+
+    private Map<Long, BigDecimal> balances() {
+        Map<Long, BigDecimal> out = new LinkedHashMap<>();
+        jdbc.query("SELECT id, balance FROM accounts ORDER BY id",
+                (RowCallbackHandler) rs -> out.put(rs.getLong(1), rs.getBigDecimal(2)));
+        return out;
+    }
+}
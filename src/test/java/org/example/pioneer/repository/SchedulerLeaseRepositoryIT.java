@@ -0,0 +1,94 @@
+package org.example.pioneer.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Upsert аренды и фиксация периода на PostgreSQL. Нужен Docker.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SchedulerLeaseRepositoryIT {
+
+    private static final PostgreSQLContainer<?> PG = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    static {
+        PG.start();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", PG::getJdbcUrl);
+        registry.add("spring.datasource.username", PG::getUsername);
+        registry.add("spring.datasource.password", PG::getPassword);
+    }
+
+    private static final String TASK = "interest";
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void clean() {
+        jdbc.execute("TRUNCATE scheduler_leases");
+    }
+
+    @Test
+    void tryAcquire_grantsFreeLeaseAndRenewsOnlyForOwner() {
+        assertEquals(Optional.of(-1L), leaseRepo.tryAcquire(TASK, "a", 60));
+        assertEquals(Optional.empty(), leaseRepo.tryAcquire(TASK, "b", 60));
+        assertEquals(Optional.of(-1L), leaseRepo.tryAcquire(TASK, "a", 60));
+        assertEquals("a", owner());
+    }
+
+    @Test
+    void tryAcquire_takesOverExpiredLeaseKeepingLastPeriod() {
+        leaseRepo.tryAcquire(TASK, "a", 60);
+        assertEquals(1, leaseRepo.completePeriod(TASK, "a", 5, 60));
+        expire();
+
+        assertEquals(Optional.of(5L), leaseRepo.tryAcquire(TASK, "b", 60));
+        assertEquals("b", owner());
+    }
+
+    @Test
+    void completePeriod_onlyForLiveOwnLeaseAndMovingForward() {
+        leaseRepo.tryAcquire(TASK, "a", 60);
+
+        assertEquals(1, leaseRepo.completePeriod(TASK, "a", 5, 60));
+        assertEquals(0, leaseRepo.completePeriod(TASK, "a", 5, 60));
+        assertEquals(0, leaseRepo.completePeriod(TASK, "a", 4, 60));
+        assertEquals(0, leaseRepo.completePeriod(TASK, "b", 6, 60));
+        assertEquals(0, leaseRepo.completePeriod("other", "a", 6, 60));
+        expire();
+        assertEquals(0, leaseRepo.completePeriod(TASK, "a", 6, 60));
+
+        assertEquals(5L, jdbc.queryForObject(
+                "SELECT last_period FROM scheduler_leases WHERE name = ?", Long.class, TASK));
+    }
+
+    private void expire() {
+        jdbc.update("UPDATE scheduler_leases SET expires_at = NOW() - interval '1 second' WHERE name = ?", TASK);
+    }
+
+    private String owner() {
+        return jdbc.queryForObject("SELECT owner FROM scheduler_leases WHERE name = ?", String.class, TASK);
+    }
+}
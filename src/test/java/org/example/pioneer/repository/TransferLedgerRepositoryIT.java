@@ -0,0 +1,119 @@
+package org.example.pioneer.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SQL журнала переводов (transfer.mode=LEDGER) на PostgreSQL. Нужен Docker.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferLedgerRepositoryIT {
+
+    private static final PostgreSQLContainer<?> PG = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    static {
+        PG.start();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", PG::getJdbcUrl);
+        registry.add("spring.datasource.username", PG::getUsername);
+        registry.add("spring.datasource.password", PG::getPassword);
+    }
+
+    @Autowired
+    private TransferEntryRepository ledgerRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    @BeforeEach
+    void seed() {
+        jdbc.execute("TRUNCATE users CASCADE");
+        account(1L, "100.00");
+        account(2L, "0.00");
+        account(3L, "0.00");
+    }
+
+    @Test
+    void append_checksRecipientAndAvailableBalance() {
+        assertTrue(appendLocked(1L, 2L, "60.00", "k1"));
+        // доступно 100 - 60
+        assertFalse(appendLocked(1L, 3L, "50.00", null));
+        assertTrue(appendLocked(1L, 3L, "40.00", null));
+        assertFalse(appendLocked(1L, 99L, "0.01", null));
+        // непримененное входящее тоже доступно
+        assertTrue(appendLocked(2L, 3L, "60.00", null));
+        assertFalse(appendLocked(2L, 3L, "0.01", null));
+
+        assertEquals(new BigDecimal("-100.0000"), ledgerRepo.pendingDelta(1L));
+        assertEquals(new BigDecimal("0.0000"), ledgerRepo.pendingDelta(2L));
+        assertEquals(Map.of(1L, new BigDecimal("-100.0000"), 2L, new BigDecimal("0.0000"),
+                3L, new BigDecimal("100.0000")), ledgerRepo.pendingDeltas());
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM transfers WHERE idem_key = 'k1' AND amount = 60", Integer.class));
+    }
+
+    @Test
+    void applyPending_movesOldestEntriesAndNetsCounterTransfers() {
+        ledgerRepo.appendAll(List.of(
+                new TransferLedgerRepository.Entry(1L, 2L, new BigDecimal("10.00"), null),
+                new TransferLedgerRepository.Entry(2L, 1L, new BigDecimal("4.00"), "k2"),
+                new TransferLedgerRepository.Entry(1L, 3L, new BigDecimal("5.00"), null)));
+
+        assertEquals(Set.of(1L, 2L), Set.copyOf(ledgerRepo.applyPending(2)));
+        assertEquals(new BigDecimal("94.0000"), balance(1L));
+        assertEquals(new BigDecimal("6.0000"), balance(2L));
+        assertEquals(Map.of(1L, new BigDecimal("-5.0000"), 3L, new BigDecimal("5.0000")),
+                ledgerRepo.pendingDeltas());
+
+        assertEquals(Set.of(1L, 3L), Set.copyOf(ledgerRepo.applyPending(10)));
+        assertEquals(new BigDecimal("89.0000"), balance(1L));
+        assertEquals(new BigDecimal("5.0000"), balance(3L));
+        assertTrue(ledgerRepo.applyPending(10).isEmpty());
+        assertTrue(ledgerRepo.pendingDeltas().isEmpty());
+        assertEquals(new BigDecimal("0"), ledgerRepo.pendingDelta(1L).stripTrailingZeros());
+    }
+
+    private boolean appendLocked(Long fromId, Long toId, String amount, String idemKey) {
+        return Boolean.TRUE.equals(new TransactionTemplate(txManager).execute(status -> {
+            ledgerRepo.lockSender(fromId);
+            return ledgerRepo.append(fromId, toId, new BigDecimal(amount), idemKey);
+        }));
+    }
+
+    private void account(Long id, String balance) {
+        jdbc.update("INSERT INTO users(id, login, password_hash, name) VALUES (?, ?, 'x', ?)",
+                id, "u" + id, "User" + id);
+        jdbc.update("INSERT INTO accounts(id, user_id, balance, initial_balance, version) VALUES (?, ?, ?, ?, 0)",
+                id, id, new BigDecimal(balance), new BigDecimal(balance));
+    }
+
+    private BigDecimal balance(Long id) {
+        return jdbc.queryForObject("SELECT balance FROM accounts WHERE id = ?", BigDecimal.class, id);
+    }
+}
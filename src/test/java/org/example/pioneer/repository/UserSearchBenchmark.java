@@ -0,0 +1,152 @@
+package org.example.pioneer.repository;
+
+import jakarta.persistence.EntityManager;
+import org.example.pioneer.dto.dto.UserDto;
+import org.example.pioneer.model.Account;
+import org.example.pioneer.model.EmailData;
+import org.example.pioneer.model.PhoneData;
+import org.example.pioneer.model.User;
+import org.example.pioneer.repository.spec.UserSpecifications;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Страница поиска пользователей: сущности User (как было в UserService.search) против
+ * снимков UserSnapshot через {@link UserSearchRepositoryImpl}; обе ветви отдают List&lt;UserDto&gt;.
+ * Сессия — как в readOnly-транзакции Spring: read-only, без сброса.
+ * <p>
+ * Нужен PostgreSQL: по умолчанию Testcontainers (Docker), либо -Dbench.jdbc.url, -Dbench.jdbc.user,
+ * -Dbench.jdbc.password. Запуск — см. раздел «Бенчмарки» в README; аллокации — с -prof gc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserSearchBenchmark {
+
+    private static final int USERS = 10_000;
+
+    /** "name1": 1, 10–19, 100–199, 1000–1999, 10000 — 1111 совпадений, хватает на любую страницу. */
+    private static final Specification<User> BY_NAME = UserSpecifications.nameStartsWith("name1");
+
+    @Param({"10", "50", "200"})
+    private int pageSize;
+
+    private PostgreSQLContainer<?> container;
+    private SessionFactory sessionFactory;
+    private Pageable page;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = System.getProperty("bench.jdbc.url");
+        String user = System.getProperty("bench.jdbc.user", "postgres");
+        String password = System.getProperty("bench.jdbc.password", "");
+        if (url == null) {
+            container = new PostgreSQLContainer<>("postgres:15-alpine");
+            container.start();
+            url = container.getJdbcUrl();
+            user = container.getUsername();
+            password = container.getPassword();
+        }
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(EmailData.class)
+                .addAnnotatedClass(PhoneData.class)
+                .addAnnotatedClass(Account.class)
+                .setProperty(AvailableSettings.URL, url)
+                .setProperty(AvailableSettings.USER, user)
+                .setProperty(AvailableSettings.PASS, password)
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "update")
+                .setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false")
+                .buildSessionFactory();
+        try (Connection con = DriverManager.getConnection(url, user, password);
+             Statement st = con.createStatement()) {
+            st.execute("TRUNCATE users CASCADE");
+            st.execute("INSERT INTO users(id, login, password_hash, name, date_of_birth) "
+                    + "SELECT g, 'u' || g, 'x', 'Name' || g, date '1950-01-01' + g % 20000 "
+                    + "FROM generate_series(1, " + USERS + ") g");
+            st.execute("INSERT INTO accounts(id, user_id, balance, initial_balance, version) "
+                    + "SELECT g, g, 100, 100, 0 FROM generate_series(1, " + USERS + ") g");
+            st.execute("ANALYZE");
+        }
+        page = PageRequest.of(0, pageSize, Sort.by("id").ascending());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    @Benchmark
+    public List<UserDto> entities() {
+        return inReadOnlySession(em -> new SimpleJpaRepository<User, Long>(User.class, em)
+                .findAll(BY_NAME, page)
+                .map(u -> UserDto.builder()
+                        .id(u.getId())
+                        .name(u.getName())
+                        .dateOfBirth(u.getDateOfBirth())
+                        .build())
+                .getContent());
+    }
+
+    @Benchmark
+    public List<UserDto> snapshots() {
+        return inReadOnlySession(em -> {
+            UserSearchRepositoryImpl repo = new UserSearchRepositoryImpl(null);
+            ReflectionTestUtils.setField(repo, "em", em);
+            return repo.findSnapshots(BY_NAME, page)
+                    .map(u -> UserDto.builder()
+                            .id(u.id())
+                            .name(u.name())
+                            .dateOfBirth(u.dateOfBirth())
+                            .build())
+                    .getContent();
+        });
+    }
+
+    private <T> T inReadOnlySession(Function<EntityManager, T> work) {
+        try (Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            session.beginTransaction();
+            try {
+                return work.apply(session);
+            } finally {
+                session.getTransaction().rollback();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
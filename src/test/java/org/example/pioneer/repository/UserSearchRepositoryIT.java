@@ -0,0 +1,90 @@
+package org.example.pioneer.repository;
+
+import org.example.pioneer.model.User;
+import org.example.pioneer.repository.spec.UserSpecifications;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Подсчёт для count=capped и count=estimated на PostgreSQL. Нужен Docker.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserSearchRepositoryIT {
+
+    private static final int USERS = 20_000;
+
+    private static final PostgreSQLContainer<?> PG = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    static {
+        PG.start();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", PG::getJdbcUrl);
+        registry.add("spring.datasource.username", PG::getUsername);
+        registry.add("spring.datasource.password", PG::getPassword);
+    }
+
+    private static boolean seeded;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        if (seeded) {
+            return;
+        }
+        jdbc.execute("TRUNCATE users CASCADE");
+        jdbc.update("INSERT INTO users(id, login, password_hash, name, date_of_birth) "
+                + "SELECT g, 'u' || g, 'x', 'Name' || g, date '1950-01-01' + (g % 20000) "
+                + "FROM generate_series(1, ?) g", USERS);
+        jdbc.update("INSERT INTO email_data(email, primary_flag, created_at, user_id) "
+                + "SELECT 'User' || g || '@x.com', true, now(), g FROM generate_series(1, ?) g", USERS);
+        jdbc.execute("ANALYZE");
+        seeded = true;
+    }
+
+    @Test
+    void countCapped_stopsAtCap_andIsExactBelowIt() {
+        Specification<User> name1 = UserSpecifications.nameStartsWith("name1");
+
+        assertEquals(500, userRepo.countCapped(name1, 500));
+        // "name1": 1, 10–19, 100–199, 1000–1999, 10000–19999
+        assertEquals(11_111, userRepo.countCapped(name1, 100_000));
+        assertEquals(1, userRepo.countCapped(UserSpecifications.hasEmail("USER7@x.com"), 500));
+        assertEquals(USERS, userRepo.countCapped(Specification.where(null), 100_000));
+    }
+
+    @Test
+    void estimateCount_isCloseToExact() {
+        assertEquals(USERS, userRepo.estimateCount(null, null, null, null));
+
+        LocalDate date = LocalDate.of(1990, 1, 1);
+        long exact = userRepo.count(UserSpecifications.dateOfBirthAfter(date));
+        long estimate = userRepo.estimateCount(date, null, null, null);
+        assertTrue(Math.abs(estimate - exact) < exact / 10, estimate + " против " + exact);
+
+        assertTrue(userRepo.estimateCount(null, null, "user7@x.com", null) <= 10);
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.pioneer.repository.spec;
+
+import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
+import org.example.pioneer.repository.UserRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Планы запросов поиска пользователей на PostgreSQL: каждый фильтр UserSpecifications
+ * должен идти по индексу из V008__user_search_indexes.sql или V010, а фильтр по контактам —
+ * не размножать пользователей. EXPLAIN выполняется для того SQL, который сгенерировал
+ * Hibernate, с теми же параметрами. Нужен Docker.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "org.example.pioneer.repository.spec.UserSpecificationsIT$Captured")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserSpecificationsIT {
+
+    private static final int USERS = 50_000;
+
+    private static final PostgreSQLContainer<?> PG = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    static {
+        PG.start();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", PG::getJdbcUrl);
+        registry.add("spring.datasource.username", PG::getUsername);
+        registry.add("spring.datasource.password", PG::getPassword);
+    }
+
+    private static boolean seeded;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        if (seeded) {
+            return;
+        }
+        jdbc.execute("TRUNCATE users CASCADE");
+        jdbc.update("INSERT INTO users(id, login, password_hash, name, date_of_birth) "
+                + "SELECT g, 'u' || g, 'x', 'Name' || g, date '1950-01-01' + (g % 20000) "
+                + "FROM generate_series(1, ?) g", USERS);
+        jdbc.update("INSERT INTO email_data(email, primary_flag, created_at, user_id) "
+                + "SELECT 'User' || g || '@x.com', true, now(), g FROM generate_series(1, ?) g", USERS);
+        jdbc.update("INSERT INTO phone_data(phone, primary_flag, created_at, user_id) "
+                + "SELECT '79' || lpad(g::text, 9, '0'), true, now(), g FROM generate_series(1, ?) g", USERS);
+        // второй адрес, отличающийся только регистром: с JOIN пользователь 1 попал бы в выдачу дважды
+        jdbc.update("INSERT INTO email_data(email, primary_flag, created_at, user_id) VALUES ('user1@X.COM', false, now(), 1)");
+        jdbc.execute("ANALYZE");
+        seeded = true;
+    }
+
+    @Test
+    void hasEmail_usesLowerEmailIndex_andDoesNotDuplicateUsers() {
+        Specification<User> spec = UserSpecifications.hasEmail("USER1@x.com");
+
+        assertEquals(List.of(1L), ids(spec));
+        assertPlanUses(firstSelect(), "idx_email_data_lower_email", "user1@x.com");
+
+        Captured.STATEMENTS.clear();
+        assertEquals(1, userRepo.count(spec));
+        String count = firstSelect();
+        assertFalse(count.toLowerCase().contains(" join "), count);
+        assertPlanUses(count, "idx_email_data_lower_email", "user1@x.com");
+    }
+
+    @Test
+    void hasPhone_usesPhoneIndex() {
+        Specification<User> spec = UserSpecifications.hasPhone("79000000077");
+
+        assertEquals(List.of(77L), ids(spec));
+        assertPlanUses(firstSelect(), "idx_phone_data_phone", "79000000077");
+    }
+
+    @Test
+    void nameStartsWith_usesPrefixIndex() {
+        Specification<User> spec = UserSpecifications.nameStartsWith("name4999");
+
+        assertEquals(11, ids(spec).size());
+        assertPlanUses(firstSelect(), "idx_users_name_key", "NAME4999%");
+    }
+
+    @Test
+    void afterName_continuesInNameKeyOrder() {
+        Sort byName = Sort.by(Sort.Order.asc("name").ignoreCase(), Sort.Order.asc("id"));
+        Specification<User> name = UserSpecifications.nameStartsWith("name4999");
+
+        // побайтово NAME4999 < NAME49990 < … < NAME49999, как в индексе имён
+        List<Long> all = userRepo.findSnapshots(name, byName, 100).stream().map(UserSnapshot::id).toList();
+        assertEquals(List.of(4999L, 49990L, 49991L, 49992L, 49993L, 49994L, 49995L, 49996L, 49997L, 49998L, 49999L),
+                all);
+        List<Long> after = userRepo.findSnapshots(name.and(UserSpecifications.afterName("name49993", 49993L)),
+                byName, 100).stream().map(UserSnapshot::id).toList();
+        assertEquals(all.subList(5, all.size()), after);
+    }
+
+    @Test
+    void dateOfBirthAfter_usesDateIndex() {
+        LocalDate date = LocalDate.of(2004, 10, 1);
+
+        assertFalse(ids(UserSpecifications.dateOfBirthAfter(date)).isEmpty());
+        assertPlanUses(firstSelect(), "idx_users_date_of_birth", date);
+    }
+
+    private void assertPlanUses(String sql, String index, Object param) {
+        String plan = String.join("\n", jdbc.queryForList("EXPLAIN " + sql, String.class, param));
+        assertTrue(plan.contains(index), "план без " + index + ":\n" + plan);
+        assertFalse(plan.contains("Seq Scan"), "полный просмотр таблицы:\n" + plan);
+    }
+
+    private List<Long> ids(Specification<User> spec) {
+        Captured.STATEMENTS.clear();
+        return userRepo.findAll(spec).stream().map(User::getId).toList();
+    }
+
+    /** Запрос самого поиска; следующие за ним — дозагрузка связей. */
+    private static String firstSelect() {
+        assertFalse(Captured.STATEMENTS.isEmpty(), "SQL не перехвачен");
+        return Captured.STATEMENTS.get(0);
+    }
+
+    /** Запоминает SQL, который Hibernate отправляет в базу. */
+    public static class Captured implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.trim().toLowerCase().startsWith("select")) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.example.pioneer.service;
+
+import org.example.pioneer.model.Account;
+import org.example.pioneer.model.Money;
+import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.TransferEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.*;
+
+class BalanceSchedulerServiceTest {
+
+    private AccountRepository accountRepo;
+    private AccountService accountService;
+    private ChunkedInterestAccrual chunkedAccrual;
+    private SchedulerLeaseService leases;
+    private ApplicationEventPublisher eventPublisher;
+    private TransferEntryRepository ledgerRepo;
+    private BalanceSchedulerService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        accountRepo = mock(AccountRepository.class);
+        accountService = mock(AccountService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        chunkedAccrual = mock(ChunkedInterestAccrual.class);
+        leases = mock(SchedulerLeaseService.class);
+        ledgerRepo = mock(TransferEntryRepository.class);
+        when(ledgerRepo.applyPending(anyInt())).thenReturn(List.of());
+        when(leases.acquire(BalanceSchedulerService.LEASE_TASK)).thenReturn(Optional.of(-1L));
+        when(leases.completeWith(anyString(), anyLong(), any()))
+                .thenAnswer(inv -> Optional.ofNullable(inv.<Supplier<?>>getArgument(2).get()));
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        scheduler = new BalanceSchedulerService(accountRepo, accountService, chunkedAccrual,
+                new TransactionTemplate(txManager), eventPublisher, new InterestCalculator(), leases, ledgerRepo);
+    }
+
+    @Test
+    void entity_accruesUpToCapAndEvictsChangedOnly() {
+        Account grows = account(1L, "100.00", "100.00");
+        Account capped = account(2L, "200.00", "100.00");
+        Account atCap = account(3L, "207.00", "100.00");
+        when(accountRepo.findAll()).thenReturn(List.of(grows, capped, atCap));
+
+        scheduler.accrueInterest();
+
+        assertEquals(Money.of("110.00"), grows.getBalance());
+        assertEquals(Money.of("207.00"), capped.getBalance());
+        verify(accountRepo).save(grows);
+        verify(accountRepo).save(capped);
+        verify(accountRepo, never()).save(atCap);
+        verify(accountService).evict(1L);
+        verify(accountService).evict(2L);
+        verify(accountService, never()).evict(3L);
+        InOrder events = inOrder(eventPublisher);
+        events.verify(eventPublisher).publishEvent(any(InterestAccrualStartedEvent.class));
+        events.verify(eventPublisher).publishEvent(new InterestAccruedEvent(
+                Map.of(1L, new BigDecimal("10.0000"), 2L, new BigDecimal("7.0000")), true));
+    }
+
+    @Test
+    void setBased_singleUpdateAndTargetedEviction() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.SET_BASED);
+        when(accountRepo.accrueInterest(new BigDecimal("1.10"), new BigDecimal("2.07"), 1L))
+                .thenReturn(Map.of(5L, new BigDecimal("1.00"), 7L, new BigDecimal("2.00")));
+
+        scheduler.accrueInterest();
+
+        verify(accountRepo, never()).findAll();
+        verify(accountService).evict(5L);
+        verify(accountService).evict(7L);
+        verifyNoMoreInteractions(accountService);
+        verify(eventPublisher).publishEvent(new InterestAccruedEvent(
+                Map.of(5L, new BigDecimal("1.00"), 7L, new BigDecimal("2.00")), true));
+    }
+
+    @Test
+    void chunked_delegatesToWorkerPool() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.CHUNKED);
+        when(chunkedAccrual.run(any(), any(), anyLong(), anyLong())).thenReturn(OptionalLong.empty());
+
+        scheduler.accrueInterest();
+
+        verify(chunkedAccrual).run(eq(new BigDecimal("1.10")), eq(new BigDecimal("2.07")), eq(1L), anyLong());
+        verifyNoInteractions(accountRepo);
+        // суммы по диапазонам публикует ChunkedInterestAccrual, здесь — только завершение
+        verify(eventPublisher).publishEvent(new InterestAccruedEvent(Map.of(), true));
+    }
+
+    @Test
+    void pendingLedger_isFoldedBeforeAccrual() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.SET_BASED);
+        when(ledgerRepo.applyPending(anyInt())).thenReturn(List.of(1L, 2L), List.of(3L), List.of());
+        when(accountRepo.accrueInterest(any(), any(), anyLong())).thenReturn(Map.of());
+
+        scheduler.accrueInterest();
+
+        var order = inOrder(ledgerRepo, accountRepo);
+        order.verify(ledgerRepo, times(3)).applyPending(1000);
+        order.verify(accountRepo).accrueInterest(any(), any(), anyLong());
+        verify(accountService).evict(1L);
+        verify(accountService).evict(3L);
+    }
+
+    @Test
+    void notLeaseOwner_skipsTick() {
+        when(leases.acquire(BalanceSchedulerService.LEASE_TASK)).thenReturn(Optional.empty());
+
+        scheduler.accrueInterest();
+
+        verifyNoInteractions(accountRepo, ledgerRepo, eventPublisher);
+        verify(leases, never()).completeWith(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void periodAlreadyDone_skipsTick() {
+        when(leases.acquire(BalanceSchedulerService.LEASE_TASK)).thenReturn(Optional.of(Long.MAX_VALUE));
+
+        scheduler.accrueInterest();
+
+        verifyNoInteractions(accountRepo);
+    }
+
+    @Test
+    void completedRun_recordsPeriodInAccrualTransaction() {
+        when(accountRepo.findAll()).thenReturn(List.of());
+
+        scheduler.accrueInterest();
+
+        verify(leases).completeWith(eq(BalanceSchedulerService.LEASE_TASK), anyLong(), any());
+    }
+
+    @Test
+    void leaseLostDuringRun_accrualRolledBackAndNothingPublished() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.SET_BASED);
+        doAnswer(inv -> {
+            inv.<Supplier<?>>getArgument(2).get();
+            return Optional.empty();
+        }).when(leases).completeWith(anyString(), anyLong(), any());
+        when(accountRepo.accrueInterest(any(), any(), anyLong()))
+                .thenReturn(Map.of(5L, new BigDecimal("1.00")));
+
+        scheduler.accrueInterest();
+
+        verifyNoInteractions(accountService);
+        verify(eventPublisher).publishEvent(new InterestAccruedEvent(Map.of(), true));
+    }
+
+    @Test
+    void missedPeriods_entityCatchesUpInOnePass() {
+        long period = new InterestCalculator().currentPeriod();
+        when(leases.acquire(BalanceSchedulerService.LEASE_TASK)).thenReturn(Optional.of(period - 3));
+        Account grows = account(1L, "100.00", "100.00");
+        Account nearCap = account(2L, "190.00", "100.00");
+        when(accountRepo.findAll()).thenReturn(List.of(grows, nearCap));
+
+        scheduler.accrueInterest();
+
+        // 100 → 110 → 121 → 133.10; 190 → 207 (cap) за первый же шаг
+        assertEquals(Money.of("133.10"), grows.getBalance());
+        assertEquals(Money.of("207.00"), nearCap.getBalance());
+        verify(accountRepo, times(1)).findAll();
+        verify(leases).completeWith(eq(BalanceSchedulerService.LEASE_TASK), longThat(p -> p >= period), any());
+    }
+
+    @Test
+    void missedPeriods_setBasedPassesPeriodCount() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.SET_BASED);
+        long period = new InterestCalculator().currentPeriod();
+        when(leases.acquire(BalanceSchedulerService.LEASE_TASK)).thenReturn(Optional.of(period - 5));
+        when(accountRepo.accrueInterest(any(), any(), anyLong())).thenReturn(Map.of());
+
+        scheduler.accrueInterest();
+
+        verify(accountRepo).accrueInterest(eq(new BigDecimal("1.10")), eq(new BigDecimal("2.07")),
+                longThat(k -> k >= 5));
+    }
+
+    @Test
+    void chunkedRun_recordsPeriodItself() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.CHUNKED);
+        when(chunkedAccrual.run(any(), any(), anyLong(), anyLong())).thenReturn(OptionalLong.of(42L));
+
+        scheduler.accrueInterest();
+
+        // finished_at прогона и период пишет ChunkedInterestAccrual одной транзакцией
+        verify(leases, never()).completeWith(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void lazy_noBackgroundWork() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.LAZY);
+
+        scheduler.accrueInterest();
+
+        verifyNoInteractions(accountRepo, ledgerRepo, chunkedAccrual, eventPublisher, leases);
+    }
+
+    @Test
+    void lazy_rejectsSqlTransferModes() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.LAZY);
+        ReflectionTestUtils.setField(scheduler, "transferMode", TransferMode.ATOMIC);
+
+        assertThrows(IllegalStateException.class, () -> scheduler.initLazyModel());
+    }
+
+    @Test
+    void lazy_stampsAccountsWithoutEpoch() {
+        ReflectionTestUtils.setField(scheduler, "mode", InterestAccrualMode.LAZY);
+
+        scheduler.initLazyModel();
+
+        verify(accountRepo).stampAccrualEpoch(anyLong());
+    }
+
+    private static Account account(Long id, String balance, String initial) {
+        return Account.builder()
+                .id(id)
+                .balance(Money.of(balance))
+                .initialBalance(Money.of(initial))
+                .version(0L)
+                .build();
+    }
+}
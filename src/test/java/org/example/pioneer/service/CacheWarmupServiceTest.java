@@ -0,0 +1,123 @@
+package org.example.pioneer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.pioneer.cache.CacheInvalidationBus;
+import org.example.pioneer.cache.SnapshotCodec;
+import org.example.pioneer.cache.TwoLevelCache;
+import org.example.pioneer.cache.TwoLevelCacheManager;
+import org.example.pioneer.cache.TwoLevelCacheManager.CacheSpec;
+import org.example.pioneer.model.AccountSnapshot;
+import org.example.pioneer.model.Money;
+import org.example.pioneer.model.UserSnapshot;
+import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheWarmupServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private UserRepository userRepo;
+    private AccountRepository accountRepo;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("hot-keys.txt");
+        userRepo = mock(UserRepository.class);
+        accountRepo = mock(AccountRepository.class);
+        when(userRepo.findSnapshotsByIdIn(anyCollection())).thenAnswer(inv -> inv.<Collection<Long>>getArgument(0)
+                .stream().filter(id -> id < 100).map(id -> new UserSnapshot(id, "user" + id, null)).toList());
+        when(accountRepo.findSnapshotsByIdIn(anyCollection())).thenAnswer(inv -> inv.<Collection<Long>>getArgument(0)
+                .stream().map(id -> new AccountSnapshot(id, Money.of("100"), Money.of("100"), null, 0L)).toList());
+    }
+
+    @Test
+    void hotKeysSavedAtShutdown_areLoadedAtNextStart() {
+        TwoLevelCacheManager before = manager();
+        for (long id = 1; id <= 3; id++) {
+            long key = id;
+            before.getTwoLevelCache("users").get(key, () -> new UserSnapshot(key, "user" + key, null));
+        }
+        before.getTwoLevelCache("accounts").get(1L, () -> new AccountSnapshot(1L, Money.of("5"), Money.of("5"), null, 0L));
+        service(before).saveHotKeys();
+
+        TwoLevelCacheManager after = manager();
+        int warmed = service(after).warmUp();
+
+        assertEquals(4, warmed);
+        TwoLevelCache users = after.getTwoLevelCache("users");
+        for (long id = 1; id <= 3; id++) {
+            assertEquals(new UserSnapshot(id, "user" + id, null), users.get(id, () -> fail("промах после прогрева")));
+        }
+        assertNotNull(after.getTwoLevelCache("accounts").get(1L, () -> fail("промах после прогрева")));
+    }
+
+    @Test
+    void keysAreLoadedInIdOrderedBatches() throws IOException {
+        Files.write(file, List.of("users 5", "users 1", "users 3", "users 1"));
+        CacheWarmupService service = service(manager());
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+
+        service.warmUp();
+
+        verify(userRepo).findSnapshotsByIdIn(List.of(1L, 3L));
+        verify(userRepo).findSnapshotsByIdIn(List.of(5L));
+        verifyNoInteractions(accountRepo);
+    }
+
+    @Test
+    void missingIds_andBadLines_areSkipped() throws IOException {
+        Files.write(file, List.of("users 1", "users 500", "users x", "emails 1", "", "accounts 2"));
+        TwoLevelCacheManager manager = manager();
+
+        assertEquals(2, service(manager).warmUp());
+        // удалённого пользователя в кэше нет — его загрузит обычный промах
+        assertEquals("loaded", manager.getTwoLevelCache("users").get(500L, () -> "loaded"));
+    }
+
+    @Test
+    void noFile_nothingToWarm() {
+        assertEquals(0, service(manager()).warmUp());
+        verifyNoInteractions(userRepo, accountRepo);
+    }
+
+    @Test
+    void alreadyCachedKeys_areNotReloaded() throws IOException {
+        Files.write(file, List.of("users 1", "users 2"));
+        TwoLevelCacheManager manager = manager();
+        manager.getTwoLevelCache("users").get(1L, () -> new UserSnapshot(1L, "user1", null));
+
+        assertEquals(1, service(manager).warmUp());
+        verify(userRepo).findSnapshotsByIdIn(List.of(2L));
+    }
+
+    private CacheWarmupService service(TwoLevelCacheManager manager) {
+        CacheWarmupService service = new CacheWarmupService(manager, userRepo, accountRepo);
+        ReflectionTestUtils.setField(service, "file", file.toString());
+        return service;
+    }
+
+    private static TwoLevelCacheManager manager() {
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(List.of("users", "accounts"),
+                name -> new CacheSpec(Duration.ofMinutes(10), Duration.ofMinutes(1), 100),
+                null, new SnapshotCodec(), new CacheInvalidationBus(null, "test"), new SimpleMeterRegistry());
+        manager.afterPropertiesSet();
+        return manager;
+    }
+}
@@ -0,0 +1,189 @@
+package org.example.pioneer.service;
+
+import org.example.pioneer.model.InterestAccrualRun;
+import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.InterestAccrualRunRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChunkedInterestAccrualTest {
+
+    private static final BigDecimal RATE = new BigDecimal("1.10");
+    private static final BigDecimal CAP = new BigDecimal("2.07");
+
+    private AccountRepository accountRepo;
+    private InterestAccrualRunRepository runRepo;
+    private AccountService accountService;
+    private ApplicationEventPublisher eventPublisher;
+    private SchedulerLeaseService leases;
+    private ChunkedInterestAccrual accrual;
+    private final List<Long> checkpoints = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        accountRepo = mock(AccountRepository.class);
+        runRepo = mock(InterestAccrualRunRepository.class);
+        accountService = mock(AccountService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        leases = mock(SchedulerLeaseService.class);
+        when(leases.completeWith(anyString(), anyLong(), any()))
+                .thenAnswer(inv -> Optional.ofNullable(inv.<Supplier<?>>getArgument(2).get()));
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        when(runRepo.save(any())).thenAnswer(inv -> {
+            InterestAccrualRun run = inv.getArgument(0);
+            if (run.getId() == null) {
+                run.setId(7L);
+            }
+            checkpoints.add(run.getLastId());
+            return run;
+        });
+        when(accountRepo.accrueInterest(any(), any(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenAnswer(inv -> Map.of((Long) inv.getArgument(5), BigDecimal.ONE));
+
+        accrual = new ChunkedInterestAccrual(accountRepo, runRepo, accountService, new TransactionTemplate(txManager),
+                eventPublisher, leases);
+        ReflectionTestUtils.setField(accrual, "chunkSize", 10);
+        ReflectionTestUtils.setField(accrual, "workers", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        accrual.shutdown();
+    }
+
+    @Test
+    void newRun_walksKeysetChunksAndFinishes() {
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.empty());
+        when(accountRepo.findChunkUpperBound(0L, 10)).thenReturn(10L);
+        when(accountRepo.findChunkUpperBound(10L, 10)).thenReturn(25L);
+        when(accountRepo.findChunkUpperBound(25L, 10)).thenReturn(31L);
+        when(accountRepo.findChunkUpperBound(31L, 10)).thenReturn(null);
+
+        assertEquals(OptionalLong.of(100L), accrual.run(RATE, CAP, 1L, 100L));
+
+        verify(accountRepo).accrueInterest(RATE, CAP, 1L, 7L, 0L, 10L);
+        verify(accountRepo).accrueInterest(RATE, CAP, 1L, 7L, 10L, 25L);
+        verify(accountRepo).accrueInterest(RATE, CAP, 1L, 7L, 25L, 31L);
+        verify(leases).completeWith(eq(BalanceSchedulerService.LEASE_TASK), eq(100L), any());
+        // контрольная точка сдвигается строго по порядку диапазонов
+        assertEquals(List.of(0L, 10L, 25L, 31L, 31L), checkpoints);
+        verify(accountService).evict(25L);
+        verify(eventPublisher).publishEvent(new InterestAccruedEvent(Map.of(25L, BigDecimal.ONE), false));
+    }
+
+    @Test
+    void unfinishedRun_resumesFromCheckpoint() {
+        InterestAccrualRun unfinished = InterestAccrualRun.builder()
+                .id(3L).startedAt(Instant.now()).lastId(25L).periods(4L).targetPeriod(97L).build();
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.of(unfinished));
+        when(accountRepo.findChunkUpperBound(25L, 10)).thenReturn(31L);
+        when(accountRepo.findChunkUpperBound(31L, 10)).thenReturn(null);
+
+        // продолженный прогон начисляет свои 4 периода и закрывает свой период, а не текущий
+        assertEquals(OptionalLong.of(97L), accrual.run(RATE, CAP, 1L, 100L));
+
+        verify(accountRepo).accrueInterest(RATE, CAP, 4L, 3L, 25L, 31L);
+        verify(accountRepo, times(1)).accrueInterest(any(), any(), anyLong(), anyLong(), anyLong(), anyLong());
+        assertNotNull(unfinished.getFinishedAt());
+    }
+
+    @Test
+    void leaseLostAtFinish_runStaysOpen() {
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.empty());
+        when(accountRepo.findChunkUpperBound(0L, 10)).thenReturn(null);
+        doReturn(Optional.empty()).when(leases).completeWith(anyString(), anyLong(), any());
+
+        assertTrue(accrual.run(RATE, CAP, 1L, 100L).isEmpty());
+
+        // сохранено только создание прогона: finished_at откатился вместе с периодом
+        assertEquals(List.of(0L), checkpoints);
+    }
+
+    @Test
+    void finishedRunOfPeriod_isRecordedNotRepeated() {
+        InterestAccrualRun finished = InterestAccrualRun.builder()
+                .id(5L).startedAt(Instant.now()).finishedAt(Instant.now())
+                .lastId(31L).periods(1L).targetPeriod(100L).build();
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.empty());
+        when(runRepo.findFirstByFinishedAtIsNotNullOrderByIdDesc()).thenReturn(Optional.of(finished));
+
+        // упали между finished_at и записью периода: период не начисляется второй раз
+        assertEquals(OptionalLong.of(100L), accrual.run(RATE, CAP, 1L, 100L));
+
+        verify(accountRepo, never()).findChunkUpperBound(anyLong(), anyInt());
+        verify(accountRepo, never()).accrueInterest(any(), any(), anyLong(), anyLong(), anyLong(), anyLong());
+        verify(leases).completeWith(eq(BalanceSchedulerService.LEASE_TASK), eq(100L), any());
+    }
+
+    @Test
+    void finishedRunOfEarlierPeriod_startsNewRun() {
+        InterestAccrualRun earlier = InterestAccrualRun.builder()
+                .id(5L).startedAt(Instant.now()).finishedAt(Instant.now())
+                .lastId(31L).periods(1L).targetPeriod(99L).build();
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.empty());
+        when(runRepo.findFirstByFinishedAtIsNotNullOrderByIdDesc()).thenReturn(Optional.of(earlier));
+        when(accountRepo.findChunkUpperBound(0L, 10)).thenReturn(10L);
+        when(accountRepo.findChunkUpperBound(10L, 10)).thenReturn(null);
+
+        assertEquals(OptionalLong.of(100L), accrual.run(RATE, CAP, 1L, 100L));
+
+        verify(accountRepo).accrueInterest(RATE, CAP, 1L, 7L, 0L, 10L);
+    }
+
+    @Test
+    void timeBudgetExhausted_leavesRunOpen() {
+        ReflectionTestUtils.setField(accrual, "maxRunMs", 0L);
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.empty());
+
+        assertTrue(accrual.run(RATE, CAP, 1L, 100L).isEmpty());
+
+        verify(accountRepo, never()).findChunkUpperBound(anyLong(), anyInt());
+        verify(runRepo, never()).save(argThat(r -> r.getFinishedAt() != null));
+    }
+
+    @Test
+    void newRun_storesMissedPeriods() {
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.empty());
+        when(accountRepo.findChunkUpperBound(0L, 10)).thenReturn(10L);
+        when(accountRepo.findChunkUpperBound(10L, 10)).thenReturn(null);
+
+        assertEquals(OptionalLong.of(100L), accrual.run(RATE, CAP, 3L, 100L));
+
+        verify(accountRepo).accrueInterest(RATE, CAP, 3L, 7L, 0L, 10L);
+        verify(runRepo, atLeastOnce()).save(argThat(r -> r.getPeriods() == 3L && r.getTargetPeriod() == 100L));
+    }
+
+    @Test
+    void failedChunk_stopsBeforeCheckpointAdvances() {
+        when(runRepo.findFirstByFinishedAtIsNullOrderByIdDesc()).thenReturn(Optional.empty());
+        when(accountRepo.findChunkUpperBound(0L, 10)).thenReturn(10L);
+        when(accountRepo.findChunkUpperBound(10L, 10)).thenReturn(20L);
+        when(accountRepo.accrueInterest(RATE, CAP, 1L, 7L, 0L, 10L))
+                .thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> accrual.run(RATE, CAP, 1L, 100L));
+
+        assertEquals(List.of(0L), checkpoints);
+    }
+}
@@ -4,6 +4,7 @@ import org.example.pioneer.exception.EmailAlreadyExistsException;
 import org.example.pioneer.exception.ResourceNotFoundException;
 import org.example.pioneer.model.EmailData;
 import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
 import org.example.pioneer.repository.EmailDataRepository;
 import org.example.pioneer.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -65,7 +66,7 @@ class EmailServiceTest {
 
     @Test
     void getAllForUser_happyPath() {
-        when(userRepo.existsById(userId)).thenReturn(true);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.of(new UserSnapshot(userId, "Alice", null)));
         when(emailRepo.findAllByUserId(userId)).thenReturn(of(e1, e2));
 
         List<EmailData> list = service.getAllForUser(userId);
@@ -78,7 +79,7 @@ class EmailServiceTest {
 
     @Test
     void getAllForUser_userNotFound() {
-        when(userRepo.existsById(userId)).thenReturn(false);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class,
                 () -> service.getAllForUser(userId));
         verify(emailRepo, never()).findAllByUserId(any());
@@ -90,7 +91,7 @@ class EmailServiceTest {
     void addEmail_happyPath() {
         String newEmail = "new@example.com";
 
-        when(userRepo.existsById(userId)).thenReturn(true);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.of(new UserSnapshot(userId, "Alice", null)));
         when(emailRepo.existsByEmail(newEmail)).thenReturn(false);
         when(userRepo.findById(userId)).thenReturn(Optional.of(user));
         when(emailRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
@@ -105,7 +106,7 @@ class EmailServiceTest {
 
     @Test
     void addEmail_userNotFoundByExistsCheck() {
-        when(userRepo.existsById(userId)).thenReturn(false);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class,
                 () -> service.addEmail(userId, "x@x.com"));
         verify(emailRepo, never()).existsByEmail(any());
@@ -114,7 +115,7 @@ class EmailServiceTest {
 
     @Test
     void addEmail_emailAlreadyExists() {
-        when(userRepo.existsById(userId)).thenReturn(true);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.of(new UserSnapshot(userId, "Alice", null)));
         when(emailRepo.existsByEmail(e1.getEmail())).thenReturn(true);
 
         assertThrows(EmailAlreadyExistsException.class,
@@ -137,6 +138,7 @@ class EmailServiceTest {
 
         assertEquals(updatedEmail, out.getEmail());
         verify(emailRepo).save(e1);
+        verify(emailRepo).evictEmail("one@example.com");
     }
 
     @Test
@@ -184,7 +186,7 @@ class EmailServiceTest {
 
         service.deleteEmail(userId, e1.getId());
 
-        verify(emailRepo).deleteById(e1.getId());
+        verify(emailRepo).delete(e1);
     }
 
     @Test
@@ -221,6 +223,6 @@ class EmailServiceTest {
 
         assertThrows(IllegalStateException.class,
                 () -> service.deleteEmail(userId, e1.getId()));
-        verify(emailRepo, never()).deleteById(any());
+        verify(emailRepo, never()).delete(any());
     }
 }
\ No newline at end of file
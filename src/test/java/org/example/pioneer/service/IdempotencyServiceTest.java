@@ -0,0 +1,135 @@
+package org.example.pioneer.service;
+
+import org.example.pioneer.exception.InsufficientFundsException;
+import org.example.pioneer.exception.ResourceNotFoundException;
+import org.example.pioneer.exception.TransferPendingException;
+import org.example.pioneer.model.TransferIdempotencyKey;
+import org.example.pioneer.repository.TransferIdempotencyKeyRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private TransferIdempotencyKeyRepository keyRepo;
+
+    @InjectMocks
+    private IdempotencyService service;
+
+    private final BigDecimal amount = new BigDecimal("10.00");
+
+    @Test
+    void newKeyIsRegistered() {
+        when(keyRepo.insertIfAbsent(eq(1L), eq("k"), eq(2L), eq(amount), any())).thenReturn(1);
+
+        assertTrue(service.register(1L, "k", 2L, amount));
+        verify(keyRepo, never()).findById(any());
+    }
+
+    @Test
+    void existingKeyIsReplayAndRemembered() {
+        when(keyRepo.insertIfAbsent(eq(1L), eq("k"), eq(2L), eq(amount), any())).thenReturn(0);
+        when(keyRepo.findById(new TransferIdempotencyKey.Key(1L, "k")))
+                .thenReturn(Optional.of(stored(2L, "10.0000")));
+
+        assertFalse(service.register(1L, "k", 2L, amount));
+        // второй повтор отвечает из LRU
+        assertTrue(service.isKnownReplay(1L, "k", 2L, amount));
+        assertFalse(service.isKnownReplay(3L, "k", 2L, amount));
+    }
+
+    @Test
+    void keyReuseForAnotherTransferThrows() {
+        when(keyRepo.insertIfAbsent(eq(1L), eq("k"), eq(5L), eq(amount), any())).thenReturn(0);
+        when(keyRepo.findById(new TransferIdempotencyKey.Key(1L, "k")))
+                .thenReturn(Optional.of(stored(2L, "10.00")));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.register(1L, "k", 5L, amount));
+    }
+
+    @Test
+    void recordedFailureIsReplayedFromLru() {
+        when(keyRepo.insertFailureIfAbsent(eq(1L), eq("k"), eq(2L), eq(amount), any(),
+                eq("INSUFFICIENT_FUNDS"), eq("нет денег"))).thenReturn(1);
+
+        service.registerFailure(1L, "k", 2L, amount, new InsufficientFundsException("нет денег"));
+
+        InsufficientFundsException e = assertThrows(InsufficientFundsException.class,
+                () -> service.isKnownReplay(1L, "k", 2L, amount));
+        assertEquals("нет денег", e.getMessage());
+        // повтор отказа не пишется второй раз
+        service.registerFailure(1L, "k", 2L, amount, e);
+        verify(keyRepo, times(1)).insertFailureIfAbsent(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void recordedFailureIsReplayedFromTable() {
+        when(keyRepo.insertIfAbsent(eq(1L), eq("k"), eq(2L), eq(amount), any())).thenReturn(0);
+        TransferIdempotencyKey stored = stored(2L, "10.00");
+        stored.setOutcome("ACCOUNT_NOT_FOUND");
+        stored.setFailureMessage("Account не найден для userId=2");
+        when(keyRepo.findById(new TransferIdempotencyKey.Key(1L, "k"))).thenReturn(Optional.of(stored));
+
+        assertThrows(ResourceNotFoundException.class, () -> service.register(1L, "k", 2L, amount));
+        assertThrows(ResourceNotFoundException.class, () -> service.isKnownReplay(1L, "k", 2L, amount));
+    }
+
+    @Test
+    void pendingKeyIsNeitherReplayedNorReusable() {
+        when(keyRepo.insertIfAbsent(eq(1L), eq("k"), eq(2L), eq(amount), any())).thenReturn(0);
+        TransferIdempotencyKey stored = stored(2L, "10.00");
+        stored.setOutcome("PENDING");
+        when(keyRepo.findById(new TransferIdempotencyKey.Key(1L, "k"))).thenReturn(Optional.of(stored));
+
+        assertThrows(TransferPendingException.class, () -> service.register(1L, "k", 2L, amount));
+        assertFalse(service.isKnownReplay(1L, "k", 2L, amount));
+    }
+
+    @Test
+    void resolvePending_recordsOutcomeOrFreesKey() {
+        service.resolvePending(1L, "a", null);
+        service.resolvePending(1L, "b", new InsufficientFundsException("нет денег"));
+        service.resolvePending(1L, "c", new IllegalStateException("журнал недоступен"));
+
+        verify(keyRepo).resolvePending(1L, "a", null, null);
+        verify(keyRepo).resolvePending(1L, "b", "INSUFFICIENT_FUNDS", "нет денег");
+        verify(keyRepo).deletePending(1L, "c");
+    }
+
+    @Test
+    void transientFailureIsNotRecorded() {
+        service.registerFailure(1L, "k", 2L, amount, new IllegalStateException("таймаут"));
+
+        verifyNoInteractions(keyRepo);
+    }
+
+    @Test
+    void unknownKeyIsNotReplay() {
+        assertFalse(service.isKnownReplay(1L, "nope", 2L, amount));
+        verifyNoInteractions(keyRepo);
+    }
+
+    private TransferIdempotencyKey stored(Long toUserId, String amount) {
+        return TransferIdempotencyKey.builder()
+                .userId(1L)
+                .idemKey("k")
+                .toUserId(toUserId)
+                .amount(new BigDecimal(amount))
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.pioneer.service;
+
+import org.example.pioneer.model.Account;
+import org.example.pioneer.model.AccountSnapshot;
+import org.example.pioneer.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterestCalculatorTest {
+
+    private InterestCalculator interest;
+
+    @BeforeEach
+    void setUp() {
+        interest = new InterestCalculator();
+        ReflectionTestUtils.setField(interest, "mode", InterestAccrualMode.LAZY);
+        // ровно начало периода 1000
+        ReflectionTestUtils.setField(interest, "clock",
+                Clock.fixed(Instant.ofEpochMilli(1000 * InterestCalculator.PERIOD_MS), ZoneOffset.UTC));
+    }
+
+    @Test
+    void accrue_matchesStepByStepWithRounding() {
+        Money initial = Money.of("123.45");
+        Money stepwise = Money.of("12.35");
+        for (int i = 0; i < 7; i++) {
+            stepwise = interest.accrueOnce(stepwise, initial);
+        }
+
+        assertEquals(stepwise, interest.accrue(Money.of("12.35"), initial, 7));
+    }
+
+    @Test
+    void accrue_halfEvenOnEachStep() {
+        // 0.25 * 1.10 = 0.275 -> 0.28; 0.28 * 1.10 = 0.308 -> 0.31
+        assertEquals(Money.of("0.31"), interest.accrue(Money.of("0.25"), Money.of("100"), 2));
+        // 0.05 * 1.10 = 0.055 -> 0.06 (к чётной), 0.15 * 1.10 = 0.165 -> 0.16
+        assertEquals(Money.of("0.06"), interest.accrueOnce(Money.of("0.05"), Money.of("100")));
+        assertEquals(Money.of("0.16"), interest.accrueOnce(Money.of("0.15"), Money.of("100")));
+    }
+
+    @Test
+    void accrue_stopsAtCapEvenForHugePeriodCount() {
+        assertEquals(Money.of("207.00"),
+                interest.accrue(Money.of("100.00"), Money.of("100.00"), Long.MAX_VALUE));
+    }
+
+    @Test
+    void accrue_tinyBalanceDoesNotGrow() {
+        Money tiny = Money.of("0.01");
+        assertSame(tiny, interest.accrue(tiny, Money.of("100"), Long.MAX_VALUE));
+    }
+
+    @Test
+    void materialize_appliesElapsedPeriodsAndMovesEpoch() {
+        Account acct = Account.builder()
+                .balance(Money.of("100.00"))
+                .initialBalance(Money.of("100.00"))
+                .accrualEpoch(998L)
+                .build();
+
+        interest.materialize(acct);
+
+        assertEquals(Money.of("121.00"), acct.getBalance());
+        assertEquals(1000L, acct.getAccrualEpoch());
+
+        // повторное применение в том же периоде ничего не меняет
+        interest.materialize(acct);
+        assertEquals(Money.of("121.00"), acct.getBalance());
+    }
+
+    @Test
+    void materialize_noopWhenNotLazy() {
+        ReflectionTestUtils.setField(interest, "mode", InterestAccrualMode.ENTITY);
+        Account acct = Account.builder()
+                .balance(Money.of("100.00"))
+                .initialBalance(Money.of("100.00"))
+                .accrualEpoch(1L)
+                .build();
+
+        interest.materialize(acct);
+
+        assertEquals(Money.of("100.00"), acct.getBalance());
+        assertEquals(1L, acct.getAccrualEpoch());
+    }
+
+    @Test
+    void materializeSnapshot_returnsAccruedCopyAndLeavesCachedOneIntact() {
+        AccountSnapshot cached = new AccountSnapshot(1L, Money.of("100.00"), Money.of("100.00"), 998L, 3L);
+
+        AccountSnapshot out = interest.materialize(cached);
+
+        assertEquals(Money.of("121.00"), out.balance());
+        assertEquals(1000L, out.accrualEpoch());
+        assertEquals(3L, out.version());
+        assertEquals(Money.of("100.00"), cached.balance());
+        assertSame(out, interest.materialize(out));
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.pioneer.service;
+
+import org.example.pioneer.repository.TransferEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LedgerAggregatorServiceTest {
+
+    private TransferEntryRepository ledgerRepo;
+    private AccountService accountService;
+    private LedgerAggregatorService aggregator;
+
+    @BeforeEach
+    void setUp() {
+        ledgerRepo = mock(TransferEntryRepository.class);
+        accountService = mock(AccountService.class);
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        aggregator = new LedgerAggregatorService(ledgerRepo, accountService, new TransactionTemplate(txManager));
+        ReflectionTestUtils.setField(aggregator, "batchSize", 2);
+    }
+
+    @Test
+    void drainsQueueAndEvictsTouchedAccounts() {
+        when(ledgerRepo.applyPending(2))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L))
+                .thenReturn(List.of());
+
+        aggregator.aggregate();
+
+        verify(ledgerRepo, times(3)).applyPending(2);
+        verify(accountService).evict(1L);
+        verify(accountService).evict(2L);
+        verify(accountService).evict(3L);
+    }
+
+    @Test
+    void stopsAfterMaxBatches() {
+        ReflectionTestUtils.setField(aggregator, "maxBatchesPerRun", 3);
+        when(ledgerRepo.applyPending(2)).thenReturn(List.of(1L));
+
+        aggregator.aggregate();
+
+        verify(ledgerRepo, times(3)).applyPending(2);
+    }
+}
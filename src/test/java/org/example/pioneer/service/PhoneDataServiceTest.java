@@ -4,6 +4,7 @@ import org.example.pioneer.exception.PhoneAlreadyExistsException;
 import org.example.pioneer.exception.ResourceNotFoundException;
 import org.example.pioneer.model.PhoneData;
 import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
 import org.example.pioneer.repository.PhoneDataRepository;
 import org.example.pioneer.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -67,7 +68,7 @@ class PhoneDataServiceTest {
 
     @Test
     void getAllForUser_happyPath() {
-        when(userRepo.existsById(userId)).thenReturn(true);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.of(new UserSnapshot(userId, "Alice", null)));
         when(phoneRepo.findAllByUserId(userId)).thenReturn(of(pd1, pd2));
 
         List<PhoneData> list = service.getAllForUser(userId);
@@ -80,7 +81,7 @@ class PhoneDataServiceTest {
 
     @Test
     void getAllForUser_userNotFound() {
-        when(userRepo.existsById(userId)).thenReturn(false);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class,
                 () -> service.getAllForUser(userId));
         verify(phoneRepo, never()).findAllByUserId(any());
@@ -91,7 +92,7 @@ class PhoneDataServiceTest {
     @Test
     void addPhone_happyPath() {
         String newPhone = "333";
-        when(userRepo.existsById(userId)).thenReturn(true);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.of(new UserSnapshot(userId, "Alice", null)));
         when(phoneRepo.existsByPhone(newPhone)).thenReturn(false);
         when(userRepo.findById(userId)).thenReturn(Optional.of(user));
         when(phoneRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
@@ -105,7 +106,7 @@ class PhoneDataServiceTest {
 
     @Test
     void addPhone_userNotFoundByExistsCheck() {
-        when(userRepo.existsById(userId)).thenReturn(false);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.empty());
         assertThrows(ResourceNotFoundException.class,
                 () -> service.addPhone(userId, "333"));
         verify(phoneRepo, never()).existsByPhone(any());
@@ -114,7 +115,7 @@ class PhoneDataServiceTest {
 
     @Test
     void addPhone_phoneAlreadyExists() {
-        when(userRepo.existsById(userId)).thenReturn(true);
+        when(userRepo.findSnapshotById(userId)).thenReturn(Optional.of(new UserSnapshot(userId, "Alice", null)));
         when(phoneRepo.existsByPhone(pd1.getPhone())).thenReturn(true);
         assertThrows(PhoneAlreadyExistsException.class,
                 () -> service.addPhone(userId, pd1.getPhone()));
@@ -136,6 +137,7 @@ class PhoneDataServiceTest {
 
         assertEquals(newNumber, updated.getPhone());
         verify(phoneRepo).save(pd1);
+        verify(phoneRepo).evictPhone("111");
     }
 
     @Test
@@ -183,7 +185,7 @@ class PhoneDataServiceTest {
 
         service.deletePhone(userId, pd1.getId());
 
-        verify(phoneRepo).deleteById(pd1.getId());
+        verify(phoneRepo).delete(pd1);
     }
 
     @Test
@@ -220,6 +222,6 @@ class PhoneDataServiceTest {
 
         assertThrows(IllegalStateException.class,
                 () -> service.deletePhone(userId, pd1.getId()));
-        verify(phoneRepo, never()).deleteById(any());
+        verify(phoneRepo, never()).delete(any());
     }
 }
\ No newline at end of file
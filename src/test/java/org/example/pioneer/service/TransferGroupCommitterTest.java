@@ -0,0 +1,167 @@
+package org.example.pioneer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.pioneer.exception.InsufficientFundsException;
+import org.example.pioneer.exception.ResourceNotFoundException;
+import org.example.pioneer.repository.AccountBatchRepository;
+import org.example.pioneer.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class TransferGroupCommitterTest {
+
+    private AccountRepository accountRepo;
+    private AccountService accountService;
+    private PlatformTransactionManager txManager;
+    private SimpleMeterRegistry meterRegistry;
+    private TransferGroupCommitter committer;
+
+    @BeforeEach
+    void setUp() {
+        accountRepo = mock(AccountRepository.class);
+        accountService = mock(AccountService.class);
+        txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(accountRepo.findExistingIds(any())).thenReturn(Set.of(1L, 2L, 3L));
+        meterRegistry = new SimpleMeterRegistry();
+
+        committer = new TransferGroupCommitter(accountRepo, accountService,
+                new TransactionTemplate(txManager), meterRegistry);
+        // окно побольше, чтобы все переводы теста попали в одну пачку
+        ReflectionTestUtils.setField(committer, "windowMs", 200L);
+        ReflectionTestUtils.setField(committer, "maxBatch", 3);
+        committer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        committer.stop();
+    }
+
+    @Test
+    void concurrentTransfersShareOneTransaction() throws Exception {
+        when(accountRepo.transferAll(anyList())).thenReturn(new int[]{1, 0, 1});
+
+        CompletableFuture<Void> ok1 = committer.submit(1L, 2L, new BigDecimal("10"));
+        CompletableFuture<Void> poor = committer.submit(3L, 1L, new BigDecimal("1000"));
+        CompletableFuture<Void> ok2 = committer.submit(2L, 3L, new BigDecimal("5"));
+
+        ok1.get(1, TimeUnit.SECONDS);
+        ok2.get(1, TimeUnit.SECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> poor.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(InsufficientFundsException.class, e.getCause());
+
+        verify(accountRepo, times(1)).transferAll(List.of(
+                new AccountBatchRepository.Transfer(1L, 2L, new BigDecimal("10")),
+                new AccountBatchRepository.Transfer(3L, 1L, new BigDecimal("1000")),
+                new AccountBatchRepository.Transfer(2L, 3L, new BigDecimal("5"))));
+        verify(txManager, times(1)).commit(any());
+        assertEquals(3.0, meterRegistry.summary("transfer.group.size").totalAmount());
+        verify(accountService).evict(1L);
+        verify(accountService).evict(3L);
+    }
+
+    @Test
+    void missingAccountIsIsolated() throws Exception {
+        ReflectionTestUtils.setField(committer, "windowMs", 0L);
+        when(accountRepo.transferAll(anyList())).thenReturn(new int[]{1});
+
+        CompletableFuture<Void> missing = committer.submit(1L, 99L, new BigDecimal("1"));
+        CompletableFuture<Void> ok = committer.submit(1L, 2L, new BigDecimal("1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> missing.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ResourceNotFoundException.class, e.getCause());
+        ok.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void recipientDeletedAfterCheck_failsWithNotFound() {
+        ReflectionTestUtils.setField(committer, "windowMs", 0L);
+        when(accountRepo.findExistingIds(any()))
+                .thenReturn(Set.of(1L, 2L))
+                .thenReturn(Set.of(1L));
+        when(accountRepo.transferAll(anyList())).thenReturn(new int[]{0});
+
+        CompletableFuture<Void> f = committer.submit(1L, 2L, new BigDecimal("1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(ResourceNotFoundException.class, e.getCause());
+    }
+
+    @Test
+    void lockConflictRetriesWholeBatch() throws Exception {
+        when(accountRepo.transferAll(anyList()))
+                .thenThrow(new CannotAcquireLockException("deadlock"))
+                .thenReturn(new int[]{1});
+
+        committer.submit(1L, 2L, new BigDecimal("1")).get(2, TimeUnit.SECONDS);
+
+        verify(accountRepo, times(2)).transferAll(anyList());
+    }
+
+    @Test
+    void evictionFailureDoesNotFailCommittedTransfers() throws Exception {
+        ReflectionTestUtils.setField(committer, "windowMs", 0L);
+        when(accountRepo.transferAll(anyList())).thenReturn(new int[]{1});
+        doThrow(new IllegalStateException("redis недоступен")).when(accountService).evict(1L);
+
+        committer.submit(1L, 2L, new BigDecimal("1")).get(1, TimeUnit.SECONDS);
+
+        verify(accountService).evict(2L);
+    }
+
+    @Test
+    void databaseFailureFailsWholeBatch() {
+        ReflectionTestUtils.setField(committer, "maxAttempts", 1);
+        when(accountRepo.transferAll(anyList())).thenThrow(new CannotAcquireLockException("deadlock"));
+
+        CompletableFuture<Void> f = committer.submit(1L, 2L, new BigDecimal("1"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(CannotAcquireLockException.class, e.getCause());
+    }
+
+    @Test
+    void withdraw_removesOnlyTransfersNotYetInBatch() throws Exception {
+        ReflectionTestUtils.setField(committer, "windowMs", 0L);
+        CountDownLatch inBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountRepo.transferAll(anyList())).thenAnswer(inv -> {
+            inBatch.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            return new int[]{1};
+        });
+
+        CompletableFuture<Void> taken = committer.submit(1L, 2L, new BigDecimal("1"));
+        assertTrue(inBatch.await(1, TimeUnit.SECONDS));
+        CompletableFuture<Void> queued = committer.submit(2L, 3L, new BigDecimal("1"));
+
+        assertFalse(committer.withdraw(taken));
+        assertTrue(committer.withdraw(queued));
+        release.countDown();
+
+        taken.get(1, TimeUnit.SECONDS);
+        assertThrows(CancellationException.class, () -> queued.get(1, TimeUnit.SECONDS));
+        verify(accountRepo, times(1)).transferAll(anyList());
+    }
+}
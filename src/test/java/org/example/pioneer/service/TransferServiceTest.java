@@ -1,12 +1,31 @@
 package org.example.pioneer.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.pioneer.dto.request.TransferRequest;
+import org.example.pioneer.engine.InMemoryLedgerEngine;
 import org.example.pioneer.exception.InsufficientFundsException;
+import org.example.pioneer.exception.TransferPendingException;
 import org.example.pioneer.exception.ResourceNotFoundException;
 import org.example.pioneer.model.Account;
+import org.example.pioneer.model.Money;
 import org.example.pioneer.repository.AccountRepository;
+import org.example.pioneer.repository.TransferEntryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.LongFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,6 +38,13 @@ import static org.mockito.Mockito.*;
 class TransferServiceTest {
 
     private AccountRepository accountRepo;
+    private SimpleMeterRegistry meterRegistry;
+    private SimpleTransactionStatus txStatus;
+    private IdempotencyService idempotencyService;
+    private ObjectProvider<InMemoryLedgerEngine> engineProvider;
+    private PlatformTransactionManager txManager;
+    private TransferEntryRepository ledgerRepo;
+    private ObjectProvider<TransferGroupCommitter> committerProvider;
     private TransferService transferService;
 
     // “Счётчики” для from/to
@@ -33,36 +59,47 @@ class TransferServiceTest {
         // тестовые аккаунты
         from = Account.builder()
                 .id(1L)
-                .balance(new BigDecimal("100.00"))
-                .initialBalance(new BigDecimal("100.00"))
+                .balance(Money.of("100.00"))
+                .initialBalance(Money.of("100.00"))
                 .version(0L)
                 .build();
         to = Account.builder()
                 .id(2L)
-                .balance(new BigDecimal("50.00"))
-                .initialBalance(new BigDecimal("50.00"))
+                .balance(Money.of("50.00"))
+                .initialBalance(Money.of("50.00"))
                 .version(0L)
                 .build();
 
         // Stub AccountService: возвращаем нужный объект по userId
-        AccountService accountServiceStub = new AccountService(null) {
+        AccountService accountServiceStub = new AccountService(null, null, null, mock(EntityManagerFactory.class, RETURNS_DEEP_STUBS)) {
             @Override
-            public Account getByUserId(Long userId) {
+            public Account getFresh(Long userId) {
                 if (userId.equals(1L)) return from;
                 if (userId.equals(2L)) return to;
                 throw new ResourceNotFoundException("no account for " + userId);
             }
         };
 
-        transferService = new TransferService(accountServiceStub, accountRepo);
+        meterRegistry = new SimpleMeterRegistry();
+        txManager = mock(PlatformTransactionManager.class);
+        txStatus = new SimpleTransactionStatus();
+        when(txManager.getTransaction(any())).thenReturn(txStatus);
+        idempotencyService = mock(IdempotencyService.class);
+        engineProvider = mock(ObjectProvider.class);
+        ledgerRepo = mock(TransferEntryRepository.class);
+        committerProvider = mock(ObjectProvider.class);
+        transferService = new TransferService(accountServiceStub, accountRepo,
+                new TransactionTemplate(txManager), meterRegistry, idempotencyService,
+                engineProvider, ledgerRepo, committerProvider, new InterestCalculator());
+        ReflectionTestUtils.setField(transferService, "initialBackoffMs", 0L);
     }
 
     @Test
     void happyPath() {
         transferService.transfer(1L, 2L, new BigDecimal("30.00"));
 
-        assertEquals(new BigDecimal("70.00"), from.getBalance());
-        assertEquals(new BigDecimal("80.00"), to.getBalance());
+        assertEquals(Money.of("70.00"), from.getBalance());
+        assertEquals(Money.of("80.00"), to.getBalance());
 
         // оба должны сохраниться
         verify(accountRepo).save(from);
@@ -89,4 +126,420 @@ class TransferServiceTest {
         assertThrows(ResourceNotFoundException.class,
                 () -> transferService.transfer(99L, 2L, new BigDecimal("10.00")));
     }
-}
\ No newline at end of file
+
+    // LOCKING
+
+    @Test
+    void lockingModeLocksInAscendingIdOrder() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.LOCKING);
+        when(accountRepo.findByIdForUpdate(1L)).thenReturn(Optional.of(from));
+        when(accountRepo.findByIdForUpdate(2L)).thenReturn(Optional.of(to));
+
+        // перевод 2 → 1: блокировки всё равно берутся в порядке 1, 2
+        transferService.transfer(2L, 1L, new BigDecimal("20.00"));
+
+        InOrder inOrder = inOrder(accountRepo);
+        inOrder.verify(accountRepo).findByIdForUpdate(1L);
+        inOrder.verify(accountRepo).findByIdForUpdate(2L);
+        assertEquals(Money.of("120.00"), from.getBalance());
+        assertEquals(Money.of("30.00"), to.getBalance());
+    }
+
+    @Test
+    void lockingModeMissingAccountThrows() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.LOCKING);
+        when(accountRepo.findByIdForUpdate(2L)).thenReturn(Optional.of(to));
+        when(accountRepo.findByIdForUpdate(99L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> transferService.transfer(99L, 2L, new BigDecimal("10.00")));
+    }
+
+    @Test
+    void selfTransferThrows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.transfer(1L, 1L, new BigDecimal("10.00")));
+    }
+
+    // ATOMIC
+
+    @Test
+    void atomicModeIssuesSingleStatement() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.ATOMIC);
+        BigDecimal amount = new BigDecimal("30.00");
+        when(accountRepo.transferAtomically(1L, 2L, amount)).thenReturn(1);
+
+        transferService.transfer(1L, 2L, amount);
+
+        verify(accountRepo).transferAtomically(1L, 2L, amount);
+        verify(accountRepo, never()).save(any());
+        verify(accountRepo, never()).existsById(any());
+    }
+
+    @Test
+    void amountFinerThanStoredScaleIsRejectedInEveryMode() {
+        for (TransferMode m : TransferMode.values()) {
+            ReflectionTestUtils.setField(transferService, "mode", m);
+            assertThrows(IllegalArgumentException.class,
+                    () -> transferService.transfer(1L, 2L, new BigDecimal("1.00001")), m.name());
+        }
+        verifyNoInteractions(accountRepo, ledgerRepo, engineProvider, committerProvider);
+    }
+
+    @Test
+    void atomicModeZeroRowsMeansInsufficientFunds() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.ATOMIC);
+        when(accountRepo.transferAtomically(eq(1L), eq(2L), any())).thenReturn(0);
+        when(accountRepo.existsById(1L)).thenReturn(true);
+        when(accountRepo.existsById(2L)).thenReturn(true);
+
+        assertThrows(InsufficientFundsException.class,
+                () -> transferService.transfer(1L, 2L, new BigDecimal("200.00")));
+    }
+
+    @Test
+    void atomicModeMissingRecipientThrows() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.ATOMIC);
+        when(accountRepo.transferAtomically(eq(1L), eq(99L), any())).thenReturn(0);
+        when(accountRepo.existsById(1L)).thenReturn(true);
+        when(accountRepo.existsById(99L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> transferService.transfer(1L, 99L, new BigDecimal("10.00")));
+    }
+
+    // idempotency
+
+    @Test
+    void replayFromLruDoesNotTouchAccounts() {
+        BigDecimal amount = new BigDecimal("30.00");
+        when(idempotencyService.isKnownReplay(1L, "k-1", 2L, amount)).thenReturn(true);
+
+        transferService.transfer(1L, 2L, amount, "k-1");
+
+        assertEquals(Money.of("100.00"), from.getBalance());
+        verify(idempotencyService, never()).register(any(), any(), any(), any());
+        verifyNoInteractions(accountRepo);
+    }
+
+    @Test
+    void replayFromTableDoesNotMoveMoney() {
+        BigDecimal amount = new BigDecimal("30.00");
+        when(idempotencyService.register(1L, "k-2", 2L, amount)).thenReturn(false);
+
+        transferService.transfer(1L, 2L, amount, "k-2");
+
+        assertEquals(Money.of("100.00"), from.getBalance());
+        verify(accountRepo, never()).save(any());
+    }
+
+    @Test
+    void newKeyIsRegisteredBeforeTransfer() {
+        BigDecimal amount = new BigDecimal("30.00");
+        when(idempotencyService.register(1L, "k-3", 2L, amount)).thenReturn(true);
+
+        transferService.transfer(1L, 2L, amount, "k-3");
+
+        InOrder inOrder = inOrder(idempotencyService, accountRepo);
+        inOrder.verify(idempotencyService).register(1L, "k-3", 2L, amount);
+        inOrder.verify(accountRepo).save(from);
+        assertEquals(Money.of("70.00"), from.getBalance());
+    }
+
+    @Test
+    void insufficientFundsIsRecordedUnderKey() {
+        BigDecimal amount = new BigDecimal("500.00");
+        when(idempotencyService.register(1L, "k-4", 2L, amount)).thenReturn(true);
+
+        InsufficientFundsException e = assertThrows(InsufficientFundsException.class,
+                () -> transferService.transfer(1L, 2L, amount, "k-4"));
+
+        verify(idempotencyService).registerFailure(1L, "k-4", 2L, amount, e);
+        assertEquals(Money.of("100.00"), from.getBalance());
+    }
+
+    @Test
+    void recordedFailureIsReplayedWithoutTransfer() {
+        BigDecimal amount = new BigDecimal("30.00");
+        when(idempotencyService.isKnownReplay(1L, "k-5", 2L, amount))
+                .thenThrow(new InsufficientFundsException("нет денег"));
+
+        assertThrows(InsufficientFundsException.class, () -> transferService.transfer(1L, 2L, amount, "k-5"));
+
+        verify(idempotencyService, never()).register(any(), any(), any(), any());
+        verify(idempotencyService, never()).registerFailure(any(), any(), any(), any(), any());
+        verifyNoInteractions(accountRepo);
+    }
+
+    // batch
+
+    @Test
+    void batchAllOrNothingRollsBackOnFailure() {
+        when(accountRepo.findExistingIds(any())).thenReturn(Set.of(1L, 2L, 3L));
+        when(accountRepo.transferAll(any())).thenReturn(new int[]{1, 0});
+
+        List<TransferStatus> statuses = transferService.transferBatch(1L,
+                List.of(request(2L, "10.00"), request(3L, "500.00")),
+                BatchTransferMode.ALL_OR_NOTHING);
+
+        assertEquals(List.of(TransferStatus.ROLLED_BACK, TransferStatus.INSUFFICIENT_FUNDS), statuses);
+        assertTrue(txStatus.isRollbackOnly());
+    }
+
+    @Test
+    void batchAllOrNothingRejectsWithoutTouchingDb() {
+        List<TransferStatus> statuses = transferService.transferBatch(1L,
+                List.of(request(2L, "10.00"), request(1L, "5.00")),
+                BatchTransferMode.ALL_OR_NOTHING);
+
+        assertEquals(List.of(TransferStatus.ROLLED_BACK, TransferStatus.REJECTED), statuses);
+        verify(accountRepo, never()).transferAll(any());
+    }
+
+    @Test
+    void batchBestEffortCommitsSuccessfulItemsPerChunk() {
+        ReflectionTestUtils.setField(transferService, "batchChunkSize", 2);
+        when(accountRepo.findExistingIds(any())).thenReturn(Set.of(1L, 2L, 3L));
+        when(accountRepo.transferAll(any()))
+                .thenReturn(new int[]{1, 0})
+                .thenReturn(new int[]{1});
+
+        List<TransferStatus> statuses = transferService.transferBatch(1L,
+                List.of(request(2L, "10.00"), request(3L, "500.00"),
+                        request(99L, "1.00"), request(2L, "1.00")),
+                BatchTransferMode.BEST_EFFORT);
+
+        assertEquals(List.of(
+                TransferStatus.COMPLETED,
+                TransferStatus.INSUFFICIENT_FUNDS,
+                TransferStatus.ACCOUNT_NOT_FOUND,
+                TransferStatus.COMPLETED), statuses);
+        verify(accountRepo, times(2)).transferAll(any());
+        assertFalse(txStatus.isRollbackOnly());
+    }
+
+    @Test
+    void batchRecipientDeletedAfterCheck_reportedAsNotFound() {
+        when(accountRepo.findExistingIds(any()))
+                .thenReturn(Set.of(1L, 2L, 3L))
+                .thenReturn(Set.of(1L, 2L));
+        when(accountRepo.transferAll(any())).thenReturn(new int[]{0, 0});
+
+        List<TransferStatus> statuses = transferService.transferBatch(1L,
+                List.of(request(2L, "500.00"), request(3L, "1.00")),
+                BatchTransferMode.BEST_EFFORT);
+
+        assertEquals(List.of(TransferStatus.INSUFFICIENT_FUNDS, TransferStatus.ACCOUNT_NOT_FOUND), statuses);
+        verify(accountRepo, times(2)).findExistingIds(Set.of(1L, 2L, 3L));
+    }
+
+    @Test
+    void batchRejectsAmountsFinerThanStoredScale() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.ATOMIC);
+        when(accountRepo.findExistingIds(any())).thenReturn(Set.of(1L, 2L));
+        when(accountRepo.transferAll(any())).thenReturn(new int[]{1});
+
+        List<TransferStatus> statuses = transferService.transferBatch(1L,
+                List.of(request(2L, "1.00001"), request(2L, "1.0001")),
+                BatchTransferMode.BEST_EFFORT);
+
+        assertEquals(List.of(TransferStatus.REJECTED, TransferStatus.COMPLETED), statuses);
+    }
+
+    private static TransferRequest request(Long toUserId, String amount) {
+        TransferRequest r = new TransferRequest();
+        r.setToUserId(toUserId);
+        r.setAmount(new BigDecimal(amount));
+        return r;
+    }
+
+    // retry
+
+    @Test
+    void versionConflictIsRetried() {
+        when(accountRepo.save(from))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, 1L))
+                .thenReturn(from);
+
+        transferService.transfer(1L, 2L, new BigDecimal("10.00"));
+
+        assertEquals(1.0, meterRegistry.counter("transfer.conflicts", "mode", "OPTIMISTIC").count());
+        assertEquals(1.0, meterRegistry.counter("transfer.retries", "mode", "OPTIMISTIC").count());
+        verify(accountRepo, times(2)).save(from);
+    }
+
+    @Test
+    void retriesAreBounded() {
+        ReflectionTestUtils.setField(transferService, "maxAttempts", 3);
+        when(accountRepo.save(from))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, 1L));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> transferService.transfer(1L, 2L, new BigDecimal("1.00")));
+
+        verify(accountRepo, times(3)).save(from);
+        assertEquals(2.0, meterRegistry.counter("transfer.retries", "mode", "OPTIMISTIC").count());
+        assertEquals(1.0, meterRegistry.counter("transfer.retries.exhausted", "mode", "OPTIMISTIC").count());
+    }
+
+    // IN_MEMORY
+
+    @Test
+    void inMemory_delegatesToEngineWithoutDb() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.IN_MEMORY);
+        InMemoryLedgerEngine engine = mock(InMemoryLedgerEngine.class);
+        when(engineProvider.getObject()).thenReturn(engine);
+        when(engine.transfer(1L, 2L, new BigDecimal("5.00")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        transferService.transfer(1L, 2L, new BigDecimal("5.00"));
+
+        verify(engine).transfer(1L, 2L, new BigDecimal("5.00"));
+        verifyNoInteractions(accountRepo);
+    }
+
+    @Test
+    void inMemory_unwrapsEngineFailure() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.IN_MEMORY);
+        InMemoryLedgerEngine engine = mock(InMemoryLedgerEngine.class);
+        when(engineProvider.getObject()).thenReturn(engine);
+        when(engine.transfer(anyLong(), anyLong(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new InsufficientFundsException(1L, "нет денег")));
+
+        assertThrows(InsufficientFundsException.class,
+                () -> transferService.transfer(1L, 2L, new BigDecimal("500.00")));
+    }
+
+    @Test
+    void inMemory_timeoutWithKey_commitsKeyAsPendingAndRecordsOutcomeLater() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.IN_MEMORY);
+        ReflectionTestUtils.setField(transferService, "engineTimeoutMs", 10L);
+        InMemoryLedgerEngine engine = mock(InMemoryLedgerEngine.class);
+        when(engineProvider.getObject()).thenReturn(engine);
+        BigDecimal amount = new BigDecimal("5.00");
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        when(engine.transfer(1L, 2L, amount, "k-9")).thenReturn(result);
+        when(idempotencyService.register(1L, "k-9", 2L, amount)).thenReturn(true);
+
+        assertThrows(TransferPendingException.class, () -> transferService.transfer(1L, 2L, amount, "k-9"));
+
+        // ключ не откатывается: перевод ещё может записаться в журнал
+        verify(idempotencyService).markPending(1L, "k-9");
+        verify(txManager).commit(txStatus);
+        verify(txManager, never()).rollback(any());
+        verify(idempotencyService, never()).resolvePending(any(), any(), any());
+
+        result.complete(null);
+        verify(idempotencyService, timeout(1000)).resolvePending(1L, "k-9", null);
+        verify(idempotencyService, never()).registerFailure(any(), any(), any(), any(), any());
+    }
+
+    // LEDGER
+
+    @Test
+    void ledger_appendsEntryUnderSenderLock() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.LEDGER);
+        when(ledgerRepo.append(1L, 2L, new BigDecimal("5.00"), "k1")).thenReturn(true);
+        when(idempotencyService.register(1L, "k1", 2L, new BigDecimal("5.00"))).thenReturn(true);
+
+        transferService.transfer(1L, 2L, new BigDecimal("5.00"), "k1");
+
+        InOrder order = inOrder(ledgerRepo);
+        order.verify(ledgerRepo).lockSender(1L);
+        order.verify(ledgerRepo).append(1L, 2L, new BigDecimal("5.00"), "k1");
+        verify(accountRepo, never()).save(any());
+    }
+
+    @Test
+    void ledger_notAppended_insufficientFunds() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.LEDGER);
+        when(ledgerRepo.append(anyLong(), anyLong(), any(), any())).thenReturn(false);
+        when(accountRepo.existsById(anyLong())).thenReturn(true);
+
+        assertThrows(InsufficientFundsException.class,
+                () -> transferService.transfer(1L, 2L, new BigDecimal("500.00")));
+    }
+
+    @Test
+    void ledger_notAppended_missingRecipient() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.LEDGER);
+        when(ledgerRepo.append(anyLong(), anyLong(), any(), any())).thenReturn(false);
+        when(accountRepo.existsById(1L)).thenReturn(true);
+        when(accountRepo.existsById(9L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> transferService.transfer(1L, 9L, new BigDecimal("1.00")));
+    }
+
+    @Test
+    void ledger_batchAppendsEachTransfer() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.LEDGER);
+        when(accountRepo.findExistingIds(any())).thenReturn(Set.of(1L, 2L));
+        when(ledgerRepo.append(eq(1L), eq(2L), any(), isNull()))
+                .thenReturn(true, false);
+
+        List<TransferStatus> statuses = transferService.transferBatch(1L, List.of(
+                request(2L, "10.00"),
+                request(2L, "99.00")), BatchTransferMode.BEST_EFFORT);
+
+        assertEquals(List.of(TransferStatus.COMPLETED, TransferStatus.INSUFFICIENT_FUNDS), statuses);
+        verify(ledgerRepo, times(1)).lockSender(1L);
+        verify(accountRepo, never()).transferAll(any());
+    }
+
+    // GROUP_COMMIT
+
+    @Test
+    void groupCommit_submitsToCommitter() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.GROUP_COMMIT);
+        TransferGroupCommitter committer = mock(TransferGroupCommitter.class);
+        when(committerProvider.getObject()).thenReturn(committer);
+        when(committer.submit(1L, 2L, new BigDecimal("5.00")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        transferService.transfer(1L, 2L, new BigDecimal("5.00"));
+
+        verify(committer).submit(1L, 2L, new BigDecimal("5.00"));
+        verifyNoInteractions(accountRepo);
+    }
+
+    @Test
+    void groupCommit_withIdempotencyKeyRunsAtomicTransaction() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.GROUP_COMMIT);
+        when(idempotencyService.register(1L, "k1", 2L, new BigDecimal("5.00"))).thenReturn(true);
+        when(accountRepo.transferAtomically(1L, 2L, new BigDecimal("5.00"))).thenReturn(1);
+
+        transferService.transfer(1L, 2L, new BigDecimal("5.00"), "k1");
+
+        verify(accountRepo).transferAtomically(1L, 2L, new BigDecimal("5.00"));
+        verifyNoInteractions(committerProvider);
+    }
+
+    @Test
+    void groupCommit_timeoutWhileQueued_withdrawsAndFails() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.GROUP_COMMIT);
+        ReflectionTestUtils.setField(transferService, "groupTimeoutMs", 10L);
+        TransferGroupCommitter committer = mock(TransferGroupCommitter.class);
+        when(committerProvider.getObject()).thenReturn(committer);
+        CompletableFuture<Void> queued = new CompletableFuture<>();
+        when(committer.submit(1L, 2L, new BigDecimal("5.00"))).thenReturn(queued);
+        when(committer.withdraw(queued)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class,
+                () -> transferService.transfer(1L, 2L, new BigDecimal("5.00")));
+    }
+
+    @Test
+    void groupCommit_timeoutInsideBatch_reportsPending() {
+        ReflectionTestUtils.setField(transferService, "mode", TransferMode.GROUP_COMMIT);
+        ReflectionTestUtils.setField(transferService, "groupTimeoutMs", 10L);
+        TransferGroupCommitter committer = mock(TransferGroupCommitter.class);
+        when(committerProvider.getObject()).thenReturn(committer);
+        CompletableFuture<Void> inBatch = new CompletableFuture<>();
+        when(committer.submit(1L, 2L, new BigDecimal("5.00"))).thenReturn(inBatch);
+        when(committer.withdraw(inBatch)).thenReturn(false);
+
+        assertThrows(TransferPendingException.class,
+                () -> transferService.transfer(1L, 2L, new BigDecimal("5.00")));
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.pioneer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.pioneer.repository.UserRepository;
+import org.example.pioneer.repository.UserScanRepository.SearchRowConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserNameIndexTest {
+
+    private final List<Object[]> table = new ArrayList<>();
+    private UserNameIndex index;
+    private Runnable duringScan = () -> { };
+
+    @BeforeEach
+    void setUp() {
+        UserRepository userRepo = mock(UserRepository.class);
+        doAnswer(inv -> {
+            SearchRowConsumer consumer = inv.getArgument(0);
+            table.forEach(r -> consumer.accept((Long) r[0], (String) r[1], (LocalDate) r[2]));
+            duringScan.run();
+            return null;
+        }).when(userRepo).forEachSearchRow(any());
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        index = new UserNameIndex(userRepo, new TransactionTemplate(txManager), new SimpleMeterRegistry());
+
+        row(30, "Alice", "1990-01-01");
+        row(4, "alina", "2001-05-05");
+        row(17, "Albert", null);
+        row(8, "Bob", "1995-01-01");
+        row(9, "Алексей", "1999-09-09");
+    }
+
+    @Test
+    void notBuilt_answersNothing() {
+        assertNull(index.find("Al", null, 0, 10, Long.MAX_VALUE));
+    }
+
+    @Test
+    void prefix_isCaseInsensitive_andIdsFollowName() {
+        index.start();
+
+        assertArrayEquals(new long[]{17, 30, 4}, ids("al", null));
+        assertArrayEquals(new long[]{30, 4}, ids("ALI", null));
+        assertArrayEquals(new long[]{9}, ids("алекс", null));
+        assertArrayEquals(new long[0], ids("Zed", null));
+    }
+
+    @Test
+    void sameName_isOrderedById() {
+        row(100, "Alice", null);
+        row(5, "ALICE", null);
+        index.start();
+
+        assertArrayEquals(new long[]{5, 30, 100}, ids("alice", null));
+    }
+
+    @Test
+    void dateOfBirthAfter_isStrict_andSkipsUnknownDates() {
+        index.start();
+
+        assertArrayEquals(new long[]{4}, ids("al", LocalDate.of(1990, 1, 1)));
+        assertArrayEquals(new long[]{30, 4}, ids("al", LocalDate.of(1989, 12, 31)));
+    }
+
+    @Test
+    void find_returnsOnlyRequestedPage_andStopsCountingAtLimit() {
+        index.start();
+
+        UserNameIndex.Hits page = index.find("al", null, 1, 1, Long.MAX_VALUE);
+        assertArrayEquals(new long[]{30}, page.ids());
+        assertEquals(3, page.total());
+
+        UserNameIndex.Hits capped = index.find("al", null, 0, 1, 2);
+        assertArrayEquals(new long[]{17}, capped.ids());
+        assertEquals(2, capped.total());
+    }
+
+    @Test
+    void findAfter_continuesFromLastKey() {
+        index.start();
+
+        UserNameIndex.Hits first = index.findAfter("al", null, null, 2);
+        assertArrayEquals(new long[]{17, 30}, first.ids());
+        assertTrue(first.total() > first.ids().length);
+
+        UserNameIndex.Hits second = index.findAfter("al", null, first.lastKey(), 2);
+        assertArrayEquals(new long[]{4}, second.ids());
+        assertEquals(1, second.total());
+        assertEquals(UserNameIndex.key("alina", 4), second.lastKey());
+    }
+
+    @Test
+    void likeWildcards_areLeftToDatabase() {
+        index.start();
+
+        assertNull(index.find("a%e", null, 0, 10, Long.MAX_VALUE));
+        assertNull(index.findAfter("a_", null, null, 10));
+    }
+
+    @Test
+    void update_movesUserToNewName() {
+        index.start();
+
+        index.update(8, "Bob", "Alfred", LocalDate.of(2005, 1, 1));
+
+        assertArrayEquals(new long[0], ids("Bob", null));
+        assertArrayEquals(new long[]{17, 8, 30, 4}, ids("Al", null));
+        assertArrayEquals(new long[]{8, 4}, ids("Al", LocalDate.of(2000, 1, 1)));
+    }
+
+    @Test
+    void rebuild_picksUpChangesFromOtherNodes() {
+        index.start();
+        table.add(new Object[]{50L, "Alan", null});
+
+        index.rebuild();
+
+        assertArrayEquals(new long[]{50, 17, 30, 4}, ids("Al", null));
+    }
+
+    @Test
+    void renameDuringRebuild_isNotLostWhenNewIndexIsPublished() {
+        index.start();
+        // чтение таблицы уже отдало строку со старым именем, коммит переименования приходит до конца перестройки
+        duringScan = () -> index.update(8, "Bob", "Alfred", LocalDate.of(2005, 1, 1));
+
+        index.rebuild();
+
+        assertArrayEquals(new long[0], ids("Bob", null));
+        assertArrayEquals(new long[]{17, 8, 30, 4}, ids("Al", null));
+    }
+
+    private long[] ids(String prefix, LocalDate dateOfBirthAfter) {
+        return index.find(prefix, dateOfBirthAfter, 0, 100, Long.MAX_VALUE).ids();
+    }
+
+    private void row(long id, String name, String dateOfBirth) {
+        table.add(new Object[]{id, name, dateOfBirth == null ? null : LocalDate.parse(dateOfBirth)});
+    }
+}
@@ -2,18 +2,22 @@ package org.example.pioneer.service;
 
 import org.example.pioneer.exception.ResourceNotFoundException;
 import org.example.pioneer.model.User;
+import org.example.pioneer.model.UserSnapshot;
 import org.example.pioneer.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDate;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.LongSupplier;
 
 import static java.util.List.of;
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,9 +27,14 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class UserServiceTest {
 
+    private static final Sort BY_NAME = Sort.by(Sort.Order.asc("name").ignoreCase(), Sort.Order.asc("id"));
+
     @Mock
     private UserRepository userRepo;
 
+    @Mock
+    private ObjectProvider<UserNameIndex> nameIndex;
+
     @InjectMocks
     private UserService service;
 
@@ -46,21 +55,22 @@ class UserServiceTest {
 
     @Test
     void getById_found() {
-        when(userRepo.findById(5L)).thenReturn(Optional.of(user));
+        UserSnapshot snapshot = new UserSnapshot(5L, "Alice", LocalDate.of(1990, 1, 1));
+        when(userRepo.findSnapshotById(5L)).thenReturn(Optional.of(snapshot));
 
-        User out = service.getById(5L);
+        UserSnapshot out = service.getById(5L);
 
-        assertSame(user, out);
-        verify(userRepo).findById(5L);
+        assertSame(snapshot, out);
+        verify(userRepo).findSnapshotById(5L);
     }
 
     @Test
     void getById_notFound() {
-        when(userRepo.findById(99L)).thenReturn(Optional.empty());
+        when(userRepo.findSnapshotById(99L)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class,
                 () -> service.getById(99L));
-        verify(userRepo).findById(99L);
+        verify(userRepo).findSnapshotById(99L);
     }
 
     // search
@@ -70,12 +80,13 @@ class UserServiceTest {
     void search_noFilters() {
         int page = 1, size = 2;
         PageRequest pg = PageRequest.of(page, size, Sort.by("id").ascending());
-        Page<User> stubPage = new PageImpl<>(of(user), pg, 1);
+        Page<UserSnapshot> stubPage = new PageImpl<>(of(snapshot(5)), pg, 1);
 
-        when(userRepo.findAll((Specification<User>) isNull(), eq(pg)))
+        // без фильтров спецификация — пустой Specification.where(null), а не null
+        when(userRepo.findSnapshots(any(Specification.class), eq(pg)))
                 .thenReturn(stubPage);
 
-        Page<User> result = service.search(
+        Page<UserSnapshot> result = service.search(
                 Optional.empty(),
                 Optional.empty(),
                 Optional.empty(),
@@ -84,7 +95,8 @@ class UserServiceTest {
         );
 
         assertSame(stubPage, result);
-        verify(userRepo).findAll((Specification<User>) isNull(), eq(pg));
+        verify(userRepo).findSnapshots(any(Specification.class), eq(pg));
+        verifyNoInteractions(nameIndex);
     }
 
     @SuppressWarnings("unchecked")
@@ -94,16 +106,17 @@ class UserServiceTest {
         LocalDate dobAfter = LocalDate.of(2000, 1, 1);
         String namePrefix = "Al";
 
-        PageRequest pg = PageRequest.of(page, size, Sort.by("id").ascending());
-        Page<User> stubPage = new PageImpl<>(of(user), pg, 1);
+        // поиск по имени и в БД идёт в порядке индекса имён
+        PageRequest pg = PageRequest.of(page, size, BY_NAME);
+        Page<UserSnapshot> stubPage = new PageImpl<>(of(snapshot(5)), pg, 1);
 
         ArgumentCaptor<Specification<User>> specCap =
                 ArgumentCaptor.forClass((Class) Specification.class);
 
-        when(userRepo.findAll(specCap.capture(), eq(pg)))
+        when(userRepo.findSnapshots(specCap.capture(), eq(pg)))
                 .thenReturn(stubPage);
 
-        Page<User> result = service.search(
+        Page<UserSnapshot> result = service.search(
                 Optional.of(dobAfter),
                 Optional.of(namePrefix),
                 Optional.empty(),
@@ -112,10 +125,198 @@ class UserServiceTest {
         );
 
         assertSame(stubPage, result);
-        verify(userRepo).findAll(any(Specification.class), eq(pg));
+        verify(userRepo).findSnapshots(any(Specification.class), eq(pg));
+        verify(userRepo, never()).findAll(any(Specification.class), any(Pageable.class));
         assertNotNull(specCap.getValue(), "Specification should be built");
     }
 
+    // searchAfter
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void searchAfter_readsOneExtraRow_toDetectNextPage() {
+        List<UserSnapshot> rows = of(snapshot(1), snapshot(2), snapshot(3));
+        when(userRepo.findSnapshots(any(Specification.class), eq(Sort.by("id").ascending()), eq(3)))
+                .thenReturn(rows);
+
+        Slice<UserSnapshot> slice = service.searchAfter(Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty(), 2);
+
+        assertEquals(of(rows.get(0), rows.get(1)), slice.getContent());
+        assertTrue(slice.hasNext());
+        verify(userRepo, never()).findSnapshots(any(Specification.class), any(Pageable.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void searchAfter_lastPage_hasNoNext() {
+        when(userRepo.findSnapshots(any(Specification.class), any(Sort.class), anyInt())).thenReturn(of(snapshot(7)));
+
+        Slice<UserSnapshot> slice = service.searchAfter(Optional.empty(), Optional.of("Al"), Optional.empty(),
+                Optional.empty(), Optional.of(SearchCursor.encode(6)), 2);
+
+        assertEquals(1, slice.getNumberOfElements());
+        assertFalse(slice.hasNext());
+        verify(userRepo, never()).findSnapshots(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void searchAfter_brokenCursor_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.searchAfter(Optional.empty(),
+                Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("not-a-cursor"), 2));
+        verifyNoInteractions(userRepo);
+    }
+
+    @Test
+    void searchCursor_roundTrip() {
+        String cursor = SearchCursor.encode(9_000_000_001L);
+
+        assertFalse(cursor.contains("9000000001"), "курсор непрозрачен для клиента");
+        assertEquals(new SearchCursor(9_000_000_001L, null), SearchCursor.decode(cursor));
+        assertEquals(new SearchCursor(7, "Ан:на"), SearchCursor.decode(SearchCursor.encode(7, "Ан:на")));
+        assertThrows(IllegalArgumentException.class,
+                () -> SearchCursor.decode(Base64.getUrlEncoder().encodeToString("id:x".getBytes())));
+    }
+
+    // индекс имён
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void search_byNameWithIndex_readsOnlyPageRows() {
+        UserNameIndex index = mock(UserNameIndex.class);
+        when(nameIndex.getIfAvailable()).thenReturn(index);
+        when(index.find("al", null, 2, 2, Long.MAX_VALUE)).thenReturn(new UserNameIndex.Hits(new long[]{3, 4}, 5, "AL4"));
+        when(userRepo.findSnapshotsByIdIn(of(3L, 4L))).thenReturn(of(snapshot(4), snapshot(3)));
+
+        Page<UserSnapshot> page = service.search(Optional.empty(), Optional.of("al"), Optional.empty(),
+                Optional.empty(), 1, 2);
+
+        assertEquals(of(3L, 4L), page.map(UserSnapshot::id).getContent());
+        assertEquals(5, page.getTotalElements());
+        verify(userRepo, never()).findSnapshots(any(Specification.class), any(Pageable.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void search_byNameWithIndex_cappedCount_limitsWalk() {
+        UserNameIndex index = mock(UserNameIndex.class);
+        when(nameIndex.getIfAvailable()).thenReturn(index);
+        when(index.find("al", null, 0, 2, 10_000)).thenReturn(new UserNameIndex.Hits(new long[]{1, 2}, 10_000, "AL2"));
+        when(userRepo.findSnapshotsByIdIn(of(1L, 2L))).thenReturn(of(snapshot(1), snapshot(2)));
+
+        Page<UserSnapshot> page = service.search(Optional.empty(), Optional.of("al"), Optional.empty(),
+                Optional.empty(), 0, 2, CountMode.CAPPED);
+
+        assertEquals(10_000, page.getTotalElements());
+        verify(userRepo, never()).countCapped(any(Specification.class), anyInt());
+    }
+
+    @Test
+    void searchAfter_withIndex_skipsRowsRenamedElsewhere() {
+        UserNameIndex index = mock(UserNameIndex.class);
+        when(nameIndex.getIfAvailable()).thenReturn(index);
+        String afterKey = UserNameIndex.key("Al2", 2);
+        when(index.findAfter("al", null, afterKey, 1)).thenReturn(new UserNameIndex.Hits(new long[]{3}, 2, "AL3"));
+        when(index.findAfter("al", null, "AL3", 1)).thenReturn(new UserNameIndex.Hits(new long[]{4}, 1, "AL4"));
+        UserSnapshot renamed = new UserSnapshot(3L, "Bob", null);
+        when(userRepo.findSnapshotsByIdIn(of(3L))).thenReturn(of(renamed));
+        when(userRepo.findSnapshotsByIdIn(of(4L))).thenReturn(of(snapshot(4)));
+
+        Slice<UserSnapshot> slice = service.searchAfter(Optional.empty(), Optional.of("al"), Optional.empty(),
+                Optional.empty(), Optional.of(SearchCursor.encode(2, "Al2")), 1);
+
+        assertEquals(of(4L), slice.map(UserSnapshot::id).getContent());
+        assertFalse(slice.hasNext());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void searchAfter_idOnlyCursor_continuesInDatabase() {
+        when(userRepo.findSnapshots(any(Specification.class), any(Sort.class), anyInt())).thenReturn(of(snapshot(7)));
+
+        service.searchAfter(Optional.empty(), Optional.of("al"), Optional.empty(),
+                Optional.empty(), Optional.of(SearchCursor.encode(6)), 2);
+
+        verifyNoInteractions(nameIndex);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void searchAfter_nameCursorWithoutIndex_continuesInNameOrder() {
+        when(userRepo.findSnapshots(any(Specification.class), eq(BY_NAME), eq(3))).thenReturn(of(snapshot(7)));
+
+        Slice<UserSnapshot> slice = service.searchAfter(Optional.empty(), Optional.of("al"), Optional.empty(),
+                Optional.empty(), Optional.of(SearchCursor.encode(6, "Al6")), 2);
+
+        // курсор по имени не продолжается по id: страницы разошлись бы с индексом имён другого узла
+        assertNotNull(slice.getSort().getOrderFor("name"));
+        verify(userRepo).findSnapshots(any(Specification.class), eq(BY_NAME), eq(3));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void search_withContactFilter_bypassesIndex() {
+        when(userRepo.findSnapshots(any(Specification.class), any(Pageable.class))).thenReturn(Page.empty());
+
+        service.search(Optional.empty(), Optional.of("al"), Optional.of("a@x.com"), Optional.empty(), 0, 10);
+
+        verifyNoInteractions(nameIndex);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void search_cappedCount_stopsAtCountCap() {
+        PageRequest pg = PageRequest.of(0, 10, Sort.by("id").ascending());
+        when(userRepo.findSnapshots(any(Specification.class), eq(pg), any(LongSupplier.class)))
+                .thenAnswer(inv -> new PageImpl<>(of(), pg, inv.<LongSupplier>getArgument(2).getAsLong()));
+        when(userRepo.countCapped(any(Specification.class), eq(10_000))).thenReturn(10_000L);
+
+        Page<UserSnapshot> page = service.search(Optional.of(LocalDate.of(1980, 1, 1)), Optional.empty(),
+                Optional.empty(), Optional.empty(), 0, 10, CountMode.CAPPED);
+
+        assertEquals(10_000, page.getTotalElements());
+        verify(userRepo, never()).count(any(Specification.class));
+        verify(userRepo, never()).findSnapshots(any(Specification.class), any(Pageable.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void search_estimatedCount_passesFiltersToPlanner() {
+        PageRequest pg = PageRequest.of(0, 10, BY_NAME);
+        when(userRepo.findSnapshots(any(Specification.class), eq(pg), any(LongSupplier.class)))
+                .thenAnswer(inv -> new PageImpl<>(of(), pg, inv.<LongSupplier>getArgument(2).getAsLong()));
+        when(userRepo.estimateCount(null, "al", null, "79001112233")).thenReturn(42L);
+
+        Page<UserSnapshot> page = service.search(Optional.empty(), Optional.of("al"),
+                Optional.empty(), Optional.of("79001112233"), 0, 10, CountMode.ESTIMATED);
+
+        assertEquals(42, page.getTotalElements());
+        verify(userRepo, never()).countCapped(any(Specification.class), anyInt());
+    }
+
+    @Test
+    void countMode_isParsedIgnoringCase() {
+        assertEquals(CountMode.CAPPED, CountMode.of("capped"));
+        assertEquals(CountMode.ESTIMATED, CountMode.of(" Estimated "));
+        assertThrows(IllegalArgumentException.class, () -> CountMode.of("approx"));
+    }
+
+    @Test
+    void updateName_reindexesUnderNewName() {
+        UserNameIndex index = mock(UserNameIndex.class);
+        when(nameIndex.getIfAvailable()).thenReturn(index);
+        String oldName = user.getName();
+        when(userRepo.findById(user.getId())).thenReturn(Optional.of(user));
+
+        service.updateName(user.getId(), "Новое имя");
+
+        verify(index).update(user.getId(), oldName, "Новое имя", user.getDateOfBirth());
+    }
+
+    private static UserSnapshot snapshot(long id) {
+        return new UserSnapshot(id, "Al" + id, null);
+    }
+
     // updateName
 
     @Test